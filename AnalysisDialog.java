@@ -0,0 +1,136 @@
+package game2048;
+
+// Borders and Layout
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import javax.swing.BorderFactory;
+
+// Components
+import javax.swing.DefaultListModel;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.Timer;
+
+// Listeners and Events
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+// Concurrency
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shows the analysis of a finished game as it comes in: how many moves
+ * are weighed so far, and the GameAnalyzer.MAX_BLUNDERS moves that lose the
+ * most of those found so far, worst first. The analyzer
+ * reports from many threads at once; the dialog gathers the reports and
+ * takes them in on a timer, so thousands of moves a second never flood
+ * the event thread. Closing the dialog stops the analysis.
+ */
+class AnalysisDialog extends JDialog
+{
+  private static final int REFRESH_MS = 100;   // time between updates
+
+  private final int nMoves_;
+  private final DefaultListModel< GameAnalyzer.Position > blunders_
+      = new DefaultListModel<>();
+  private final JLabel progressLabel_ = new JLabel();
+  private final Timer  timer_;
+
+  // Filled by the analyzer's threads, drained on the event thread
+  private final ConcurrentLinkedQueue< GameAnalyzer.Position > found_
+      = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger nWeighed_ = new AtomicInteger();
+  private final AtomicInteger nMissed_  = new AtomicInteger();   // not best
+
+  private final CompletableFuture< GameAnalyzer.Report > report_;
+
+  /**
+   * Constructor. Starts the analysis.
+   *
+   * @param owner     The frame the dialog belongs to
+   * @param journal   The journal of a finished 4x4 game
+   */
+  AnalysisDialog( JFrame owner, GameJournal journal )
+  {
+    super ( owner, "2048 Game Analysis", false );
+    nMoves_ = journal.size();
+
+    progressLabel_.setBorder( BorderFactory.createEmptyBorder( 5, 5, 5, 5 ) );
+    JList< GameAnalyzer.Position > list = new JList<>( blunders_ );
+    JScrollPane scrollPane = new JScrollPane( list );
+    scrollPane.setPreferredSize( new Dimension( 360, 240 ) );
+
+    add( progressLabel_, BorderLayout.PAGE_START );
+    add( scrollPane, BorderLayout.CENTER );
+
+    timer_ = new Timer( REFRESH_MS, event -> refresh() );
+    report_ = new GameAnalyzer().analyze( journal, position -> {
+      if ( position.played != position.best ) {
+        found_.add( position );
+        nMissed_.incrementAndGet();
+      } // end if
+      nWeighed_.incrementAndGet();
+    } );
+    report_.whenComplete( ( report, exception ) -> {
+      if ( exception != null && !report_.isCancelled() )
+        System.err.format( "Couldn't analyze the game: %s%n", exception );
+    } );
+
+    // Stop the analysis with the dialog
+    addWindowListener( new WindowAdapter() {
+      public void windowClosed( WindowEvent event )
+      {
+        timer_.stop();
+        report_.cancel( false );
+      } // end method windowClosed
+    } );
+    setDefaultCloseOperation( DISPOSE_ON_CLOSE );
+
+    refresh();
+    timer_.start();
+    setLocationRelativeTo( owner );
+    pack();
+  } // end constructor
+
+  /**
+   * Takes in the moves found since last time, keeping only the worst, and
+   * updates the count.
+   */
+  private void refresh()
+  {
+    // Every blunder is queued before the report completes
+    boolean isDone = report_.isDone();
+    for ( GameAnalyzer.Position position = found_.poll(); position != null;
+          position = found_.poll() ) {
+      // Keep the list worst first, and no longer than the report's
+      int i = 0;
+      while ( i < blunders_.size() && GameAnalyzer.WORST_FIRST.compare(
+                  blunders_.get( i ), position ) <= 0 )
+        i++;
+      if ( i < GameAnalyzer.MAX_BLUNDERS )
+        blunders_.add( i, position );
+      if ( blunders_.size() > GameAnalyzer.MAX_BLUNDERS )
+        blunders_.remove( GameAnalyzer.MAX_BLUNDERS );
+    } // end for
+
+    if ( !isDone )
+      progressLabel_.setText( String.format(
+          "Weighed %,d of %,d moves, %,d not the best so far",
+          nWeighed_.get(), nMoves_, nMissed_.get() ) );
+    else {
+      timer_.stop();
+      GameAnalyzer.Report report = report_.isCompletedExceptionally()
+          ? null
+          : report_.join();
+      progressLabel_.setText( ( report == null )
+          ? "The analysis failed"
+          : String.format( "Best move %,d times of %,d; the worst misses:",
+                report.nBest, report.nPositions ) );
+    } // end else
+  } // end method refresh
+} // end class
@@ -0,0 +1,132 @@
+package game2048;
+
+/**
+ * Moves many 4x4 boards in the same direction at once, for rollouts and
+ * learning that step thousands of boards side by side. Boards are packed
+ * as by Bitboard, and every result is the same as Bitboard.move and
+ * Bitboard.score give for that board alone.
+ *
+ * The work goes to a Kernel. When the JVM runs with
+ * --add-modules jdk.incubator.vector and VectorBatchMoves was compiled
+ * from vector/, that kernel moves a whole SIMD register of boards per
+ * step. Otherwise, or with -Dgame2048.vector=false, the boards are moved
+ * one by one through the Bitboard tables.
+ */
+final class BatchMoves
+{
+  /**
+   * Moves a batch of boards.
+   */
+  interface Kernel
+  {
+    /**
+     * Moves the first n boards in one direction.
+     *
+     * @param boards      The packed boards
+     * @param n           The number of boards to move
+     * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN
+     * @param after       Gets each board after the move. May be boards.
+     * @param points      Gets the points each move scored
+     * @param moved       Gets whether each board changed
+     */
+    void move( long[] boards, int n, int direction, long[] after,
+               int[] points, boolean[] moved );
+  } // end interface Kernel
+
+  // One board at a time, through the Bitboard tables
+  static final Kernel SCALAR = BatchMoves::moveScalar;
+
+  private static final Kernel KERNEL = loadKernel();
+
+  private BatchMoves() {}
+
+  /**
+   * Finds the fastest kernel this JVM can run.
+   */
+  private static Kernel loadKernel()
+  {
+    if ( !Boolean.parseBoolean(
+             System.getProperty( "game2048.vector", "true" ) ) )
+      return SCALAR;
+
+    try {
+      return ( Kernel ) Class.forName( "game2048.VectorBatchMoves" )
+                             .getDeclaredConstructor().newInstance();
+    } // end try
+    catch ( ReflectiveOperationException | LinkageError
+            | RuntimeException exception ) {
+      // Not compiled, or the module isn't there
+      return SCALAR;
+    } // end catch
+  } // end method loadKernel
+
+  /**
+   * Moves the first n boards in one direction.
+   *
+   * @param boards      The packed boards
+   * @param n           The number of boards to move
+   * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN
+   * @param after       Gets each board after the move. May be boards.
+   * @param points      Gets the points each move scored
+   * @param moved       Gets whether each board changed
+   */
+  static void move( long[] boards, int n, int direction, long[] after,
+                    int[] points, boolean[] moved )
+  {
+    if ( n < 0 || n > boards.length || n > after.length
+         || n > points.length || n > moved.length )
+      throw new IndexOutOfBoundsException( "Batch of " + n + " boards" );
+    if ( direction < Bitboard.LEFT || direction > Bitboard.DOWN )
+      throw new IllegalArgumentException( "Bad direction: " + direction );
+
+    KERNEL.move( boards, n, direction, after, points, moved );
+  } // end method move
+
+  /**
+   * @return    True if the boards are moved by the Vector API
+   */
+  static boolean isVectorized()
+  {
+    return KERNEL != SCALAR;
+  } // end method isVectorized
+
+  /**
+   * @return    The kernel in use
+   */
+  static Kernel getKernel()
+  {
+    return KERNEL;
+  } // end method getKernel
+
+  /**
+   * Moves boards one by one, from the first board given to the nth.
+   * Vector kernels finish the boards left over by their last full
+   * register through this.
+   *
+   * @param boards      The packed boards
+   * @param from        The first board to move
+   * @param n           One past the last board to move
+   * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN
+   * @param after       Gets each board after the move. May be boards.
+   * @param points      Gets the points each move scored
+   * @param moved       Gets whether each board changed
+   */
+  static void moveScalar( long[] boards, int from, int n, int direction,
+                          long[] after, int[] points, boolean[] moved )
+  {
+    for ( int i = from; i < n; i++ ) {
+      long board = boards[ i ];
+      long result = Bitboard.move( board, direction );
+      points[ i ] = Bitboard.score( board, direction );
+      moved[ i ] = result != board;
+      after[ i ] = result;
+    } // end for
+  } // end method moveScalar
+
+  private static void moveScalar( long[] boards, int n, int direction,
+                                  long[] after, int[] points,
+                                  boolean[] moved )
+  {
+    moveScalar( boards, 0, n, direction, after, points, moved );
+  } // end method moveScalar
+} // end class
@@ -0,0 +1,204 @@
+package game2048;
+
+// IO
+import java.io.IOException;
+import java.nio.file.Paths;
+
+// Concurrency
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Plays many games without a display, one game after another on every
+ * thread, and sums up how they ended. Each thread keeps its own
+ * GameStatistics; they are merged once all games are done.
+ *
+ * Every game gets its own seed, worked out from the seed of the batch and
+ * the number of the game, so its tiles don't depend on which thread played
+ * it and any single game can be played again.
+ */
+final class BatchSimulator
+{
+  // Number of games a thread claims at a time
+  private static final int CHUNK_SIZE = 64;
+
+  private final int nThreads_;
+
+  /**
+   * Constructor. Uses one thread per processor.
+   */
+  BatchSimulator()
+  {
+    this( Runtime.getRuntime().availableProcessors() );
+  } // end constructor
+
+  /**
+   * Constructor
+   *
+   * @param nThreads  The number of games played at the same time
+   */
+  BatchSimulator( int nThreads )
+  {
+    nThreads_ = nThreads;
+  } // end constructor
+
+  /**
+   * Plays games until they are all over.
+   *
+   * @param nGames      The number of games to play
+   * @param policies    Creates the policy of each thread, given the index
+   *                    of the thread
+   * @param seed        The seed of the batch
+   * @return            The statistics over every game
+   */
+  GameStatistics run( long nGames, IntFunction< MovePolicy > policies,
+                      long seed )
+      throws InterruptedException
+  {
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool( nThreads_ );
+    AtomicLong nextGame = new AtomicLong();
+    List< Future< GameStatistics > > results
+        = new ArrayList< Future< GameStatistics > >( nThreads_ );
+
+    for ( int i = 0; i < nThreads_; i++ ) {
+      MovePolicy policy = policies.apply( i );
+      results.add( executor.submit(
+          () -> play( policy, nextGame, nGames, seed ) ) );
+    } // end for
+    executor.shutdown();
+
+    GameStatistics statistics = new GameStatistics();
+    try {
+      for ( Future< GameStatistics > result : results )
+        statistics.merge( result.get() );
+    } // end try
+    catch ( ExecutionException exception ) {
+      executor.shutdownNow();
+      throw new IllegalStateException( exception.getCause() );
+    } // end catch
+
+    Metrics.batchPlayed( statistics.getGames(), statistics.getTotalMoves(),
+        System.nanoTime() - start );
+    return statistics;
+  } // end method run
+
+  /**
+   * Works out the seed of one game of a batch.
+   *
+   * @param seed    The seed of the batch
+   * @param game    The number of the game within the batch
+   * @return        The seed of the game
+   */
+  static long seedOf( long seed, long game )
+  {
+    return GameRandom.mix( seed + game * 0x9E3779B97F4A7C15L );
+  } // end method seedOf
+
+  /**
+   * Plays games on one thread until the shared counter runs out.
+   */
+  private static GameStatistics play( MovePolicy policy, AtomicLong nextGame,
+                                      long nGames, long seed )
+  {
+    GameStatistics statistics = new GameStatistics();
+    Game game = new Game( seed );
+
+    for ( long first = nextGame.getAndAdd( CHUNK_SIZE ); first < nGames;
+          first = nextGame.getAndAdd( CHUNK_SIZE ) ) {
+      long last = Math.min( nGames, first + CHUNK_SIZE );
+
+      for ( long i = first; i < last; i++ ) {
+        game.reset( seedOf( seed, i ) );
+        while ( game.canMove() )
+          game.move( policy.chooseMove( game.getBoard() ) );
+
+        statistics.add(
+            game.getScore(), game.getMoves(), game.getLargestTile() );
+      } // end for
+    } // end for
+
+    return statistics;
+  } // end method play
+
+  /**
+   * Plays a batch of games and prints the statistics.
+   *
+   * @param args    The number of games, then optionally the policy
+   *                ( random, greedy, expectimax or ntuple ), the number of
+   *                threads, the seed, the base-2 logarithm of the
+   *                number of evaluations the greedy and expectimax
+   *                threads share in an EvaluationCache, and a file to
+   *                keep the cache in between runs
+   */
+  public static void main( String[] args )
+      throws InterruptedException, IOException
+  {
+    if ( args.length < 1 ) {
+      System.err.println(
+          "Usage: BatchSimulator <games> [random|greedy|expectimax|ntuple] "
+          + "[threads] [seed] [cache bits] [cache file]" );
+      System.exit( 1 );
+    } // end if
+
+    long   nGames   = Long.parseLong( args[ 0 ] );
+    String name     = ( args.length > 1 ) ? args[ 1 ] : "greedy";
+    int    nThreads = ( args.length > 2 )
+        ? Integer.parseInt( args[ 2 ] )
+        : Runtime.getRuntime().availableProcessors();
+    long   seed     = ( args.length > 3 )
+        ? Long.parseLong( args[ 3 ] )
+        : System.nanoTime();
+    // A cache file made with other weights is started over
+    EvaluationCache cache = null;
+    if ( args.length > 5 )
+      cache = EvaluationCache.open( new HeuristicEvaluator(),
+          Integer.parseInt( args[ 4 ] ), Paths.get( args[ 5 ] ),
+          HeuristicEvaluator.fingerprint() );
+    else if ( args.length > 4 )
+      cache = new EvaluationCache( new HeuristicEvaluator(),
+                                   Integer.parseInt( args[ 4 ] ) );
+    BoardEvaluator evaluator
+        = ( cache != null ) ? cache : new HeuristicEvaluator();
+
+    IntFunction< MovePolicy > policies;
+    if ( name.equals( "random" ) )
+      policies = i -> new RandomPolicy( seedOf( ~seed, i ) );
+    else if ( name.equals( "greedy" ) )
+      policies = i -> new GreedyPolicy( evaluator );
+    else if ( name.equals( "expectimax" ) ) {
+      // One solver for every thread, so they share one transposition table
+      ExpectimaxSolver solver
+          = new ExpectimaxSolver( 2, evaluator, ForkJoinPool.commonPool() );
+      policies = i -> solver;
+    } // end else
+    else if ( name.equals( "ntuple" ) ) {
+      NTupleNetwork network
+          = NTupleNetwork.load( GameLauncher.NTUPLE_FILE_PATH );
+      policies = i -> new NTuplePolicy( network );
+    } // end else
+    else
+      throw new IllegalArgumentException( "Unknown policy: " + name );
+
+    long start = System.nanoTime();
+    GameStatistics statistics
+        = new BatchSimulator( nThreads ).run( nGames, policies, seed );
+    double seconds = ( System.nanoTime() - start ) / 1e9;
+
+    System.out.format( "Seed:          %d%n", seed );
+    statistics.print( System.out );
+    System.out.format( "%,.0f games/s%n", statistics.getGames() / seconds );
+    System.out.format( "%,.0f moves/s%n", statistics.getTotalMoves() / seconds );
+    if ( cache != null ) {
+      System.out.println( "Cache:         " + cache );
+      cache.close();
+    } // end if
+  } // end main
+} // end class
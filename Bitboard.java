@@ -0,0 +1,368 @@
+package game2048;
+
+/**
+ * Move engine for the 4x4 board. The whole board is packed into one long:
+ * every tile takes 4 bits that hold the base-2 logarithm of its value
+ * ( 0 for a blank tile ), row 0 sits in the lowest 16 bits and column 0 in
+ * the lowest 4 bits of each row.
+ *
+ * Moving left or right is one table lookup per row. The tables hold the
+ * result of moving every one of the 65,536 possible rows, so no tile is ever
+ * scanned twice. Moving up or down transposes the board, moves its rows and
+ * transposes it back.
+ *
+ * Four bits hold exponents up to 15, so 32768 is the largest tile: two
+ * 32768s side by side never merge. This is a change to the rules of the
+ * game as first written, which kept each tile in an int and would have
+ * merged them into 65536.
+ */
+final class Bitboard
+{
+  static final int SIZE = 4;   // number of rows and columns
+
+  // Directions, in the order used by every table and bitmask
+  static final int LEFT  = 0;
+  static final int RIGHT = 1;
+  static final int UP    = 2;
+  static final int DOWN  = 3;
+
+  private static final int  N_ROWS   = 1 << 16;
+  private static final long ROW_MASK = 0xFFFFL;
+
+  // Rows after moving left or right, indexed by the row before the move
+  private static final char[] ROW_LEFT  = new char[ N_ROWS ];
+  private static final char[] ROW_RIGHT = new char[ N_ROWS ];
+
+  // Points scored by moving a row. Equal tiles pair up the same number of
+  // times whichever way the row moves, so one table serves both directions.
+  private static final int[] ROW_SCORE = new int[ N_ROWS ];
+
+  // Moves that change a row: bit LEFT if moving left does, bit RIGHT if
+  // moving right does. Read on a column, the same bits stand for UP and DOWN.
+  private static final byte[] ROW_MOVES = new byte[ N_ROWS ];
+
+  static
+  {
+    int[] line = new int[ SIZE ];
+
+    for ( int row = 0; row < N_ROWS; row++ ) {
+      // Unpack the row
+      for ( int i = 0; i < SIZE; i++ )
+        line[ i ] = ( row >>> ( 4 * i ) ) & 0xF;
+
+      ROW_SCORE[ row ] = slideLeft( line );
+
+      // Pack the result
+      int result = 0;
+      for ( int i = 0; i < SIZE; i++ )
+        result |= line[ i ] << ( 4 * i );
+
+      ROW_LEFT[ row ] = ( char ) result;
+      ROW_RIGHT[ reverseRow( row ) ] = ( char ) reverseRow( result );
+    } // end for
+
+    for ( int row = 0; row < N_ROWS; row++ )
+      ROW_MOVES[ row ] = ( byte ) (
+          ( ( ROW_LEFT[ row ] != row ) ? 1 << LEFT : 0 )
+          | ( ( ROW_RIGHT[ row ] != row ) ? 1 << RIGHT : 0 ) );
+  } // end static initializer
+
+  private Bitboard() {}
+
+  /**
+   * Slides the tiles of one row to the left, merging each pair of identical
+   * tiles once.
+   *
+   * @param line    The tile exponents of the row. Updated in place.
+   * @return        The points scored by the merges.
+   */
+  private static int slideLeft( int[] line )
+  {
+    int score = 0;
+    int last  = 0;   // exponent of the last tile packed that can still merge
+    int n     = 0;   // number of tiles packed so far
+
+    for ( int i = 0; i < line.length; i++ ) {
+      int exponent = line[ i ];
+      if ( exponent == 0 )
+        continue;
+
+      // Exponents stay within 4 bits, so a pair of 32768s can't merge
+      if ( exponent == last && exponent < 0xF ) {
+        line[ n - 1 ] = exponent + 1;
+        score += 1 << ( exponent + 1 );
+        last = 0;
+      } // end if
+      else {
+        line[ n++ ] = exponent;
+        last = exponent;
+      } // end else
+    } // end for
+
+    while ( n < line.length )
+      line[ n++ ] = 0;
+
+    return score;
+  } // end method slideLeft
+
+  /**
+   * Reverses the order of the tiles in a packed row.
+   *
+   * @param row     The packed row
+   * @return        The row read from right to left
+   */
+  private static int reverseRow( int row )
+  {
+    return ( ( row >>> 12 ) & 0x000F ) | ( ( row >>> 4 ) & 0x00F0 )
+        | ( ( row << 4 ) & 0x0F00 ) | ( ( row << 12 ) & 0xF000 );
+  } // end method reverseRow
+
+  /**
+   * Swaps the rows and columns of the board.
+   *
+   * @param board   The packed board
+   * @return        The board mirrored along its main diagonal
+   */
+  static long transpose( long board )
+  {
+    long a1 = board & 0xF0F00F0FF0F00F0FL;
+    long a2 = board & 0x0000F0F00000F0F0L;
+    long a3 = board & 0x0F0F00000F0F0000L;
+    long a  = a1 | ( a2 << 12 ) | ( a3 >>> 12 );
+    long b1 = a & 0xFF00FF0000FF00FFL;
+    long b2 = a & 0x00FF00FF00000000L;
+    long b3 = a & 0x00000000FF00FF00L;
+    return b1 | ( b2 >>> 24 ) | ( b3 << 24 );
+  } // end method transpose
+
+  /**
+   * Reverses the order of the tiles in every row.
+   *
+   * @param board   The packed board
+   * @return        The board mirrored left to right
+   */
+  static long mirror( long board )
+  {
+    long nibbles = ( ( board >>> 4 ) & 0x0F0F0F0F0F0F0F0FL )
+        | ( ( board & 0x0F0F0F0F0F0F0F0FL ) << 4 );
+    return ( ( nibbles >>> 8 ) & 0x00FF00FF00FF00FFL )
+        | ( ( nibbles & 0x00FF00FF00FF00FFL ) << 8 );
+  } // end method mirror
+
+  /**
+   * Reverses the order of the rows.
+   *
+   * @param board   The packed board
+   * @return        The board mirrored top to bottom
+   */
+  static long flip( long board )
+  {
+    return ( board >>> 48 ) | ( ( board >>> 16 ) & 0xFFFF0000L )
+        | ( ( board << 16 ) & 0xFFFF00000000L ) | ( board << 48 );
+  } // end method flip
+
+  /**
+   * Picks one board to stand for all eight rotations and reflections of a
+   * board, so that boards alike but for the way they face share one entry
+   * in a cache.
+   *
+   * @param board   The packed board
+   * @return        The smallest of the eight boards, the same for each
+   */
+  static long canonical( long board )
+  {
+    long transposed = transpose( board );
+    long flipped = flip( board );
+    long flippedTransposed = flip( transposed );
+
+    long min = Math.min( board, mirror( board ) );
+    min = Math.min( min, Math.min( flipped, mirror( flipped ) ) );
+    min = Math.min( min, Math.min( transposed, mirror( transposed ) ) );
+    return Math.min( min, Math.min( flippedTransposed,
+                                    mirror( flippedTransposed ) ) );
+  } // end method canonical
+
+  /**
+   * Moves every row of the board through one of the row tables.
+   */
+  private static long moveRows( long board, char[] table )
+  {
+    return ( long ) table[ ( int ) ( board & ROW_MASK ) ]
+        | ( long ) table[ ( int ) ( ( board >>> 16 ) & ROW_MASK ) ] << 16
+        | ( long ) table[ ( int ) ( ( board >>> 32 ) & ROW_MASK ) ] << 32
+        | ( long ) table[ ( int ) ( board >>> 48 ) ] << 48;
+  } // end method moveRows
+
+  /**
+   * Adds up the points scored by every row of the board.
+   */
+  private static int scoreRows( long board )
+  {
+    return ROW_SCORE[ ( int ) ( board & ROW_MASK ) ]
+        + ROW_SCORE[ ( int ) ( ( board >>> 16 ) & ROW_MASK ) ]
+        + ROW_SCORE[ ( int ) ( ( board >>> 32 ) & ROW_MASK ) ]
+        + ROW_SCORE[ ( int ) ( board >>> 48 ) ];
+  } // end method scoreRows
+
+  /**
+   * Moves the tiles of the board. No new tile is spawned.
+   *
+   * @param board       The packed board
+   * @param direction   One of LEFT, RIGHT, UP or DOWN
+   * @return            The board after the move. Equal to the given board
+   *                    if nothing could move.
+   */
+  static long move( long board, int direction )
+  {
+    switch ( direction ) {
+      case LEFT:
+        return moveRows( board, ROW_LEFT );
+      case RIGHT:
+        return moveRows( board, ROW_RIGHT );
+      case UP:
+        return transpose( moveRows( transpose( board ), ROW_LEFT ) );
+      case DOWN:
+        return transpose( moveRows( transpose( board ), ROW_RIGHT ) );
+      default:
+        return board;
+    } // end switch
+  } // end method move
+
+  /**
+   * Computes the points scored by a move.
+   *
+   * @param board       The packed board before the move
+   * @param direction   One of LEFT, RIGHT, UP or DOWN
+   * @return            The sum of the values of the merged tiles
+   */
+  static int score( long board, int direction )
+  {
+    switch ( direction ) {
+      case LEFT:
+      case RIGHT:
+        return scoreRows( board );
+      case UP:
+      case DOWN:
+        return scoreRows( transpose( board ) );
+      default:
+        return 0;
+    } // end switch
+  } // end method score
+
+  /**
+   * Finds the moves that change the board.
+   *
+   * @param board   The packed board
+   * @return        A mask with bit 1 << LEFT, 1 << RIGHT, 1 << UP and
+   *                1 << DOWN set for each move that changes the board
+   */
+  static int legalMoves( long board )
+  {
+    long transposed = transpose( board );
+
+    int horizontal = ROW_MOVES[ ( int ) ( board & ROW_MASK ) ]
+        | ROW_MOVES[ ( int ) ( ( board >>> 16 ) & ROW_MASK ) ]
+        | ROW_MOVES[ ( int ) ( ( board >>> 32 ) & ROW_MASK ) ]
+        | ROW_MOVES[ ( int ) ( board >>> 48 ) ];
+    int vertical = ROW_MOVES[ ( int ) ( transposed & ROW_MASK ) ]
+        | ROW_MOVES[ ( int ) ( ( transposed >>> 16 ) & ROW_MASK ) ]
+        | ROW_MOVES[ ( int ) ( ( transposed >>> 32 ) & ROW_MASK ) ]
+        | ROW_MOVES[ ( int ) ( transposed >>> 48 ) ];
+
+    return horizontal | ( vertical << UP );
+  } // end method legalMoves
+
+  /**
+   * Checks if any of the four moves changes the board.
+   *
+   * @param board   The packed board
+   * @return        True if movement is still possible.
+   */
+  static boolean canMove( long board )
+  {
+    return legalMoves( board ) != 0;
+  } // end method canMove
+
+  /**
+   * Finds the blank tiles on the board.
+   *
+   * @param board   The packed board
+   * @return        A mask with the lowest of the 4 bits of every blank tile
+   *                set, and nothing else
+   */
+  static long blankMask( long board )
+  {
+    // Fold each nibble onto its lowest bit, then keep the nibbles left at 0
+    long x = board | ( board >>> 1 );
+    x |= x >>> 2;
+    return ~x & 0x1111111111111111L;
+  } // end method blankMask
+
+  /**
+   * Counts the blank tiles on the board.
+   *
+   * @param board   The packed board
+   * @return        The number of tiles whose exponent is 0
+   */
+  static int countBlanks( long board )
+  {
+    return Long.bitCount( blankMask( board ) );
+  } // end method countBlanks
+
+  /**
+   * Gets the exponent of a tile.
+   *
+   * @param board   The packed board
+   * @param row     The row of the tile
+   * @param col     The column of the tile
+   * @return        The base-2 logarithm of the tile value, or 0 if blank
+   */
+  static int getExponent( long board, int row, int col )
+  {
+    return ( int ) ( board >>> ( 16 * row + 4 * col ) ) & 0xF;
+  } // end method getExponent
+
+  /**
+   * Sets the exponent of a tile.
+   *
+   * @param board     The packed board
+   * @param row       The row of the tile
+   * @param col       The column of the tile
+   * @param exponent  The base-2 logarithm of the new value, or 0 for blank
+   * @return          The updated board
+   */
+  static long setExponent( long board, int row, int col, int exponent )
+  {
+    int shift = 16 * row + 4 * col;
+    return ( board & ~( 0xFL << shift ) ) | ( ( long ) exponent << shift );
+  } // end method setExponent
+
+  /**
+   * Gets the value shown on a tile.
+   *
+   * @param board   The packed board
+   * @param row     The row of the tile
+   * @param col     The column of the tile
+   * @return        The tile value, or 0 if blank
+   */
+  static int getTile( long board, int row, int col )
+  {
+    int exponent = getExponent( board, row, col );
+    return ( exponent == 0 ) ? 0 : 1 << exponent;
+  } // end method getTile
+
+  /**
+   * Finds the largest tile on the board.
+   *
+   * @param board   The packed board
+   * @return        The value of the largest tile, or 0 if the board is empty
+   */
+  static int largestTile( long board )
+  {
+    int max = 0;
+    for ( ; board != 0; board >>>= 4 )
+      max = Math.max( max, ( int ) ( board & 0xF ) );
+
+    return ( max == 0 ) ? 0 : 1 << max;
+  } // end method largestTile
+} // end class
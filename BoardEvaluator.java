@@ -0,0 +1,14 @@
+package game2048;
+
+/**
+ * Estimates how good a board is for the player. Search and rollout policies
+ * call this on the positions they can't afford to look past.
+ */
+interface BoardEvaluator
+{
+  /**
+   * @param board   The board packed by Bitboard
+   * @return        A score that is higher for better boards. Never negative.
+   */
+  double evaluate( long board );
+} // end interface
@@ -0,0 +1,362 @@
+package game2048;
+
+// Utilities
+import java.util.Arrays;
+
+// Graphics
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+
+// Components
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ * Draws a whole board as one component. The panel remembers the board it
+ * last drew and only repaints the tiles that changed since. Tiles slide to
+ * their new places when a move is shown, driven by a single timer.
+ *
+ * Boards come as packed rows, one long per row, so any size can be shown.
+ * Tiles shrink on boards wider than 4x4 to keep the panel on screen.
+ *
+ * A hint can be laid over the board: an arrow in the middle pointing the
+ * way to move.
+ */
+class BoardPanel extends JComponent
+{
+  private static final int GAP = 20;   // space around each 4x4 tile
+
+  private static final Color BACKGROUND = new Color( 187, 173, 160 );
+  private static final Color HINT       = new Color( 255, 255, 255, 160 );
+
+  private static final int ANIMATION_MS = 100;   // length of a slide
+  private static final int FRAME_MS     = 15;    // time between frames
+
+  private final int size_;       // number of rows and columns
+  private final int tileSize_;   // width and height of a tile, in pixels
+  private final int gap_;        // space around each tile
+  private final int cell_;       // distance from one tile to the next
+
+  private final long[] board_;   // the board shown once the slide is over
+
+  // The slide being shown, if any
+  private final long[] before_;        // board before the move
+  private final int[]  destination_;   // where each tile goes
+  private long      startTime_;
+  private float     progress_    = 1.0f;   // 0 at the start, 1 when done
+  private Rectangle slideBounds_;          // area covered by moving tiles
+
+  private final Timer timer_;
+
+  private long inputTime_;   // System.nanoTime() of the key not yet painted
+
+  private int hint_ = -1;    // the direction the arrow points, or -1
+
+  /**
+   * Constructor
+   *
+   * @param size    The number of rows and columns of the boards to show
+   */
+  BoardPanel( int size )
+  {
+    int scale = Math.max( size, Bitboard.SIZE );
+    size_     = size;
+    tileSize_ = TileIcons.TILE_SIZE * Bitboard.SIZE / scale;
+    gap_      = GAP * Bitboard.SIZE / scale;
+    cell_     = tileSize_ + gap_;
+
+    board_       = new long[ size ];
+    before_      = new long[ size ];
+    destination_ = new int[ size * size ];
+
+    setOpaque( true );
+    setDoubleBuffered( true );
+    setPreferredSize(
+        new Dimension( gap_ + size * cell_, gap_ + size * cell_ ) );
+
+    timer_ = new Timer( FRAME_MS, event -> nextFrame() );
+    timer_.setCoalesce( true );
+  } // end constructor
+
+  /**
+   * Shows a board right away, repainting only the tiles that changed.
+   *
+   * @param board   The packed rows of the board
+   */
+  void setBoard( long[] board )
+  {
+    if ( progress_ < 1.0f ) {
+      if ( Arrays.equals( board, board_ ) )
+        return;   // the running slide already ends on this board
+      finishSlide();
+    } // end if
+
+    repaintCells( board, board_ );
+    System.arraycopy( board, 0, board_, 0, size_ );
+  } // end method setBoard
+
+  /**
+   * Shows a move by sliding the tiles from where they were to where they
+   * end up.
+   *
+   * @param before      The packed rows before the move
+   * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN
+   * @param after       The packed rows after the move and the new tile
+   */
+  void slide( long[] before, int direction, long[] after )
+  {
+    if ( progress_ < 1.0f )
+      finishSlide();
+
+    System.arraycopy( before, 0, before_, 0, size_ );
+    System.arraycopy( after, 0, board_, 0, size_ );
+    slideBounds_ = null;
+
+    // Work out where each tile of the old board ends up
+    for ( int line = 0; line < size_; line++ ) {
+      int next = -1;        // cell the next tile packs into
+      int last = 0;         // exponent of the last tile that can still merge
+      for ( int i = 0; i < size_; i++ ) {
+        int cell = cellOf( direction, line, i );
+        int exponent = exponentAt( before_, cell );
+        if ( exponent == 0 )
+          continue;
+
+        // A pair of 32768s doesn't merge, as in Bitboard
+        if ( exponent == last && exponent < 0xF )
+          last = 0;   // merges into the tile packed just before
+        else {
+          next++;
+          last = exponent;
+        } // end else
+
+        int target = cellOf( direction, line, next );
+        destination_[ cell ] = target;
+        if ( target != cell ) {
+          Rectangle bounds = cellBounds( cell ).union( cellBounds( target ) );
+          slideBounds_ = ( slideBounds_ == null )
+              ? bounds
+              : slideBounds_.union( bounds );
+        } // end if
+      } // end for
+    } // end for
+
+    if ( slideBounds_ == null ) {
+      repaintCells( before_, board_ );
+      return;
+    } // end if
+
+    progress_  = 0.0f;
+    startTime_ = System.nanoTime();
+    timer_.restart();
+  } // end method slide
+
+  /**
+   * Advances the slide by one frame.
+   */
+  private void nextFrame()
+  {
+    progress_ = Math.min( 1.0f,
+        ( System.nanoTime() - startTime_ ) / ( ANIMATION_MS * 1e6f ) );
+
+    if ( progress_ >= 1.0f )
+      finishSlide();
+    else
+      repaint( slideBounds_ );
+  } // end method nextFrame
+
+  /**
+   * Stops the slide and repaints what it covered along with the new tile.
+   */
+  private void finishSlide()
+  {
+    timer_.stop();
+    progress_ = 1.0f;
+    repaint( slideBounds_ );
+    repaintCells( before_, board_ );
+  } // end method finishSlide
+
+  /**
+   * Repaints the cells that differ between two boards.
+   */
+  private void repaintCells( long[] a, long[] b )
+  {
+    for ( int row = 0; row < size_; row++ ) {
+      long changed = a[ row ] ^ b[ row ];
+      for ( int col = 0; changed != 0; col++, changed >>>= 4 )
+        if ( ( changed & 0xF ) != 0 )
+          repaint( cellBounds( size_ * row + col ) );
+    } // end for
+  } // end method repaintCells
+
+  protected void paintComponent( Graphics g )
+  {
+    Rectangle clip = g.getClipBounds();
+    if ( clip == null )
+      clip = new Rectangle( getSize() );
+
+    g.setColor( BACKGROUND );
+    g.fillRect( clip.x, clip.y, clip.width, clip.height );
+
+    boolean isSliding = progress_ < 1.0f;
+    long[] board = isSliding ? before_ : board_;
+
+    // Blank tiles first, so moving tiles can pass over them
+    Image blank = TileIcons.forExponent( 0 ).getImage();
+    for ( int cell = 0; cell < size_ * size_; cell++ )
+      if ( clip.intersects( cellBounds( cell ) ) )
+        drawTile( g, blank, xOf( cell ), yOf( cell ) );
+
+    for ( int cell = 0; cell < size_ * size_; cell++ ) {
+      int exponent = exponentAt( board, cell );
+      if ( exponent == 0 )
+        continue;
+
+      int x = xOf( cell );
+      int y = yOf( cell );
+      if ( isSliding ) {
+        int target = destination_[ cell ];
+        x += Math.round( progress_ * ( xOf( target ) - x ) );
+        y += Math.round( progress_ * ( yOf( target ) - y ) );
+      } // end if
+
+      if ( clip.intersects( x, y, tileSize_, tileSize_ ) )
+        drawTile( g, TileIcons.forExponent( exponent ).getImage(), x, y );
+    } // end for
+
+    if ( hint_ >= 0 && clip.intersects( hintBounds() ) )
+      drawHint( g );
+
+    if ( inputTime_ != 0 ) {
+      Metrics.painted( inputTime_ );
+      inputTime_ = 0;
+    } // end if
+  } // end method paintComponent
+
+  /**
+   * Shows or hides the hint arrow.
+   *
+   * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN, or -1 to
+   *                    hide the arrow
+   */
+  void setHint( int direction )
+  {
+    if ( direction == hint_ )
+      return;
+
+    hint_ = direction;
+    repaint( hintBounds() );
+  } // end method setHint
+
+  /**
+   * Draws the hint arrow, pointing right and then turned the way to move.
+   */
+  private void drawHint( Graphics g )
+  {
+    Rectangle bounds = hintBounds();
+    int half = bounds.width / 2;
+    int shaft = half / 3;
+    int[] x = { -half, 0, 0, half, 0, 0, -half };
+    int[] y = { -shaft, -shaft, -half, 0, half, shaft, shaft };
+
+    Polygon arrow = new Polygon();
+    for ( int i = 0; i < x.length; i++ )
+      switch ( hint_ ) {
+        case Bitboard.LEFT:
+          arrow.addPoint( -x[ i ], y[ i ] );
+          break;
+        case Bitboard.RIGHT:
+          arrow.addPoint( x[ i ], y[ i ] );
+          break;
+        case Bitboard.UP:
+          arrow.addPoint( y[ i ], -x[ i ] );
+          break;
+        default:
+          arrow.addPoint( y[ i ], x[ i ] );
+      } // end switch
+    arrow.translate( bounds.x + half, bounds.y + half );
+
+    Graphics2D g2 = ( Graphics2D ) g.create();
+    g2.setRenderingHint( RenderingHints.KEY_ANTIALIASING,
+                         RenderingHints.VALUE_ANTIALIAS_ON );
+    g2.setColor( HINT );
+    g2.fillPolygon( arrow );
+    g2.dispose();
+  } // end method drawHint
+
+  /**
+   * @return    The square in the middle of the panel the arrow fills
+   */
+  private Rectangle hintBounds()
+  {
+    int side = gap_ + size_ * cell_;
+    int length = Math.min( side / 2, 2 * tileSize_ );
+    return new Rectangle( ( side - length ) / 2, ( side - length ) / 2,
+                          length, length );
+  } // end method hintBounds
+
+  /**
+   * Notes when the key behind the next paint came in, so the time from the
+   * key to the screen is measured.
+   *
+   * @param start   System.nanoTime() when the key came in
+   */
+  void markInput( long start )
+  {
+    if ( Metrics.ENABLED )
+      inputTime_ = start;
+  } // end method markInput
+
+  private void drawTile( Graphics g, Image image, int x, int y )
+  {
+    g.drawImage( image, x, y, tileSize_, tileSize_, null );
+  } // end method drawTile
+
+  /**
+   * Finds the i-th cell of a line, counting from the side the tiles move to.
+   *
+   * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN
+   * @param line        The row, or the column for vertical moves
+   * @param i           The position along the line
+   * @return            The cell index, size * row + column
+   */
+  private int cellOf( int direction, int line, int i )
+  {
+    switch ( direction ) {
+      case Bitboard.LEFT:
+        return size_ * line + i;
+      case Bitboard.RIGHT:
+        return size_ * line + ( size_ - 1 - i );
+      case Bitboard.UP:
+        return size_ * i + line;
+      default:
+        return size_ * ( size_ - 1 - i ) + line;
+    } // end switch
+  } // end method cellOf
+
+  private int exponentAt( long[] board, int cell )
+  {
+    return ( int ) ( board[ cell / size_ ] >>> ( 4 * ( cell % size_ ) ) ) & 0xF;
+  } // end method exponentAt
+
+  private int xOf( int cell )
+  {
+    return gap_ + ( cell % size_ ) * cell_;
+  } // end method xOf
+
+  private int yOf( int cell )
+  {
+    return gap_ + ( cell / size_ ) * cell_;
+  } // end method yOf
+
+  private Rectangle cellBounds( int cell )
+  {
+    return new Rectangle( xOf( cell ), yOf( cell ), tileSize_, tileSize_ );
+  } // end method cellBounds
+} // end class
@@ -0,0 +1,232 @@
+package game2048;
+
+// IO
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Concurrency
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the values a BoardEvaluator gave, so search, rollouts and
+ * learned policies never evaluate the same position twice. Boards are
+ * stored by Bitboard.canonical, so all eight ways a position can face
+ * share one entry. That suits any evaluator that scores a position the
+ * same whichever way it faces, as every evaluator of the game does up to
+ * rounding. To keep rounding from making results depend on what the cache
+ * happens to hold, the evaluator is always given the canonical board.
+ *
+ * The cache is split into sets of WAYS slots. A board may only sit in its
+ * own set, and when the set is full a clock hand sweeps it: a slot read
+ * since the hand last passed gets another round, the first one that
+ * wasn't is replaced. New entries start unread, so a burst of boards seen
+ * once can't push out the ones that keep coming back.
+ *
+ * Any number of threads can share a cache without locking. As in
+ * TranspositionTable, each key is stored XORed with its value, so a slot
+ * halfway through being written reads as a miss.
+ *
+ * A cache may live in a memory-mapped file, so it is still warm when the
+ * program runs again.
+ */
+final class EvaluationCache
+  implements BoardEvaluator, Closeable
+{
+  private static final int MAGIC        = 0x32303443;   // "204C"
+  private static final int VERSION      = 1;
+  private static final int HEADER_BYTES = 64;
+
+  private static final int WAYS = 8;   // slots per set
+
+  // 2^26 slots of 16 bytes, so a mapped cache stays below 2 GB
+  static final int MAX_LOG2_SIZE = 26;
+
+  private final BoardEvaluator   evaluator_;
+  private final LongBuffer       slots_;        // key ^ value, then value
+  private final MappedByteBuffer map_;          // null if not in a file
+  private final byte[]           referenced_;   // read since the hand passed
+  private final byte[]           hands_;        // the next way of each set
+  private final int              setMask_;
+
+  private final LongAdder hits_      = new LongAdder();
+  private final LongAdder misses_    = new LongAdder();
+  private final LongAdder evictions_ = new LongAdder();
+
+  /**
+   * Constructor. The cache lives on the heap.
+   *
+   * @param evaluator   Evaluates the boards not in the cache
+   * @param log2Size    The base-2 logarithm of the number of slots
+   */
+  EvaluationCache( BoardEvaluator evaluator, int log2Size )
+  {
+    this( evaluator, log2Size, null,
+          LongBuffer.allocate( 2 << checkSize( log2Size ) ) );
+  } // end constructor
+
+  private EvaluationCache( BoardEvaluator evaluator, int log2Size,
+                           MappedByteBuffer map, LongBuffer slots )
+  {
+    evaluator_  = evaluator;
+    map_        = map;
+    slots_      = slots;
+    referenced_ = new byte[ 1 << log2Size ];
+    hands_      = new byte[ ( 1 << log2Size ) / WAYS ];
+    setMask_    = ( 1 << log2Size ) / WAYS - 1;
+  } // end constructor
+
+  /**
+   * Opens a cache kept in a file, creating the file if need be. What the
+   * file held is kept only if it was made with the same size and tag.
+   *
+   * @param evaluator   Evaluates the boards not in the cache
+   * @param log2Size    The base-2 logarithm of the number of slots
+   * @param file        The file
+   * @param tag         Tells apart the evaluators a file may have been made
+   *                    with, such as a hash of the network's weights
+   * @return            The cache. Close it to write it all to the file.
+   */
+  static EvaluationCache open( BoardEvaluator evaluator, int log2Size,
+                               Path file, long tag ) throws IOException
+  {
+    checkSize( log2Size );
+    long bytes = HEADER_BYTES + ( 16L << log2Size );
+
+    try ( FileChannel channel = FileChannel.open( file,
+              StandardOpenOption.CREATE, StandardOpenOption.READ,
+              StandardOpenOption.WRITE ) ) {
+      ByteBuffer header = ByteBuffer.allocate( 20 )
+                                    .order( ByteOrder.LITTLE_ENDIAN );
+      channel.read( header, 0 );
+      header.flip();
+      boolean isSame = channel.size() == bytes && header.remaining() == 20
+          && header.getInt() == MAGIC && header.getInt() == VERSION
+          && header.getInt() == log2Size && header.getLong() == tag;
+
+      // Start over from a file of zeros, which is an empty cache
+      if ( !isSame )
+        channel.truncate( 0 );
+
+      MappedByteBuffer map
+          = channel.map( FileChannel.MapMode.READ_WRITE, 0, bytes );
+      map.order( ByteOrder.LITTLE_ENDIAN );
+      if ( !isSame )
+        map.putInt( 0, MAGIC ).putInt( 4, VERSION ).putInt( 8, log2Size )
+           .putLong( 12, tag );
+
+      LongBuffer slots = map.slice( HEADER_BYTES, ( int ) ( bytes
+          - HEADER_BYTES ) ).order( ByteOrder.LITTLE_ENDIAN ).asLongBuffer();
+      return new EvaluationCache( evaluator, log2Size, map, slots );
+    } // end try
+  } // end method open
+
+  private static int checkSize( int log2Size )
+  {
+    if ( log2Size < 3 || log2Size > MAX_LOG2_SIZE )
+      throw new IllegalArgumentException( "Bad cache size: 2^" + log2Size );
+
+    return log2Size;
+  } // end method checkSize
+
+  public double evaluate( long board )
+  {
+    long key = Bitboard.canonical( board );
+    if ( key == 0L )
+      return evaluator_.evaluate( key );   // 0 marks an empty slot
+
+    int first = setOf( key ) * WAYS;
+    for ( int slot = first; slot < first + WAYS; slot++ ) {
+      long value = slots_.get( 2 * slot + 1 );
+      if ( ( slots_.get( 2 * slot ) ^ value ) == key ) {
+        referenced_[ slot ] = 1;
+        hits_.increment();
+        return Double.longBitsToDouble( value );
+      } // end if
+    } // end for
+
+    misses_.increment();
+    double value = evaluator_.evaluate( key );
+    store( key, first, value );
+    return value;
+  } // end method evaluate
+
+  private int setOf( long key )
+  {
+    // Mix the bits so neighboring boards land far apart
+    long h = key * 0x9E3779B97F4A7C15L;
+    return ( int ) ( h ^ ( h >>> 32 ) ) & setMask_;
+  } // end method setOf
+
+  /**
+   * Puts a value in an empty slot of its set, or else in the slot the
+   * clock hand picks.
+   */
+  private void store( long key, int first, double value )
+  {
+    int victim = -1;
+    for ( int slot = first; slot < first + WAYS && victim < 0; slot++ )
+      if ( slots_.get( 2 * slot ) == 0L && slots_.get( 2 * slot + 1 ) == 0L )
+        victim = slot;
+
+    if ( victim < 0 ) {
+      // Other threads may set the bits again as the hand clears them, so
+      // the hand stops after two turns whatever it found
+      int set = first / WAYS;
+      int hand = hands_[ set ];
+      for ( int i = 0; i < 2 * WAYS && referenced_[ first + hand ] != 0;
+            i++ ) {
+        referenced_[ first + hand ] = 0;
+        hand = ( hand + 1 ) % WAYS;
+      } // end for
+      victim = first + hand;
+      hands_[ set ] = ( byte ) ( ( hand + 1 ) % WAYS );
+      evictions_.increment();
+    } // end if
+
+    long bits = Double.doubleToRawLongBits( value );
+    referenced_[ victim ] = 0;
+    slots_.put( 2 * victim + 1, bits );
+    slots_.put( 2 * victim, key ^ bits );
+  } // end method store
+
+  long getHits()
+  {
+    return hits_.sum();
+  } // end method getHits
+
+  long getMisses()
+  {
+    return misses_.sum();
+  } // end method getMisses
+
+  long getEvictions()
+  {
+    return evictions_.sum();
+  } // end method getEvictions
+
+  /**
+   * Writes a mapped cache to its file. Nothing to do for a cache on the
+   * heap. The cache can still be used after.
+   */
+  public void close()
+  {
+    if ( map_ != null )
+      map_.force();
+  } // end method close
+
+  public String toString()
+  {
+    long hits = getHits();
+    long lookups = hits + getMisses();
+    return String.format( "%,d hits, %,d misses ( %.1f%% hits ), %,d evictions",
+        hits, lookups - hits,
+        ( lookups == 0 ) ? 0.0 : 100.0 * hits / lookups, getEvictions() );
+  } // end method toString
+} // end class
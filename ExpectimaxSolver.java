@@ -0,0 +1,341 @@
+package game2048;
+
+// Concurrency
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Computer player that searches the moves ahead with expectimax. The player
+ * picks the move with the best expected outcome, and after each move a
+ * 2-tile or a 4-tile appears on a blank tile with the same odds that Game
+ * uses. Positions past the search depth are scored by a BoardEvaluator.
+ *
+ * The four moves at the root and the spawns near the top of the tree are
+ * searched as separate fork-join tasks. Every task shares one
+ * TranspositionTable, so a position reached along different move orders is
+ * only searched once. The table outlives each search, so the next move
+ * starts with the positions the last one finished. Any number of threads
+ * can search with one solver at once, and all of them share its table.
+ */
+final class ExpectimaxSolver
+  implements MovePolicy
+{
+  // Odds of a spawned tile being a 2, as in Game
+  private static final double CHANCE_OF_TWO = 0.9;
+  // Spawn sequences less likely than this are not searched any deeper
+  private static final double MIN_PROBABILITY = 0.0001;
+  // Least that the odds of a path can shrink by from one chance node to the
+  // next: a 4-tile on one of 15 blank tiles
+  private static final double LEAST_STEP = ( 1.0 - CHANCE_OF_TWO ) / 15;
+  // Chance nodes with at least this many moves left below them are split
+  // into one task per blank tile
+  private static final int PARALLEL_DEPTH = 2;
+
+  private static final int TABLE_LOG2_SIZE = 22;
+
+  private static final BooleanSupplier NEVER = () -> false;
+
+  private final int                depth_;
+  private final BoardEvaluator     evaluator_;
+  private final ForkJoinPool       pool_;
+  private final TranspositionTable table_;
+
+  /**
+   * Constructor. Searches with the hand-tuned heuristic on the common pool.
+   *
+   * @param depth   The number of moves to look ahead, counting this one
+   */
+  ExpectimaxSolver( int depth )
+  {
+    this( depth, new HeuristicEvaluator(), ForkJoinPool.commonPool() );
+  } // end constructor
+
+  /**
+   * Constructor
+   *
+   * @param depth       The number of moves to look ahead, counting this one
+   * @param evaluator   Scores the positions at the end of the search
+   * @param pool        Runs the search tasks
+   */
+  ExpectimaxSolver( int depth, BoardEvaluator evaluator, ForkJoinPool pool )
+  {
+    if ( depth < 1 )
+      throw new IllegalArgumentException( "depth must be at least 1" );
+
+    depth_     = depth;
+    evaluator_ = evaluator;
+    pool_      = pool;
+    table_     = new TranspositionTable( TABLE_LOG2_SIZE );
+  } // end constructor
+
+  /**
+   * Finds the move with the best expected outcome.
+   *
+   * @param board   The board packed by Bitboard
+   * @return        One of Bitboard.LEFT, RIGHT, UP or DOWN, or -1 if no
+   *                move is possible
+   */
+  int bestMove( long board )
+  {
+    return bestMove( board, depth_, NEVER );
+  } // end method bestMove
+
+  /**
+   * Works out the expected outcome of every move.
+   *
+   * @param board   The board packed by Bitboard
+   * @return        The value of each move, by direction; NaN for a move
+   *                that doesn't change the board
+   */
+  double[] moveValues( long board )
+  {
+    return moveValues( board, depth_, NEVER );
+  } // end method moveValues
+
+  /**
+   * Finds the move with the best expected outcome, giving up as soon as
+   * told to. Positions whose search was cut short are never stored, so
+   * whatever went into the table stays good for later searches.
+   *
+   * @param board   The board packed by Bitboard
+   * @param depth   The number of moves to look ahead, counting this one
+   * @param stop    Polled throughout the search; once it returns true the
+   *                search ends with a CancellationException
+   * @return        One of Bitboard.LEFT, RIGHT, UP or DOWN, or -1 if no
+   *                move is possible
+   */
+  int bestMove( long board, int depth, BooleanSupplier stop )
+  {
+    double[] values = moveValues( board, depth, stop );
+
+    int    best      = -1;
+    double bestValue = -1.0;
+    for ( int direction = 0; direction < 4; direction++ )
+      if ( values[ direction ] > bestValue ) {
+        bestValue = values[ direction ];
+        best = direction;
+      } // end if
+
+    return best;
+  } // end method bestMove
+
+  /**
+   * Works out the expected outcome of every move.
+   *
+   * @param board   The board packed by Bitboard
+   * @param depth   The number of moves to look ahead, counting this one
+   * @param stop    Polled throughout the search; once it returns true the
+   *                search ends with a CancellationException
+   * @return        The value of each move, by direction; NaN for a move
+   *                that doesn't change the board
+   */
+  double[] moveValues( long board, int depth, BooleanSupplier stop )
+  {
+    if ( depth < 1 )
+      throw new IllegalArgumentException( "depth must be at least 1" );
+
+    List< ChanceTask > tasks = new ArrayList< ChanceTask >( 4 );
+    int[] directions = new int[ 4 ];
+
+    for ( int direction = 0; direction < 4; direction++ ) {
+      long moved = Bitboard.move( board, direction );
+      if ( moved != board ) {
+        directions[ tasks.size() ] = direction;
+        tasks.add( new ChanceTask( moved, depth - 1, 1.0, stop ) );
+      } // end if
+    } // end for
+
+    double[] values = { Double.NaN, Double.NaN, Double.NaN, Double.NaN };
+    if ( tasks.isEmpty() )
+      return values;
+
+    pool_.invoke( new RecursiveTask< Void >() {
+      protected Void compute()
+      {
+        ForkJoinTask.invokeAll( tasks );
+        return null;
+      } // end method compute
+    } );
+
+    for ( int i = 0; i < tasks.size(); i++ )
+      values[ directions[ i ] ] = tasks.get( i ).join();
+
+    return values;
+  } // end method moveValues
+
+  public int chooseMove( long board )
+  {
+    return bestMove( board );
+  } // end method chooseMove
+
+  /**
+   * Forgets the positions searched so far.
+   */
+  void clearTable()
+  {
+    table_.clear();
+  } // end method clearTable
+
+  /**
+   * Expected value of a board right after a move, before the new tile.
+   *
+   * @param board         The board packed by Bitboard
+   * @param depth         The number of moves left to search
+   * @param probability   The chance of reaching this board
+   * @param stop          Ends the search when it returns true
+   */
+  private double chanceNode( long board, int depth, double probability,
+                             BooleanSupplier stop )
+  {
+    if ( depth == 0 || probability < MIN_PROBABILITY )
+      return evaluator_.evaluate( board );
+    if ( stop.getAsBoolean() )
+      throw new CancellationException();
+
+    double cached = table_.get( board, depth, probability );
+    if ( !Double.isNaN( cached ) )
+      return cached;
+
+    int    nBlanks = Bitboard.countBlanks( board );
+    double p       = probability / nBlanks;
+    double sum     = 0.0;
+
+    if ( depth >= PARALLEL_DEPTH ) {
+      List< SpawnTask > tasks = new ArrayList< SpawnTask >( nBlanks );
+      for ( int shift = 0; shift < 64; shift += 4 )
+        if ( ( ( board >>> shift ) & 0xF ) == 0 )
+          tasks.add( new SpawnTask( board, shift, depth, p, stop ) );
+
+      ForkJoinTask.invokeAll( tasks );
+      for ( SpawnTask task : tasks )
+        sum += task.join();
+    } // end if
+    else
+      for ( int shift = 0; shift < 64; shift += 4 )
+        if ( ( ( board >>> shift ) & 0xF ) == 0 )
+          sum += spawnNode( board, shift, depth, p, stop );
+
+    // Unless even the least likely path below stays above the cutoff, the
+    // value may have skipped some spawns and only holds for paths this likely
+    double value = sum / nBlanks;
+    double limit = ( probability * Math.pow( LEAST_STEP, depth - 1 )
+                         >= MIN_PROBABILITY )
+        ? Double.POSITIVE_INFINITY
+        : probability;
+    table_.put( board, depth, limit, value );
+    return value;
+  } // end method chanceNode
+
+  /**
+   * Expected value of spawning a tile on one blank tile.
+   */
+  private double spawnNode( long board, int shift, int depth,
+                            double probability, BooleanSupplier stop )
+  {
+    return CHANCE_OF_TWO
+            * maxNode( board | ( 1L << shift ), depth,
+                       probability * CHANCE_OF_TWO, stop )
+        + ( 1.0 - CHANCE_OF_TWO )
+            * maxNode( board | ( 2L << shift ), depth,
+                       probability * ( 1.0 - CHANCE_OF_TWO ), stop );
+  } // end method spawnNode
+
+  /**
+   * Value of the best move on a board where the player is to move.
+   */
+  private double maxNode( long board, int depth, double probability,
+                          BooleanSupplier stop )
+  {
+    double best = 0.0;   // no move left is the worst outcome
+
+    for ( int direction = 0; direction < 4; direction++ ) {
+      long moved = Bitboard.move( board, direction );
+      if ( moved != board )
+        best = Math.max( best,
+                         chanceNode( moved, depth - 1, probability, stop ) );
+    } // end for
+
+    return best;
+  } // end method maxNode
+
+  private class ChanceTask extends RecursiveTask< Double >
+  {
+    private final long            board_;
+    private final int             depth_;
+    private final double          probability_;
+    private final BooleanSupplier stop_;
+
+    ChanceTask( long board, int depth, double probability,
+                BooleanSupplier stop )
+    {
+      board_       = board;
+      depth_       = depth;
+      probability_ = probability;
+      stop_        = stop;
+    } // end constructor
+
+    protected Double compute()
+    {
+      return chanceNode( board_, depth_, probability_, stop_ );
+    } // end method compute
+  } // end inner class ChanceTask
+
+  private class SpawnTask extends RecursiveTask< Double >
+  {
+    private final long            board_;
+    private final int             shift_;
+    private final int             depth_;
+    private final double          probability_;
+    private final BooleanSupplier stop_;
+
+    SpawnTask( long board, int shift, int depth, double probability,
+               BooleanSupplier stop )
+    {
+      board_       = board;
+      shift_       = shift;
+      depth_       = depth;
+      probability_ = probability;
+      stop_        = stop;
+    } // end constructor
+
+    protected Double compute()
+    {
+      return spawnNode( board_, shift_, depth_, probability_, stop_ );
+    } // end method compute
+  } // end inner class SpawnTask
+
+  /**
+   * Plays one game without a display and reports how long each new largest
+   * tile took to reach.
+   *
+   * @param args    Optionally, the search depth ( 3 by default )
+   */
+  public static void main( String[] args )
+  {
+    int depth = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 3;
+
+    ExpectimaxSolver solver = new ExpectimaxSolver( depth );
+    Game game = new Game();
+    long start = System.nanoTime();
+    int largestTile = 0;
+
+    while ( game.canMove() ) {
+      game.move( solver.bestMove( game.getBoard() ) );
+
+      if ( game.getLargestTile() > largestTile ) {
+        largestTile = game.getLargestTile();
+        System.out.format( "%5d after %,9d moves, %,10.3f s%n",
+            largestTile,
+            game.getMoves(),
+            ( System.nanoTime() - start ) / 1e9 );
+      } // end if
+    } // end while
+
+    System.out.format( "Score: %,d%n", game.getScore() );
+  } // end main
+} // end class
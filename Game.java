@@ -0,0 +1,402 @@
+package game2048;
+
+// Utilities
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The rules and state of one game of 2048: the board, the score, the number
+ * of moves made and the largest tile. Nothing here depends on Swing, so
+ * games can be played without a display.
+ *
+ * The 4x4 board lives in one long and moves through Bitboard. Every other
+ * size keeps one packed long per row and moves through PackedBoard.
+ */
+class Game
+{
+  static final int DEFAULT_SIZE = Bitboard.SIZE;   // rows and columns
+
+  private static final boolean CAN_SPAWN_FOUR = true;
+  // 10% chance to spawn a 4-tile
+  private static final double CHANCE_TO_SPAWN_4 = 0.9;
+
+  private final int         size_;   // Number of rows and columns
+  private final PackedBoard wide_;   // Engine for other sizes, null for 4x4
+  private final long[]      rows_;   // Tile values for other sizes, by row
+
+  private long board_;         // Stores the 4x4 tile values, packed by Bitboard
+  private int  score_;         // Records the player's score
+  private int  nMoves_;        // Counts the number of moves
+  private int  largestTile_;   // Records the largest tile
+  private long seed_;          // Seed the current game started from
+  private int  legalMoves_;    // Moves that change the board, one bit each
+
+  // Picks the new tiles. Seeded anew for every game.
+  private final GameRandom random_ = new GameRandom( 0L );
+
+  private boolean     isTimed_;        // Specifies if moves go to Metrics
+  private boolean     keepsJournal_;   // Specifies if moves are recorded
+  private GameJournal journal_;        // Records the moves of this game
+
+  /**
+   * Constructor. Starts a new game from a random seed.
+   */
+  Game()
+  {
+    this( DEFAULT_SIZE, ThreadLocalRandom.current().nextLong() );
+  } // end constructor
+
+  /**
+   * Constructor. Starts a new game from a given seed.
+   *
+   * @param seed    The seed. Games with the same seed and the same moves
+   *                end up with the same tiles.
+   */
+  Game( long seed )
+  {
+    this( DEFAULT_SIZE, seed );
+  } // end constructor
+
+  /**
+   * Constructor. Starts a new game on a board of any supported size.
+   *
+   * @param size    The number of rows and columns, from
+   *                PackedBoard.MIN_SIZE to PackedBoard.MAX_SIZE
+   * @param seed    The seed of the first game
+   */
+  Game( int size, long seed )
+  {
+    size_ = size;
+    wide_ = ( size == Bitboard.SIZE ) ? null : PackedBoard.forSize( size );
+    rows_ = ( wide_ == null ) ? null : new long[ size ];
+    reset( seed );
+  } // end constructor
+
+  /**
+   * Resets everything and starts a new game from a random seed.
+   */
+  void reset()
+  {
+    reset( ThreadLocalRandom.current().nextLong() );
+  } // end method reset
+
+  /**
+   * Resets everything and spawns the two starting tiles.
+   *
+   * @param seed    The seed of the new game
+   */
+  void reset( long seed )
+  {
+    seed_ = seed;
+    random_.setState( seed );
+    journal_ = keepsJournal_ ? new GameJournal( size_, seed ) : null;
+    board_ = 0L;
+    if ( wide_ != null )
+      Arrays.fill( rows_, 0L );
+    score_ = 0;
+    nMoves_ = 0;
+    largestTile_ = 0;
+
+    // Spawn two random tiles
+    spawnNewTile( !CAN_SPAWN_FOUR );
+    spawnNewTile( CAN_SPAWN_FOUR );
+  } // end method reset
+
+  /**
+   * Moves the tiles and spawns a new tile if anything moved.
+   *
+   * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN
+   * @return            True if the board changed.
+   */
+  boolean move( int direction )
+  {
+    if ( ( legalMoves_ & ( 1 << direction ) ) == 0 )
+      return false;
+
+    long start = isTimed_ ? System.nanoTime() : 0L;
+    int points;
+    if ( wide_ == null ) {
+      points = Bitboard.score( board_, direction );
+      board_ = Bitboard.move( board_, direction );
+    } // end if
+    else
+      points = wide_.move( rows_, direction );
+
+    if ( points > 0 ) {
+      score_ += points;
+      largestTile_ = Math.max( largestTile_, ( wide_ == null )
+          ? Bitboard.largestTile( board_ )
+          : wide_.largestTile( rows_ ) );
+    } // end if
+
+    long moved = isTimed_ ? System.nanoTime() : 0L;
+    spawnNewTile( CAN_SPAWN_FOUR );
+    nMoves_++;
+
+    if ( isTimed_ )
+      Metrics.moved( start, moved, System.nanoTime(), direction, points );
+
+    if ( journal_ != null )
+      journal_.add( direction );
+
+    return true;
+  } // end method move
+
+  /**
+   * Puts the game back in a state saved earlier. 4x4 boards only.
+   *
+   * @param board         The board packed by Bitboard
+   * @param score         The player's score
+   * @param nMoves        The number of moves made
+   * @param largestTile   The largest tile made so far
+   */
+  void restore( long board, int score, int nMoves, int largestTile )
+  {
+    board_ = board;
+    legalMoves_ = Bitboard.legalMoves( board );
+    score_ = score;
+    nMoves_ = nMoves;
+    largestTile_ = largestTile;
+  } // end method restore
+
+  /**
+   * Puts the game back in a state saved earlier, on a board of any size,
+   * along with the random numbers it was about to draw. The journal, if
+   * any, is dropped since it no longer starts from the game's seed.
+   *
+   * @param rows          The packed rows, as filled in by getRows
+   * @param score         The player's score
+   * @param nMoves        The number of moves made
+   * @param largestTile   The largest tile made so far
+   * @param seed          The seed the game started from
+   * @param randomState   The state of the random numbers, as returned by
+   *                      getRandomState
+   */
+  void restore( long[] rows, int score, int nMoves, int largestTile,
+                long seed, long randomState )
+  {
+    if ( wide_ == null ) {
+      long board = 0L;
+      for ( int row = 0; row < size_; row++ )
+        board |= rows[ row ] << ( 16 * row );
+      restore( board, score, nMoves, largestTile );
+    } // end if
+    else {
+      System.arraycopy( rows, 0, rows_, 0, size_ );
+      legalMoves_ = wide_.legalMoves( rows_ );
+      score_ = score;
+      nMoves_ = nMoves;
+      largestTile_ = largestTile;
+    } // end else
+
+    seed_ = seed;
+    random_.setState( randomState );
+    journal_ = null;
+  } // end method restore
+
+  /**
+   * Takes the game back to a state it passed through, as when moves are
+   * undone. The seed stays, and the journal keeps the moves that led
+   * there.
+   *
+   * @param rows          The packed rows, as filled in by getRows
+   * @param score         The player's score
+   * @param nMoves        The number of moves made
+   * @param largestTile   The largest tile made so far
+   * @param randomState   The state of the random numbers, as returned by
+   *                      getRandomState
+   */
+  void rewind( long[] rows, int score, int nMoves, int largestTile,
+               long randomState )
+  {
+    GameJournal journal = journal_;
+    restore( rows, score, nMoves, largestTile, seed_, randomState );
+
+    if ( journal != null && journal.size() >= nMoves ) {
+      journal.truncate( nMoves );
+      journal_ = journal;
+    } // end if
+  } // end method rewind
+
+  /**
+   * Spawn a 2-tile or a 4-tile on a random blank tile.
+   *
+   * @param canSpawnFour  Specifies if the game should try to spawn a
+   *                      4-tile or not
+   */
+  void spawnNewTile( boolean canSpawnFour )
+  {
+    if ( wide_ != null ) {
+      spawnWideTile( canSpawnFour );
+      return;
+    } // end if
+
+    long blanks = Bitboard.blankMask( board_ );
+    if ( blanks == 0 ) {
+      legalMoves_ = Bitboard.legalMoves( board_ );
+      return;
+    } // end if
+
+    // Determine if tile has a chance to spawn a 4
+    int exponent = 1;
+    if ( canSpawnFour && random_.nextDouble() > CHANCE_TO_SPAWN_4 )
+      exponent = 2;
+
+    // Go straight to the k-th blank tile
+    for ( int k = random_.nextInt( Long.bitCount( blanks ) ); k > 0; k-- )
+      blanks &= blanks - 1;
+
+    board_ |= ( long ) exponent << Long.numberOfTrailingZeros( blanks );
+    legalMoves_ = Bitboard.legalMoves( board_ );
+  } // end method spawnNewTile
+
+  /**
+   * Spawns a new tile on a board that isn't 4x4, drawing the same random
+   * numbers in the same order as spawnNewTile.
+   */
+  private void spawnWideTile( boolean canSpawnFour )
+  {
+    int nBlanks = wide_.countBlanks( rows_ );
+    if ( nBlanks > 0 ) {
+      int exponent = 1;
+      if ( canSpawnFour && random_.nextDouble() > CHANCE_TO_SPAWN_4 )
+        exponent = 2;
+
+      wide_.fillBlank( rows_, random_.nextInt( nBlanks ), exponent );
+    } // end if
+
+    legalMoves_ = wide_.legalMoves( rows_ );
+  } // end method spawnWideTile
+
+  /**
+   * Checks if there are possible moves. The game ends when there are no more
+   * possible moves.
+   *
+   * @return    True if movement is still possible.
+   */
+  boolean canMove()
+  {
+    return legalMoves_ != 0;
+  } // end method canMove
+
+  /**
+   * @return    A mask with bit 1 << direction set for each move that
+   *            changes the board, as in Bitboard.legalMoves
+   */
+  int getLegalMoves()
+  {
+    return legalMoves_;
+  } // end method getLegalMoves
+
+  /**
+   * @param row   The row of the tile
+   * @param col   The column of the tile
+   * @return      The value of the tile, or 0 if blank
+   */
+  int getTile( int row, int col )
+  {
+    if ( wide_ == null )
+      return Bitboard.getTile( board_, row, col );
+
+    int exponent = ( int ) ( rows_[ row ] >>> ( 4 * col ) ) & 0xF;
+    return ( exponent == 0 ) ? 0 : 1 << exponent;
+  } // end method getTile
+
+  /**
+   * Copies the board into packed rows, whatever its size.
+   *
+   * @param rows    Receives one long per row, 4 bits per tile with column 0
+   *                in the lowest bits. Must hold getSize() rows.
+   */
+  void getRows( long[] rows )
+  {
+    if ( wide_ != null ) {
+      System.arraycopy( rows_, 0, rows, 0, size_ );
+      return;
+    } // end if
+
+    for ( int row = 0; row < size_; row++ )
+      rows[ row ] = ( board_ >>> ( 16 * row ) ) & 0xFFFFL;
+  } // end method getRows
+
+  /**
+   * Specifies if the time taken by each move and spawn goes to Metrics.
+   * Off by default, so batches of headless games don't pay for it.
+   *
+   * @param isTimed   True to time the moves
+   */
+  void setTimed( boolean isTimed )
+  {
+    isTimed_ = isTimed && Metrics.ENABLED;
+  } // end method setTimed
+
+  /**
+   * Specifies if the moves of the games to come are recorded in a journal.
+   * A game that has no moves yet starts its journal right away.
+   *
+   * @param keepsJournal  True to record the moves
+   */
+  void keepJournal( boolean keepsJournal )
+  {
+    keepsJournal_ = keepsJournal;
+    if ( !keepsJournal )
+      journal_ = null;
+    else if ( journal_ == null && nMoves_ == 0 )
+      journal_ = new GameJournal( size_, seed_ );
+  } // end method keepJournal
+
+  /**
+   * @return    The journal of the current game, or null if none is kept
+   */
+  GameJournal getJournal()
+  {
+    return journal_;
+  } // end method getJournal
+
+  /**
+   * @return    The state of the random numbers that pick the next tiles
+   */
+  long getRandomState()
+  {
+    return random_.getState();
+  } // end method getRandomState
+
+  /**
+   * @return    The seed the current game started from
+   */
+  long getSeed()
+  {
+    return seed_;
+  } // end method getSeed
+
+  /**
+   * @return    The number of rows and columns
+   */
+  int getSize()
+  {
+    return size_;
+  } // end method getSize
+
+  /**
+   * @return    The 4x4 board packed by Bitboard, or 0 for other sizes
+   */
+  long getBoard()
+  {
+    return board_;
+  } // end method getBoard
+
+  int getScore()
+  {
+    return score_;
+  } // end method getScore
+
+  int getMoves()
+  {
+    return nMoves_;
+  } // end method getMoves
+
+  int getLargestTile()
+  {
+    return largestTile_;
+  } // end method getLargestTile
+} // end class
@@ -0,0 +1,254 @@
+package game2048;
+
+// Utilities
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Concurrency
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Goes over a finished 4x4 game and weighs every move played against the
+ * best move expectimax finds from the same board. What a move loses is the
+ * best move's value less its own. The values carry a large constant from
+ * the evaluator, so losses are compared as they are and not as a share of
+ * the value, which would make every move look nearly as good as the best.
+ * The MAX_BLUNDERS moves that lose the most are the blunders.
+ *
+ * The journal is replayed once to get the board before every move. The
+ * boards don't depend on each other, so each one is searched as a task of
+ * its own, all at once across the pool, in the order they were played.
+ * Each result is passed on the moment it is found, so the first moves of a
+ * long game show up long before the last are done. The tasks share one
+ * solver, and so one transposition table, as neighbouring boards share
+ * much of their search.
+ */
+final class GameAnalyzer
+{
+  static final int DEFAULT_DEPTH = 3;
+
+  // Moves a report lists as blunders, worst first
+  static final int MAX_BLUNDERS = 10;
+
+  // Orders moves by what they lose, the most first
+  static final Comparator< Position > WORST_FIRST
+      = Comparator.comparingDouble( Position::getLoss ).reversed();
+
+  /**
+   * One move of the game, weighed.
+   */
+  static final class Position
+  {
+    final int    index;         // the number of the move, from 0
+    final long   board;         // the board before the move
+    final int    played;        // the direction played
+    final int    best;          // the direction worth most
+    final double playedValue;
+    final double bestValue;
+
+    Position( int index, long board, int played, int best,
+              double playedValue, double bestValue )
+    {
+      this.index       = index;
+      this.board       = board;
+      this.played      = played;
+      this.best        = best;
+      this.playedValue = playedValue;
+      this.bestValue   = bestValue;
+    } // end constructor
+
+    /**
+     * @return    The value the move played gave up, 0 for the best move
+     */
+    double getLoss()
+    {
+      return bestValue - playedValue;
+    } // end method getLoss
+
+    public String toString()
+    {
+      return String.format( "Move %,d: played %s, best %s, %,.0f worse",
+          index + 1, NAMES[ played ], NAMES[ best ], getLoss() );
+    } // end method toString
+  } // end class Position
+
+  /**
+   * The analysis of a whole game.
+   */
+  static final class Report
+  {
+    final int              nPositions;
+    final int              nBest;       // moves that were the best
+    final List< Position > blunders;    // the worst ones, worst first
+
+    Report( Position[] positions )
+    {
+      int nBest = 0;
+      List< Position > blunders = new ArrayList<>();
+      for ( Position position : positions ) {
+        if ( position.played == position.best )
+          nBest++;
+        else
+          blunders.add( position );
+      } // end for
+      blunders.sort( WORST_FIRST );
+
+      this.nPositions = positions.length;
+      this.nBest      = nBest;
+      this.blunders   = blunders.subList( 0,
+          Math.min( MAX_BLUNDERS, blunders.size() ) );
+    } // end constructor
+  } // end class Report
+
+  private static final String[] NAMES = { "left", "right", "up", "down" };
+
+  private final int              depth_;
+  private final ForkJoinPool     pool_;
+  private final ExpectimaxSolver solver_;
+
+  /**
+   * Constructor. Searches DEFAULT_DEPTH moves ahead on the common pool.
+   */
+  GameAnalyzer()
+  {
+    this( DEFAULT_DEPTH, ForkJoinPool.commonPool() );
+  } // end constructor
+
+  /**
+   * Constructor
+   *
+   * @param depth   The number of moves to look ahead from each board
+   * @param pool    Runs the searches
+   */
+  GameAnalyzer( int depth, ForkJoinPool pool )
+  {
+    depth_  = depth;
+    pool_   = pool;
+    solver_ = new ExpectimaxSolver( depth, new HeuristicEvaluator(), pool );
+  } // end constructor
+
+  /**
+   * Starts weighing every move of a game. Returns at once.
+   *
+   * @param journal     The journal of a 4x4 game. Must not change until the
+   *                    analysis is done.
+   * @param listener    Gets each move as soon as it is weighed, on one of
+   *                    the pool's threads, in no set order
+   * @return            Completes with the report once every move is
+   *                    weighed. Cancelling it stops the searches.
+   */
+  CompletableFuture< Report > analyze( GameJournal journal,
+                                       Consumer< Position > listener )
+  {
+    if ( journal.getSize() != Bitboard.SIZE )
+      throw new IllegalArgumentException(
+          "Can't analyze a game of size " + journal.getSize() );
+
+    // Replay the game for the board before each move
+    int nMoves = journal.size();
+    long[] boards = new long[ nMoves ];
+    int[] moves = new int[ nMoves ];
+    Game game = new Game( Bitboard.SIZE, journal.getSeed() );
+    for ( int i = 0; i < nMoves; i++ ) {
+      boards[ i ] = game.getBoard();
+      moves[ i ] = journal.getMove( i );
+      if ( !game.move( moves[ i ] ) )
+        throw new IllegalStateException(
+            "Move " + i + " of the journal changes nothing" );
+    } // end for
+
+    CompletableFuture< Report > report = new CompletableFuture<>();
+    Position[] positions = new Position[ nMoves ];
+    AtomicInteger nLeft = new AtomicInteger( nMoves );
+    if ( nMoves == 0 )
+      report.complete( new Report( positions ) );
+
+    for ( int i = 0; i < nMoves; i++ ) {
+      int index = i;
+      pool_.execute( () -> {
+        if ( report.isDone() )
+          return;   // cancelled, or another move failed
+
+        try {
+          positions[ index ] = weigh( index, boards[ index ], moves[ index ],
+                                      report::isDone );
+        } // end try
+        catch ( CancellationException exception ) {
+          return;
+        } // end catch
+        catch ( RuntimeException exception ) {
+          report.completeExceptionally( exception );
+          return;
+        } // end catch
+
+        listener.accept( positions[ index ] );
+        if ( nLeft.decrementAndGet() == 0 )
+          report.complete( new Report( positions ) );
+      } );
+    } // end for
+
+    return report;
+  } // end method analyze
+
+  /**
+   * Weighs one move against the best one from its board.
+   */
+  private Position weigh( int index, long board, int played,
+                          BooleanSupplier stop )
+  {
+    double[] values = solver_.moveValues( board, depth_, stop );
+
+    int best = played;
+    for ( int direction = 0; direction < 4; direction++ )
+      if ( values[ direction ] > values[ best ] )
+        best = direction;
+
+    return new Position( index, board, played, best, values[ played ],
+                         values[ best ] );
+  } // end method weigh
+
+  /**
+   * Plays a game with expectimax and prints what an analysis of it finds,
+   * and how soon.
+   *
+   * @param args    Optionally, the seed, the depth the game is played to
+   *                ( 1 by default ) and the depth of the analysis
+   */
+  public static void main( String[] args )
+  {
+    long seed = ( args.length > 0 ) ? Long.parseLong( args[ 0 ] )
+                                    : System.nanoTime();
+    int playDepth = ( args.length > 1 ) ? Integer.parseInt( args[ 1 ] ) : 1;
+    int depth = ( args.length > 2 ) ? Integer.parseInt( args[ 2 ] )
+                                    : DEFAULT_DEPTH;
+
+    Game game = new Game( Bitboard.SIZE, seed );
+    game.keepJournal( true );
+    ExpectimaxSolver player = new ExpectimaxSolver( playDepth );
+    while ( game.canMove() )
+      game.move( player.bestMove( game.getBoard() ) );
+    System.out.format( "Seed %d: %,d moves, score %,d%n",
+        seed, game.getMoves(), game.getScore() );
+
+    long start = System.nanoTime();
+    AtomicLong first = new AtomicLong();
+    Report report = new GameAnalyzer( depth, ForkJoinPool.commonPool() )
+        .analyze( game.getJournal(), position ->
+            first.compareAndSet( 0L, System.nanoTime() - start ) ).join();
+    double seconds = ( System.nanoTime() - start ) / 1e9;
+
+    System.out.format( "First move weighed after %.3f s, all after %.3f s%n",
+        first.get() / 1e9, seconds );
+    System.out.format( "Best moves: %,d of %,d%n",
+        report.nBest, report.nPositions );
+    for ( Position position : report.blunders )
+      System.out.println( "  " + position );
+  } // end main
+} // end class
@@ -0,0 +1,345 @@
+package game2048;
+
+// IO
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Networking
+import java.net.InetAddress;
+import java.net.Socket;
+
+// Concurrency
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays on a GameServer over one connection, and keeps a copy of the state
+ * the server last sent. Run on its own, it is a load test: many sessions
+ * at once, each sending batches of random moves, reporting the moves per
+ * second and the time a batch takes to come back.
+ */
+final class GameClient implements Closeable
+{
+  private final Socket           socket_;
+  private final DataInputStream  in_;
+  private final DataOutputStream out_;
+
+  private long   sessionId_;
+  private long[] rows_ = new long[ 0 ];
+  private int    score_;
+  private int    nMoves_;
+  private int    largestTile_;
+  private int    legalMoves_;
+
+  /**
+   * Constructor. Connects to a server on this machine.
+   *
+   * @param port    The port of the server
+   */
+  GameClient( int port ) throws IOException
+  {
+    socket_ = new Socket( InetAddress.getLoopbackAddress(), port );
+    socket_.setTcpNoDelay( true );
+    in_  = new DataInputStream(
+        new BufferedInputStream( socket_.getInputStream() ) );
+    out_ = new DataOutputStream(
+        new BufferedOutputStream( socket_.getOutputStream() ) );
+  } // end constructor
+
+  /**
+   * Starts a new game on the server.
+   *
+   * @param size    The number of rows and columns of the board
+   * @param seed    The seed of the game
+   * @return        The id of the new session
+   */
+  long newGame( int size, long seed ) throws IOException
+  {
+    out_.writeByte( GameServer.OP_NEW );
+    out_.writeByte( size );
+    out_.writeLong( seed );
+    out_.flush();
+    readOpened();
+    return sessionId_;
+  } // end method newGame
+
+  /**
+   * Picks up a session left earlier, on this connection or another.
+   *
+   * @param id  The id of the session
+   * @return    False if the server doesn't know the session or another
+   *            connection has it
+   */
+  boolean resume( long id ) throws IOException
+  {
+    out_.writeByte( GameServer.OP_RESUME );
+    out_.writeLong( id );
+    out_.flush();
+    return readOpened();
+  } // end method resume
+
+  /**
+   * Ends the session in use for good. The server forgets it, so it can't
+   * be resumed. Sessions left without ending are parked on the server's
+   * disk once idle, and stay there until resumed.
+   */
+  void endGame() throws IOException
+  {
+    out_.writeByte( GameServer.OP_END );
+    out_.flush();
+    checkStatus( in_.readUnsignedByte() );
+  } // end method endGame
+
+  /**
+   * Sends a batch of moves without waiting for the reply. Call readMoves
+   * once for every batch sent.
+   *
+   * @param moves   The directions, each one of Bitboard.LEFT, RIGHT, UP or
+   *                DOWN
+   * @param n       The number of moves to send, at most GameServer.MAX_BATCH
+   */
+  void sendMoves( int[] moves, int n ) throws IOException
+  {
+    out_.writeByte( GameServer.OP_MOVES );
+    out_.writeShort( n );
+    for ( int i = 0; i < n; i += 4 ) {
+      int packed = 0;
+      for ( int j = i; j < Math.min( n, i + 4 ); j++ )
+        packed |= moves[ j ] << ( 2 * ( j - i ) );
+      out_.writeByte( packed );
+    } // end for
+  } // end method sendMoves
+
+  /**
+   * Waits for the reply to the oldest batch sent.
+   *
+   * @return    The number of moves of the batch that changed the board
+   */
+  int readMoves() throws IOException
+  {
+    out_.flush();
+    checkStatus( in_.readUnsignedByte() );
+    int nApplied = in_.readUnsignedShort();
+    readState();
+    return nApplied;
+  } // end method readMoves
+
+  /**
+   * Sends a batch of moves and waits for its reply.
+   *
+   * @return    The number of moves that changed the board
+   */
+  int move( int[] moves, int n ) throws IOException
+  {
+    sendMoves( moves, n );
+    return readMoves();
+  } // end method move
+
+  /**
+   * @return    The server's metrics, as printed by Metrics.print
+   */
+  String metrics() throws IOException
+  {
+    out_.writeByte( GameServer.OP_METRICS );
+    out_.flush();
+    checkStatus( in_.readUnsignedByte() );
+    return in_.readUTF();
+  } // end method metrics
+
+  private boolean readOpened() throws IOException
+  {
+    int status = in_.readUnsignedByte();
+    if ( status == GameServer.NO_SESSION )
+      return false;
+    checkStatus( status );
+
+    sessionId_ = in_.readLong();
+    int size = in_.readUnsignedByte();
+    if ( rows_.length != size )
+      rows_ = new long[ size ];
+    readState();
+    return true;
+  } // end method readOpened
+
+  private void readState() throws IOException
+  {
+    score_       = in_.readInt();
+    nMoves_      = in_.readInt();
+    largestTile_ = in_.readInt();
+    legalMoves_  = in_.readUnsignedByte();
+
+    int changed = in_.readUnsignedByte();
+    for ( int row = 0; row < rows_.length; row++ )
+      if ( ( changed & ( 1 << row ) ) != 0 )
+        rows_[ row ] = in_.readLong();
+  } // end method readState
+
+  private static void checkStatus( int status ) throws IOException
+  {
+    if ( status != GameServer.OK )
+      throw new IOException( "Server refused the request: " + status );
+  } // end method checkStatus
+
+  long getSessionId()
+  {
+    return sessionId_;
+  } // end method getSessionId
+
+  /**
+   * @return    The packed rows of the board, as the server last sent them
+   */
+  long[] getRows()
+  {
+    return rows_;
+  } // end method getRows
+
+  int getScore()
+  {
+    return score_;
+  } // end method getScore
+
+  int getMoves()
+  {
+    return nMoves_;
+  } // end method getMoves
+
+  int getLargestTile()
+  {
+    return largestTile_;
+  } // end method getLargestTile
+
+  boolean canMove()
+  {
+    return legalMoves_ != 0;
+  } // end method canMove
+
+  public void close() throws IOException
+  {
+    try {
+      out_.writeByte( GameServer.OP_CLOSE );
+      out_.flush();
+    } // end try
+    finally {
+      socket_.close();
+    } // end finally
+  } // end method close
+
+  /**
+   * Plays one session of the load test until the time is up.
+   *
+   * @return    The time every batch took to come back, in nanoseconds
+   */
+  private static long[] play( int port, int size, int batch, long seed,
+                              long deadline ) throws IOException
+  {
+    SplittableRandom random = new SplittableRandom( seed );
+    int[] moves = new int[ batch ];
+    long[] latencies = new long[ 1024 ];
+    int n = 0;
+
+    try ( GameClient client = new GameClient( port ) ) {
+      client.newGame( size, random.nextLong() );
+      while ( System.nanoTime() < deadline ) {
+        if ( !client.canMove() ) {
+          client.endGame();
+          client.newGame( size, random.nextLong() );
+        } // end if
+
+        for ( int i = 0; i < batch; i++ )
+          moves[ i ] = random.nextInt( 4 );
+
+        long start = System.nanoTime();
+        client.move( moves, batch );
+        if ( n == latencies.length )
+          latencies = Arrays.copyOf( latencies, 2 * n );
+        latencies[ n++ ] = System.nanoTime() - start;
+      } // end while
+      client.endGame();
+    } // end try
+
+    return Arrays.copyOf( latencies, n );
+  } // end method play
+
+  /**
+   * Runs a load test against a server on this machine.
+   *
+   * @param args    The number of sessions, then optionally the moves per
+   *                batch ( 16 ), the seconds to run ( 10 ), the board size
+   *                ( 4 ) and the port. Without a port, a server is started
+   *                in this JVM.
+   */
+  public static void main( String[] args ) throws Exception
+  {
+    int nSessions = Integer.parseInt( args[ 0 ] );
+    int batch   = ( args.length > 1 ) ? Integer.parseInt( args[ 1 ] ) : 16;
+    int seconds = ( args.length > 2 ) ? Integer.parseInt( args[ 2 ] ) : 10;
+    int size    = ( args.length > 3 ) ? Integer.parseInt( args[ 3 ] ) : 4;
+
+    GameServer server = null;
+    int port;
+    if ( args.length > 4 )
+      port = Integer.parseInt( args[ 4 ] );
+    else {
+      server = new GameServer( 0, GameServer.PARK_DIRECTORY, 60_000L );
+      GameServer started = server;
+      Thread thread = new Thread( () -> {
+        try {
+          started.serve();
+        } // end try
+        catch ( IOException exception ) {
+          System.err.format( "IOException: %s%n", exception );
+        } // end catch
+      }, "game-server" );
+      thread.setDaemon( true );
+      thread.start();
+      port = server.getPort();
+    } // end else
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( seconds );
+    ExecutorService executor = GameServer.newThreadPerTaskExecutor();
+    List< Future< long[] > > results = new ArrayList<>();
+    for ( int i = 0; i < nSessions; i++ ) {
+      long seed = GameRandom.mix( i );
+      results.add( executor.submit(
+          () -> play( port, size, batch, seed, deadline ) ) );
+    } // end for
+
+    List< long[] > perSession = new ArrayList<>();
+    int nBatches = 0;
+    for ( Future< long[] > result : results ) {
+      perSession.add( result.get() );
+      nBatches += perSession.get( perSession.size() - 1 ).length;
+    } // end for
+
+    long[] all = new long[ nBatches ];
+    int n = 0;
+    for ( long[] latencies : perSession ) {
+      System.arraycopy( latencies, 0, all, n, latencies.length );
+      n += latencies.length;
+    } // end for
+    executor.shutdown();
+    if ( server != null )
+      server.close();
+
+    Arrays.sort( all );
+    int nCores = Runtime.getRuntime().availableProcessors();
+    System.out.format( "Sessions:          %,d on %d cores%n", nSessions, nCores );
+    System.out.format( "Moves per second:  %,.0f%n",
+        ( double ) all.length * batch / seconds );
+    if ( all.length > 0 ) {
+      System.out.format( "Batch p50 latency: %,.1f us%n",
+          all[ all.length / 2 ] / 1e3 );
+      System.out.format( "Batch p99 latency: %,.1f us%n",
+          all[ ( int ) ( all.length * 0.99 ) ] / 1e3 );
+    } // end if
+  } // end main
+} // end class
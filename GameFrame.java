@@ -1,10 +1,7 @@
 package game2048;
 
 // Borders and Layout
-import java.awt.Color;
 import java.awt.BorderLayout;
-import java.awt.GridLayout;
-import java.awt.Dimension;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -14,47 +11,63 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
-import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
 
 // Listeners and Events
+import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 
-// IO
-import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
 // Utilities
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class GameFrame extends JFrame
 {
-  private static final boolean CAN_SPAWN_FOUR = true;
-  private static final int SIZE = 4;   // number of rows and columns
+  // What a key that does nothing maps to; no command of GameLoop uses it
+  private static final int NO_COMMAND = Integer.MIN_VALUE;
   
   // Displays the tiles on the board
-  private JLabel[][] tiles_ = new JLabel[ SIZE ][ SIZE ];
-  // Stores the actual values for each tile
-  private int[][] tileValues_ = new int[ SIZE ][ SIZE ];
+  private final BoardPanel boardPanel_;
+  // Plays the game away from the event thread
+  private final GameLoop gameLoop_;
+  // Suggests moves on 4x4 boards, null on other sizes
+  private final HintEngine hintEngine_;
+  
+  private JLabel scoreLabel_;   // Displays the player's score
   
-  private JLabel  scoreLabel_;      // Displays the player's score
-  private int     score_;           // Records the player's score
-  private int     nBlanks_;         // Counts the number of blank tiles
-  private int     nMoves_;          // Counts the number of moves
-  private int     largestTile_;     // Records the largest tile
-  private boolean hasReached2048_;  
+  private boolean isHinting_;   // the player asked for hints
+  private long    shownBoard_;  // the 4x4 board last drawn, packed
   
   /**
-   * Constructor
+   * Constructor. Plays on the 4x4 board.
    */
   GameFrame()
+  {
+    this( Game.DEFAULT_SIZE );
+  } // end constructor
+  
+  /**
+   * Constructor
+   *
+   * @param size    The number of rows and columns of the board
+   */
+  GameFrame( int size )
   {
     super ( "2048" );
     
+    Game game = new Game( size, ThreadLocalRandom.current().nextLong() );
+    boardPanel_ = new BoardPanel( size );
+    gameLoop_   = new GameLoop( game, this::render );
+    hintEngine_ = ( size == Bitboard.SIZE )
+        ? new HintEngine( ( direction, depth ) ->
+                              boardPanel_.setHint( direction ) )
+        : null;
+    
+    // Record the moves so every finished game can be replayed
+    game.keepJournal( true );
+    game.setTimed( true );
+    
     // Create tool panel
     JPanel toolPanel = new JPanel();
     toolPanel.setBorder( BorderFactory.createEmptyBorder( 5, 5, 5, 5 ) );
@@ -65,7 +78,7 @@ public class GameFrame extends JFrame
     resetButton.addMouseListener( new MouseListener() {
       public void mouseClicked( MouseEvent event )
       {
-        initializeBoard();
+        gameLoop_.submit( GameLoop.NEW_GAME );
       } // end method mouseClicked
       public void mouseEntered(  MouseEvent event ) {}
       public void mouseExited(   MouseEvent event ) {}
@@ -78,7 +91,26 @@ public class GameFrame extends JFrame
     leaderboardButton.addMouseListener( new MouseListener() {
       public void mouseClicked( MouseEvent event )
       {
-        new Leaderboard( GameFrame.this ).setVisible( true );
+        new Leaderboard( GameFrame.this, size ).setVisible( true );
+      } // end method mouseClicked
+      public void mouseEntered(  MouseEvent event ) {}
+      public void mouseExited(   MouseEvent event ) {}
+      public void mousePressed(  MouseEvent event ) {}
+      public void mouseReleased( MouseEvent event ) {}
+    } );
+    
+    // Create hint button, which turns the hint arrow on and off
+    JLabel hintButton = new JLabel( "Hints: Off" );
+    hintButton.addMouseListener( new MouseListener() {
+      public void mouseClicked( MouseEvent event )
+      {
+        isHinting_ = !isHinting_;
+        hintButton.setText( isHinting_ ? "Hints: On" : "Hints: Off" );
+        boardPanel_.setHint( -1 );
+        if ( isHinting_ )
+          hintEngine_.suggest( shownBoard_ );
+        else
+          hintEngine_.cancel();
       } // end method mouseClicked
       public void mouseEntered(  MouseEvent event ) {}
       public void mouseExited(   MouseEvent event ) {}
@@ -96,33 +128,47 @@ public class GameFrame extends JFrame
     toolPanel.add( new JLabel( "|") );
     toolPanel.add( Box.createHorizontalStrut( 5 ) );
     toolPanel.add( leaderboardButton );
+    if ( hintEngine_ != null ) {
+      toolPanel.add( Box.createHorizontalStrut( 5 ) );
+      toolPanel.add( new JLabel( "|") );
+      toolPanel.add( Box.createHorizontalStrut( 5 ) );
+      toolPanel.add( hintButton );
+    } // end if
     toolPanel.add( Box.createHorizontalGlue() );
     toolPanel.add( scoreLabel_ );
     toolPanel.add( Box.createHorizontalStrut( 5 ) );
     
-    // Create board panel
-    JPanel boardPanel = new JPanel();
-    boardPanel.setBorder( BorderFactory.createEmptyBorder( 20, 20, 20, 20 ) );
-    boardPanel.setBackground( new Color( 187, 173, 160 ) );
-    boardPanel.setLayout( new GridLayout( 4, 4, 20, 20 ) );
-    
-    // Create label array to represent tiles
-    for ( int i = 0; i < tiles_.length; i++ )
-      for ( int j = 0; j < tiles_[ i ].length; j++ )
-        tiles_[ i ][ j ]
-            = new JLabel( createImageIcon( tileValues_[ i ][ j ] ) );
+    // Queue the arrow keys for the game loop. Held keys repeat as
+    // presses, and every one of them is played. Ctrl+Z undoes a move,
+    // Ctrl+Y or Ctrl+Shift+Z redoes it, Ctrl+S saves the game and Ctrl+O
+    // loads it again.
+    addKeyListener( new KeyAdapter() {
+      public void keyPressed( KeyEvent event )
+      {
+        int command = event.isControlDown() ? commandOf( event )
+                                            : directionOf( event.getKeyCode() );
+        if ( command == NO_COMMAND )
+          return;
+        
+        // The hint is for a board about to go away; stop working on it
+        // before the move is even queued. Other commands drop the hint
+        // once their board is drawn.
+        if ( isHinting_ && command >= 0
+             && Bitboard.move( shownBoard_, command ) != shownBoard_ ) {
+          hintEngine_.cancel();
+          boardPanel_.setHint( -1 );
+        } // end if
+        gameLoop_.submit( command );
+      } // end method keyPressed
+    } );
     
-    // Add tiles to board
-    for ( JLabel[] tileArray: tiles_ )
-      for ( JLabel tile : tileArray )
-        boardPanel.add( tile );
-      
-    // Reset game data
-    initializeBoard();
+    // Start the first game
+    scoreLabel_.setText( String.format( "Score: %,d", 0 ) );
+    gameLoop_.start();
       
     // Set frame properties
     add( toolPanel, BorderLayout.PAGE_START );
-    add( boardPanel, BorderLayout.CENTER );    
+    add( boardPanel_, BorderLayout.CENTER );    
     setDefaultCloseOperation( EXIT_ON_CLOSE );
     setLocationByPlatform( true );
     setResizable( false );
@@ -130,430 +176,123 @@ public class GameFrame extends JFrame
   } // end constructor
   
   /**
-   * Creates an ImageIcon using an image named ###.png, where ### corresponds
-   * to a value that can appear on the game. The value of ### is taken from
-   * the tile values.
+   * Shows the state the game loop reached, and tells the player about 2048
+   * and the end of the game.
    *
-   * @param value   The value of the tile, which constitutes the filename
-   *                of the image to be used.
-   * @return        The ImageIcon to represent the tiles 
+   * @param snapshot  The state, one or more commands after the last one
    */
-  private ImageIcon createImageIcon( int value )
+  private void render( GameLoop.Snapshot snapshot )
   {
-    // Get the image file path
-    String path = "images\\" + value + ".png";
-    java.net.URL imageUrl = GameFrame.class.getResource( path );
-    
-    // Return the ImageIcon
-    if ( imageUrl != null )
-      return new ImageIcon( imageUrl );
-    else {
-      System.err.println( "Error. \'" + path + "\' not found." );
-      return null;
-    } // end else
-  } // end method createImageIcon
-  
-  /** 
-   * Resets everything
-   */
-  private void initializeBoard()
-  {
-    // Set the tile values to 0
-    for ( int i = 0; i < SIZE; i++ ) 
-      for ( int j = 0; j < SIZE; j++ )
-        tileValues_[ i ][ j ] = 0;
-        
-    // Reset game data
-    nBlanks_ = SIZE * SIZE;
-    hasReached2048_ = false;
-    nMoves_ = 0;
-    largestTile_ = 0;
-    score_ = 0;
-    scoreLabel_.setText( "Score: 0" );
-    
-    // Spawn two random tiles
-    spawnNewTile( !CAN_SPAWN_FOUR );
-    spawnNewTile( CAN_SPAWN_FOUR );
-    
-    // Create the frame's key listener
-    if ( getKeyListeners().length == 0 )
-      addKeyListener( new KeyListener() {
-        // Respond upon release of arrow keys
-        public void keyReleased( KeyEvent event )
-        {
-          // Move according to key press
-          move( event.getKeyCode() );
-          refreshBoard();
-          
-          // Tell the player he reached 2048 when he does
-          if ( ( !hasReached2048_ ) && ( largestTile_ == 2048 ) ) {
-            hasReached2048_ = true;
-            JOptionPane.showMessageDialog(
-                GameFrame.this,
-                String.format( 
-                    "You made it in %,d moves.%nGo try for a higher score!",
-                    nMoves_ ),
-                "You reached 2048!",
-                JOptionPane.PLAIN_MESSAGE );
-          } // end if
-          
-          // Tell the player there are no more moves
-          if ( !canMove() ) {
-            removeKeyListener( this );
-            
-            // Display the player's game data and get the player's name
-            JOptionPane.showMessageDialog(
-                GameFrame.this,
-                String.format(
-                    "You made %,d moves.%n"
-                    + "Largest tile: %d%n"
-                    + "Your score: %,d", nMoves_, largestTile_, score_ ),
-                    "No more moves man",
-                JOptionPane.PLAIN_MESSAGE );
-        
-            // Record the data
-            Path filePath = Paths.get( GameLauncher.RECORD_FILE_PATH );
-            String record
-                = String.format( "%d %d %d%n", nMoves_, largestTile_, score_ );
-                    
-            // Record score to a file
-            try ( RandomAccessFile raf
-                      = new RandomAccessFile( filePath.toFile(), "rw" ) ) {
-              raf.seek( filePath.toFile().length() );
-              raf.writeBytes( record );
-            } // end try
-            catch ( IOException exception ) {
-              System.err.format( "IOException: %s%n", exception );
-            } // end catch
-            
-            // Show leaderboard
-            new Leaderboard( GameFrame.this ).setVisible( true );
-          } // end if
-        } // end method keyReleased
-        public void keyPressed( KeyEvent event ) {}
-        public void keyTyped( KeyEvent event ) {}
-      } );
+    if ( snapshot.direction >= 0 )
+      boardPanel_.slide( snapshot.before, snapshot.direction, snapshot.after );
+    else
+      boardPanel_.setBoard( snapshot.after );
+    if ( snapshot.inputTime != 0 )
+      boardPanel_.markInput( snapshot.inputTime );
+    scoreLabel_.setText( String.format( "Score: %,d", snapshot.score ) );
     
-    refreshBoard();
-  } // end method initializeBoard
-  
-  /**
-   * Merges two identical tiles when tiles move.
-   *
-   * @param keyCode   The equivalent numeric key code of a key press.
-   *                  This is needed to know where the new tile ends up.
-   * @param row       The horizontal position of the first tile.
-   * @param col       The vertical popsition of the first tile.
-   * @param n         Depending on keyCode, this could represent the
-   *                  horizontal or vertical position of the second tile.
-   */
-  private void mergeTiles( int keyCode, int row, int col, int n )
-  {
-    boolean isHorizontal
-        = ( ( keyCode == KeyEvent.VK_LEFT )
-            || ( keyCode == KeyEvent.VK_RIGHT ) );
-    boolean isVertical
-        = ( ( keyCode == KeyEvent.VK_UP ) || ( keyCode == KeyEvent.VK_DOWN ) );
-        
-    // Horizontal merge
-    if ( isHorizontal ) {
-      if ( tileValues_[ row ][ col ] == tileValues_[ row ][ n ] ) {
-        // "Merge" the two tiles_
-        tileValues_[ row ][ col ] *= 2;
-        tileValues_[ row ][ n ] = 0;
-        updateScore( tileValues_[ row ][ col ] );
-      } // end if
-    } // end if
-    // Vertical merge
-    else if ( isVertical ) {
-      if ( tileValues_[ row ][ col ] == tileValues_[ n ][ col ] ) {
-        // "Merge" the two tiles_
-        tileValues_[ row ][ col ] *= 2;
-        tileValues_[ n ][ col ] = 0;
-        updateScore( tileValues_[ row ][ col ] );
+    // Look for a hint on the new board, in the background
+    if ( hintEngine_ != null ) {
+      shownBoard_ = 0L;
+      for ( int row = 0; row < Bitboard.SIZE; row++ )
+        shownBoard_ |= snapshot.after[ row ] << ( 16 * row );
+      if ( isHinting_ ) {
+        boardPanel_.setHint( -1 );
+        hintEngine_.suggest( shownBoard_ );
       } // end if
-    } // end else-if
-  } // end method mergeTiles
-  
-  /**
-   * Moves the tiles according to the key press.
-   *
-   * @param keyCode   The equivalent numeric key code of a key press.
-   *                  This is needed to know where the tiles end up.
-   */
-  private void move( int keyCode )
-  {
-    boolean hasMoved = false;
-    
-    if ( keyCode == KeyEvent.VK_LEFT ) {
-      // Scan from top
-      for ( int row = 0; row < SIZE; row++ ) {
-        // Scan from left
-        for ( int col = 0; col < SIZE - 1; col++ ) {
-          // Scan to the right for tile with same value as test tile
-          int n = col + 1;
-          while ( n < SIZE - 1 && tileValues_[ row ][ n ] == 0 )
-            n++;
-
-          if ( tileValues_[ row ][ col ] == tileValues_[ row ][ n ] ) {
-            mergeTiles( keyCode, row, col, n );
-            
-            if ( tileValues_[ row ][ col ] != 0 ) {
-              hasMoved = true;
-              nBlanks_++;
-            } // end if
-          } // end if
-        } // end for
-        
-        // Pack tiles to the left
-        for ( int i = 0; i < SIZE; i++ )
-          if ( tileValues_[ row ][ i ] != 0 ) {
-            boolean isMovable = false;
-            // Scan for the leftmost empty tile
-            int n = i;
-            while ( n > 0 && tileValues_[ row ][ n - 1 ] == 0 ) {
-              n--;
-              isMovable = true;
-            } // end while
-              
-            // Copy the test tile to the empty tile
-            if ( isMovable ) {
-              tileValues_[ row ][ n ] = tileValues_[ row ][ i ];
-              tileValues_[ row ][ i ] = 0;
-              hasMoved = true;
-            } // end if
-          } // end if
-            
-      } // end for
-    } // end if
-    else if ( keyCode == KeyEvent.VK_RIGHT ) {
-      // Scan from top
-      for ( int row = 0; row < SIZE; row++ ) {
-        // Scan from right
-        for ( int col = SIZE - 1; col > 0; col-- ) {
-          // Scan to the left for tile with same value as test tile
-          int n = col - 1;
-          while ( n > 0 && tileValues_[ row ][ n ] == 0 )
-            n--;
-
-          // Check if tile to the left matches the test tile
-          if ( tileValues_[ row ][ col ] == tileValues_[ row ][ n ] ) {
-            mergeTiles( keyCode, row, col, n );
-            
-            if ( tileValues_[ row ][ col ] != 0 ) {
-              hasMoved = true;
-              nBlanks_++;
-            } // end if
-          } // end if
-        } // end for
-          
-        // Pack tiles to the right
-        for ( int i = SIZE - 1; i >= 0; i-- )
-          if ( tileValues_[ row ][ i ] != 0 ) {
-            boolean isMovable = false;
-            // Scan for rightmost empty tile
-            int n = i;
-            while ( n < SIZE - 1 && tileValues_[ row ][ n + 1 ] == 0 ) {
-              n++;
-              isMovable = true;
-            } // end while
-              
-            // Copy the test tile to the empty tile
-            if ( isMovable ) {
-              tileValues_[ row ][ n ] = tileValues_[ row ][ i ];
-              tileValues_[ row ][ i ] = 0;
-              hasMoved = true;
-            } // end if
-          } // end if
-        
-      } // end for
-    } // end else-if
-    else if ( keyCode == KeyEvent.VK_UP ) {
-      // Scan from left
-      for ( int col = 0; col < SIZE; col++ ) {
-        // Scan from top
-        for ( int row = 0; row < SIZE - 1; row++ ) {
-          // Scan to the bottom for tile with same value as test tile
-          int n = row + 1;
-          while ( n < SIZE - 1 && tileValues_[ n ][ col ] == 0 )
-            n++;
-
-          // Check if tile to the right matches the test tile
-          if ( tileValues_[ row ][ col ] == tileValues_[ n ][ col ] ) {
-            // "Merge" the two tiles_
-            mergeTiles( keyCode, row, col, n );
-            
-            if ( tileValues_[ row ][ col ] != 0 ) {
-              hasMoved = true;
-              nBlanks_++;
-            } // end if
-          } // end if
-        } // end for
-        
-        // Pack tiles to the top
-        for ( int i = 0; i < SIZE; i++ )
-          if ( tileValues_[ i ][ col ] != 0 ) {
-            boolean isMovable = false;
-            // Scan for the topmost empty tile
-            int n = i;
-            while ( n > 0 && tileValues_[ n - 1 ][ col ] == 0 ) {
-              n--;
-              isMovable = true;
-            } // end while
-              
-            // Copy the test tile to the empty tile
-            if ( isMovable ) {
-              tileValues_[ n ][ col ] = tileValues_[ i ][ col ];
-              tileValues_[ i ][ col ] = 0;
-              hasMoved = true;
-            } // end if
-          } // end if
-            
-        } // end for
-    } // end else-f
-    else if ( keyCode == KeyEvent.VK_DOWN ) {
-      // Scan from left
-      for ( int col = 0; col < SIZE; col++ ) {
-        // Scan from bottom
-        for ( int row = SIZE - 1; row > 0; row-- ) {
-          // Scan to the top for tile with same value as test tile
-          int n = row - 1;
-          while ( n > 0 && tileValues_[ n ][ col ] == 0 )
-            n--;
-
-          // Check if tile to the top matches the test tile
-          if ( tileValues_[ row ][ col ] == tileValues_[ n ][ col ] ) {
-            // "Merge" the two tiles_
-            mergeTiles( keyCode, row, col, n );
-            
-            if ( tileValues_[ row ][ col ] != 0 ) {
-              hasMoved = true;
-              nBlanks_++;
-            } // end if
-          } // end if
-        } // end for
-        
-        // Pack tiles_ to the top
-        for ( int i = SIZE - 1; i >= 0; i-- )
-          if ( tileValues_[ i ][ col ] != 0 ) {
-            boolean isMovable = false;
-            // Scan for the topmost empty tile
-            int n = i;
-            while ( n < SIZE - 1 && tileValues_[ n + 1 ][ col ] == 0 ) {
-              n++;
-              isMovable = true;
-            } // end while
-              
-            // Copy the test tile to the empty tile
-            if ( isMovable ) {
-              tileValues_[ n ][ col ] = tileValues_[ i ][ col ];
-              tileValues_[ i ][ col ] = 0;
-              hasMoved = true;
-            } // end if
-          } // end if
-            
-      } // end for
-    } // end else-if
-    
-    if ( hasMoved ) {
-      spawnNewTile( CAN_SPAWN_FOUR );
-      nMoves_++;
     } // end if
-  } // end method move
-  
-  /**
-   * Spawn a 2-tile or a 4-tile on a random blank tile.
-   *  
-   * @param canSpawnFour  Specifies if the game should try to spawn a 
-   *                      4-tile or not
-   */
-  private void spawnNewTile( boolean canSpawnFour )
-  {
-    // 10% chance to spawn a 4-tile
-    final double CHANCE_TO_SPAWN_4 = 0.9;
-    
-    Random random = new Random();
-    double spawnDice;
     
-    // Determine if tile has a chance to spawn a 4
-    if ( canSpawnFour )
-      spawnDice = random.nextDouble();
-    else
-      spawnDice = 0.0;
+    // Tell the player he reached 2048 when he does
+    if ( snapshot.hasReached2048 )
+      JOptionPane.showMessageDialog(
+          this,
+          String.format( 
+              "You made it in %,d moves.%nGo try for a higher score!",
+              snapshot.nMoves ),
+          "You reached 2048!",
+          JOptionPane.PLAIN_MESSAGE );
     
-    // Choose a random tile from the board
-    int row    = random.nextInt( SIZE );
-    int column = random.nextInt( SIZE );
-    
-    // Continue choosing a tile until the chosen tile is empty
-    while ( tileValues_[ row ][ column ] != 0 ) {
-      row    = random.nextInt( SIZE );
-      column = random.nextInt( SIZE );
-    } // end while
-    
-    // Spawn a 2 or 4 on the board
-    if ( spawnDice <= CHANCE_TO_SPAWN_4 )
-      tileValues_[ row ][ column ] = 2;
-    else
-      tileValues_[ row ][ column ] = 4;
+    // Tell the player there are no more moves, and offer to go over the
+    // game on a 4x4 board
+    if ( snapshot.isOver && snapshot.recorded != null ) {
+      boolean canAnalyze = snapshot.journal != null
+          && snapshot.journal.getSize() == Bitboard.SIZE;
+      Object[] options = canAnalyze
+          ? new Object[] { "OK", "Analyze Game" }
+          : new Object[] { "OK" };
+      int choice = JOptionPane.showOptionDialog(
+          this,
+          String.format(
+              "You made %,d moves.%n"
+              + "Largest tile: %d%n"
+              + "Your score: %,d",
+              snapshot.nMoves,
+              snapshot.largestTile,
+              snapshot.score ),
+              "No more moves man",
+          JOptionPane.DEFAULT_OPTION,
+          JOptionPane.PLAIN_MESSAGE,
+          null,
+          options,
+          options[ 0 ] );
       
-    // Reduce the number of blanks by 1
-    nBlanks_--;
-  } // end method spawnNewTile
-  
-  /** 
-   * Update the tiles on the board with the current tile values
-   */
-  private void refreshBoard()
-  {
-    for ( int i = 0; i < tiles_.length; i++ )
-      for ( int j = 0; j < tiles_[ i ].length; j++ )
-        tiles_[ i ][ j ].setIcon( createImageIcon( tileValues_[ i ][ j ] ) );
-        
-  } // end method refreshBoard
+      if ( canAnalyze && choice == 1 ) {
+        new AnalysisDialog( this, snapshot.journal ).setVisible( true );
+        return;
+      } // end if
+      
+      // Show the leaderboard once the game loop has recorded the game
+      int size = gameLoop_.getSize();
+      snapshot.recorded.whenComplete( ( ignored, exception ) -> {
+        if ( exception != null )
+          System.err.format( "Couldn't record the game: %s%n", exception );
+        SwingUtilities.invokeLater( () ->
+            new Leaderboard( GameFrame.this, size ).setVisible( true ) );
+      } );
+    } // end if
+  } // end method render
   
   /**
-   * Update the score. Also store the largest tile present.
+   * Finds the command of a key pressed with Ctrl.
    *
-   * @param points    Number of points to add to the score
+   * @param event   The key press
+   * @return        One of GameLoop.UNDO, REDO, SAVE or LOAD, or NO_COMMAND
+   *                for any other key
    */
-  private void updateScore( int points )
+  private static int commandOf( KeyEvent event )
   {
-    score_ += points;
-    scoreLabel_.setText( String.format( "Score: %,d", score_ ) );
-    
-    if ( points > largestTile_ )
-      largestTile_ = points;
-  } // end updateScore
+    switch ( event.getKeyCode() ) {
+      case KeyEvent.VK_Z:
+        return event.isShiftDown() ? GameLoop.REDO : GameLoop.UNDO;
+      case KeyEvent.VK_Y:
+        return GameLoop.REDO;
+      case KeyEvent.VK_S:
+        return GameLoop.SAVE;
+      case KeyEvent.VK_O:
+        return GameLoop.LOAD;
+      default:
+        return NO_COMMAND;
+    } // end switch
+  } // end method commandOf
   
   /**
-   * Checks if there are possible moves. The game ends when there are no more
-   * possible moves.
+   * Finds the move of an arrow key.
    *
-   * @return    True if movement is still possible.
+   * @param keyCode   The equivalent numeric key code of a key press.
+   * @return          One of Bitboard.LEFT, RIGHT, UP or DOWN, or NO_COMMAND
+   *                  for any other key
    */
-  private boolean canMove()
+  private static int directionOf( int keyCode )
   {
-    if ( nBlanks_ == 0 ) {
-      // Check for presence of pairs horizontally
-      for ( int row = 0; row < SIZE; row++ )
-        for ( int col = 0; col < SIZE - 1; col++ )
-          if ( tileValues_[ row ][ col ] == tileValues_[ row ][ col + 1 ] )
-            return true;
-            
-      // Check for presence of pairs vertically
-      for ( int col = 0; col < SIZE; col++ )
-        for ( int row = 0; row < SIZE - 1; row++ )
-          if ( tileValues_[ row ][ col ] == tileValues_[ row + 1 ][ col ] )
-            return true;
-            
-      // Return false if the above loops failed to look for pairs, in
-      // which case the game ends.
-      return false;
-    } // end if
+    if ( keyCode == KeyEvent.VK_LEFT )
+      return Bitboard.LEFT;
+    else if ( keyCode == KeyEvent.VK_RIGHT )
+      return Bitboard.RIGHT;
+    else if ( keyCode == KeyEvent.VK_UP )
+      return Bitboard.UP;
+    else if ( keyCode == KeyEvent.VK_DOWN )
+      return Bitboard.DOWN;
     else
-      // Return true if there are still empty tiles ( of course )
-      return true;
-    
-  } // end method canMove
-} // end class
\ No newline at end of file
+      return NO_COMMAND;
+  } // end method directionOf
+} // end class
@@ -0,0 +1,395 @@
+package game2048;
+
+// IO
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Utilities
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Every position a game went through, as a tree: undoing a move and
+ * playing another keeps both branches. Each node holds the packed board,
+ * the score, the number of moves, the largest tile and the state of the
+ * random numbers, so going back or forth to any node is one restore,
+ * never a replay. A node's position, and the random state it holds, stay
+ * fixed once made; only its links change, as children are added and redo
+ * is pointed at one of them.
+ *
+ * A move made from a node always spawns the same tile, since the node
+ * holds the random state, so playing a move already in the tree just
+ * walks into that branch.
+ */
+final class GameHistory
+{
+  private static final int MAGIC   = 0x32303448;   // "204H"
+  private static final int VERSION = 1;
+
+  /**
+   * One position of the game.
+   */
+  static final class Node
+  {
+    final Node   parent;        // null for the root
+    final int    direction;     // the move from the parent, or -1
+    final long   board;         // the 4x4 board packed by Bitboard
+    final long[] rows;          // the packed rows of other sizes, or null
+    final int    score;
+    final int    nMoves;
+    final int    largestTile;
+    final long   randomState;
+
+    private Node firstChild_;
+    private Node nextSibling_;
+    private Node redo_;         // the child redo goes to
+
+    private Node( Node parent, int direction, Game game )
+    {
+      this.parent    = parent;
+      this.direction = direction;
+      score          = game.getScore();
+      nMoves         = game.getMoves();
+      largestTile    = game.getLargestTile();
+      randomState    = game.getRandomState();
+
+      if ( game.getSize() == Bitboard.SIZE ) {
+        board = game.getBoard();
+        rows  = null;
+      } // end if
+      else {
+        board = 0L;
+        rows  = new long[ game.getSize() ];
+        game.getRows( rows );
+      } // end else
+    } // end constructor
+
+    private Node( Node parent, int direction, long[] rows, int score,
+                  int nMoves, int largestTile, long randomState )
+    {
+      this.parent      = parent;
+      this.direction   = direction;
+      this.score       = score;
+      this.nMoves      = nMoves;
+      this.largestTile = largestTile;
+      this.randomState = randomState;
+
+      if ( rows.length == Bitboard.SIZE ) {
+        long packed = 0L;
+        for ( int row = 0; row < rows.length; row++ )
+          packed |= rows[ row ] << ( 16 * row );
+        this.board = packed;
+        this.rows  = null;
+      } // end if
+      else {
+        this.board = 0L;
+        this.rows  = rows;
+      } // end else
+    } // end constructor
+
+    /**
+     * @return    The child reached by a move, or null if none was played
+     */
+    Node childOf( int direction )
+    {
+      for ( Node child = firstChild_; child != null;
+            child = child.nextSibling_ )
+        if ( child.direction == direction )
+          return child;
+
+      return null;
+    } // end method childOf
+
+    /**
+     * @return    The moves played from here, in the order first played
+     */
+    List< Integer > getBranches()
+    {
+      List< Integer > branches = new ArrayList<>();
+      for ( Node child = firstChild_; child != null;
+            child = child.nextSibling_ )
+        branches.add( child.direction );
+
+      return branches;
+    } // end method getBranches
+
+    private void addChild( Node child )
+    {
+      if ( firstChild_ == null )
+        firstChild_ = child;
+      else {
+        Node last = firstChild_;
+        while ( last.nextSibling_ != null )
+          last = last.nextSibling_;
+        last.nextSibling_ = child;
+      } // end else
+    } // end method addChild
+
+    /**
+     * Copies the board into packed rows.
+     */
+    void getRows( long[] out )
+    {
+      if ( rows != null )
+        System.arraycopy( rows, 0, out, 0, rows.length );
+      else
+        for ( int row = 0; row < out.length; row++ )
+          out[ row ] = ( board >>> ( 16 * row ) ) & 0xFFFFL;
+    } // end method getRows
+  } // end class Node
+
+  private final Game   game_;
+  private final Node   root_;
+  private final long[] scratch_;   // rows handed to Game.rewind
+  private Node         current_;
+  private int          nNodes_ = 1;
+
+  /**
+   * Constructor. Starts the history at the game's current position. Every
+   * move after that has to go through this history.
+   *
+   * @param game    The game
+   */
+  GameHistory( Game game )
+  {
+    game_ = game;
+    root_ = new Node( null, -1, game );
+    current_ = root_;
+    scratch_ = new long[ game.getSize() ];
+  } // end constructor
+
+  private GameHistory( Game game, Node root, int nNodes )
+  {
+    game_ = game;
+    root_ = root;
+    current_ = root;
+    nNodes_ = nNodes;
+    scratch_ = new long[ game.getSize() ];
+  } // end constructor
+
+  /**
+   * Makes a move, walking into its branch if it was played before here.
+   *
+   * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN
+   * @return            True if the board changed.
+   */
+  boolean move( int direction )
+  {
+    if ( !game_.move( direction ) )
+      return false;
+
+    Node child = current_.childOf( direction );
+    if ( child == null ) {
+      child = new Node( current_, direction, game_ );
+      current_.addChild( child );
+      nNodes_++;
+    } // end if
+
+    current_.redo_ = child;
+    current_ = child;
+    return true;
+  } // end method move
+
+  /**
+   * Goes back one move.
+   *
+   * @return    False if there is nothing to undo
+   */
+  boolean undo()
+  {
+    if ( current_.parent == null )
+      return false;
+
+    goTo( current_.parent );
+    return true;
+  } // end method undo
+
+  /**
+   * Plays again the move undone last from here.
+   *
+   * @return    False if there is nothing to redo
+   */
+  boolean redo()
+  {
+    if ( current_.redo_ == null )
+      return false;
+
+    return move( current_.redo_.direction );
+  } // end method redo
+
+  /**
+   * Puts the game at a node of this history.
+   */
+  private void goTo( Node node )
+  {
+    node.getRows( scratch_ );
+    game_.rewind( scratch_, node.score, node.nMoves, node.largestTile,
+                  node.randomState );
+    current_ = node;
+  } // end method goTo
+
+  boolean canUndo()
+  {
+    return current_.parent != null;
+  } // end method canUndo
+
+  boolean canRedo()
+  {
+    return current_.redo_ != null;
+  } // end method canRedo
+
+  Game getGame()
+  {
+    return game_;
+  } // end method getGame
+
+  Node getRoot()
+  {
+    return root_;
+  } // end method getRoot
+
+  Node getCurrent()
+  {
+    return current_;
+  } // end method getCurrent
+
+  /**
+   * @return    The number of positions in the tree, every branch included
+   */
+  int getNodeCount()
+  {
+    return nNodes_;
+  } // end method getNodeCount
+
+  /**
+   * Writes the whole tree. Nodes go out level by level, each with the
+   * index of its parent, so the tree can be read back in one pass however
+   * deep it is.
+   *
+   * @param file  The file. Replaced whole, through a temporary file.
+   */
+  void save( Path file ) throws IOException
+  {
+    Path temporary = file.resolveSibling( file.getFileName() + ".tmp" );
+    int size = game_.getSize();
+    long[] rows = new long[ size ];
+
+    try ( DataOutputStream out = new DataOutputStream(
+              new BufferedOutputStream( Files.newOutputStream( temporary ) ) ) ) {
+      out.writeInt( MAGIC );
+      out.writeInt( VERSION );
+      out.writeByte( size );
+      out.writeLong( game_.getSeed() );
+      out.writeInt( nNodes_ );
+
+      // Number the nodes in the order they are written
+      IdentityHashMap< Node, Integer > indexes = new IdentityHashMap<>();
+      Deque< Node > queue = new ArrayDeque<>();
+      queue.add( root_ );
+      while ( !queue.isEmpty() ) {
+        Node node = queue.remove();
+        indexes.put( node, indexes.size() );
+
+        out.writeInt(
+            ( node.parent == null ) ? -1 : indexes.get( node.parent ) );
+        out.writeByte( node.direction );
+        out.writeBoolean( node.parent != null && node.parent.redo_ == node );
+        node.getRows( rows );
+        for ( long row : rows )
+          out.writeLong( row );
+        out.writeInt( node.score );
+        out.writeInt( node.nMoves );
+        out.writeInt( node.largestTile );
+        out.writeLong( node.randomState );
+
+        for ( Node child = node.firstChild_; child != null;
+              child = child.nextSibling_ )
+          queue.add( child );
+      } // end while
+
+      out.writeInt( indexes.get( current_ ) );
+    } // end try
+
+    Files.move( temporary, file, StandardCopyOption.REPLACE_EXISTING );
+  } // end method save
+
+  /**
+   * Reads a tree written by save, and puts a game at the node it was at.
+   * If the tree starts at the first move, the game is replayed along the
+   * path to that node, so its journal holds every move that led there.
+   *
+   * @param file  The file
+   * @param game  The game to play on. Its board must be the size saved.
+   * @return      The history of the game
+   */
+  static GameHistory load( Path file, Game game ) throws IOException
+  {
+    try ( DataInputStream in = new DataInputStream(
+              new BufferedInputStream( Files.newInputStream( file ) ) ) ) {
+      if ( in.readInt() != MAGIC || in.readInt() != VERSION )
+        throw new IOException( "Not a game history: " + file );
+
+      int size = in.readUnsignedByte();
+      if ( size != game.getSize() )
+        throw new IOException( "Board size " + size + " instead of "
+                               + game.getSize() );
+      long seed = in.readLong();
+      int nNodes = in.readInt();
+      if ( nNodes < 1 )
+        throw new IOException( "Bad node count: " + nNodes );
+
+      Node[] nodes = new Node[ nNodes ];
+      for ( int i = 0; i < nNodes; i++ ) {
+        int parentIndex = in.readInt();
+        int direction = in.readByte();
+        boolean isRedo = in.readBoolean();
+        if ( parentIndex >= i || ( i > 0 ) != ( parentIndex >= 0 ) )
+          throw new IOException( "Bad parent of node " + i );
+
+        long[] rows = new long[ size ];
+        for ( int row = 0; row < size; row++ )
+          rows[ row ] = in.readLong();
+
+        Node parent = ( parentIndex < 0 ) ? null : nodes[ parentIndex ];
+        nodes[ i ] = new Node( parent, direction, rows, in.readInt(),
+            in.readInt(), in.readInt(), in.readLong() );
+        if ( parent != null ) {
+          parent.addChild( nodes[ i ] );
+          if ( isRedo )
+            parent.redo_ = nodes[ i ];
+        } // end if
+      } // end for
+
+      int currentIndex = in.readInt();
+      if ( currentIndex < 0 || currentIndex >= nNodes )
+        throw new IOException( "Bad current node: " + currentIndex );
+
+      game.reset( seed );
+      GameHistory history = new GameHistory( game, nodes[ 0 ], nNodes );
+      Node current = nodes[ currentIndex ];
+
+      if ( nodes[ 0 ].nMoves == 0 ) {
+        // The new game sits at the root; play the path down from it
+        Deque< Node > path = new ArrayDeque<>();
+        for ( Node node = current; node.parent != null; node = node.parent )
+          path.push( node );
+        for ( Node node : path )
+          game.move( node.direction );
+        history.current_ = current;
+      } // end if
+      else
+        history.goTo( current );
+
+      return history;
+    } // end try
+  } // end method load
+} // end class
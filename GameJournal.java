@@ -0,0 +1,193 @@
+package game2048;
+
+// IO
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Utilities
+import java.util.Arrays;
+
+/**
+ * Everything needed to play a game again: the seed it started from and the
+ * moves that changed the board, 2 bits each. Moves that didn't change the
+ * board draw no random numbers, so they are left out. The board size isn't
+ * written with the moves; games of each size are kept apart.
+ */
+final class GameJournal
+{
+  private static final int MOVES_PER_LONG = 32;
+
+  private final int  size_;
+  private final long seed_;
+  private long[]     moves_ = new long[ 4 ];
+  private int        nMoves_;
+
+  /**
+   * Constructor. Starts an empty journal.
+   *
+   * @param seed    The seed the game started from
+   */
+  GameJournal( long seed )
+  {
+    this( Game.DEFAULT_SIZE, seed );
+  } // end constructor
+
+  /**
+   * Constructor. Starts an empty journal for a board of any size.
+   *
+   * @param size    The number of rows and columns of the board
+   * @param seed    The seed the game started from
+   */
+  GameJournal( int size, long seed )
+  {
+    size_ = size;
+    seed_ = seed;
+  } // end constructor
+
+  /**
+   * Adds a move that changed the board.
+   *
+   * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN
+   */
+  void add( int direction )
+  {
+    int i = nMoves_ / MOVES_PER_LONG;
+    if ( i == moves_.length )
+      moves_ = Arrays.copyOf( moves_, 2 * moves_.length );
+
+    moves_[ i ] |= ( long ) direction << ( 2 * ( nMoves_ % MOVES_PER_LONG ) );
+    nMoves_++;
+  } // end method add
+
+  /**
+   * Drops every move past the first few, as when moves are undone.
+   *
+   * @param nMoves  The number of moves to keep
+   */
+  void truncate( int nMoves )
+  {
+    if ( nMoves >= nMoves_ )
+      return;
+
+    int last = nMoves / MOVES_PER_LONG;
+    if ( nMoves % MOVES_PER_LONG != 0 )
+      moves_[ last++ ] &= ( 1L << ( 2 * ( nMoves % MOVES_PER_LONG ) ) ) - 1;
+    Arrays.fill( moves_, last,
+        ( nMoves_ + MOVES_PER_LONG - 1 ) / MOVES_PER_LONG, 0L );
+    nMoves_ = nMoves;
+  } // end method truncate
+
+  /**
+   * @return    A journal of the same moves that later changes to this one
+   *            leave alone
+   */
+  GameJournal copy()
+  {
+    GameJournal copy = new GameJournal( size_, seed_ );
+    copy.moves_ = moves_.clone();
+    copy.nMoves_ = nMoves_;
+    return copy;
+  } // end method copy
+
+  int getSize()
+  {
+    return size_;
+  } // end method getSize
+
+  long getSeed()
+  {
+    return seed_;
+  } // end method getSeed
+
+  int size()
+  {
+    return nMoves_;
+  } // end method size
+
+  /**
+   * @param i   The number of the move, from 0
+   * @return    The direction of the move
+   */
+  int getMove( int i )
+  {
+    return ( int ) ( moves_[ i / MOVES_PER_LONG ]
+        >>> ( 2 * ( i % MOVES_PER_LONG ) ) ) & 3;
+  } // end method getMove
+
+  /**
+   * Plays the game again from the start.
+   *
+   * @return    The game after the last move
+   * @throws    IllegalStateException if a move doesn't change the board,
+   *            which means the journal doesn't match the rules
+   */
+  Game replay()
+  {
+    Game game = new Game( size_, seed_ );
+
+    for ( int i = 0; i < nMoves_; i++ )
+      if ( !game.move( getMove( i ) ) )
+        throw new IllegalStateException(
+            "Move " + i + " of the journal changes nothing" );
+
+    return game;
+  } // end method replay
+
+  /**
+   * Writes the journal: the seed, the number of moves, then 4 moves per
+   * byte, first move in the lowest bits.
+   *
+   * @param out   Where to write
+   */
+  void write( DataOutput out ) throws IOException
+  {
+    out.writeLong( seed_ );
+    out.writeInt( nMoves_ );
+
+    int nBytes = ( nMoves_ + 3 ) / 4;
+    for ( int i = 0; i < nBytes; i++ )
+      out.writeByte( ( int ) ( moves_[ i / 8 ] >>> ( 8 * ( i % 8 ) ) ) );
+  } // end method write
+
+  /**
+   * Reads a journal of a 4x4 game written by write.
+   *
+   * @param in  Where to read from
+   * @return    The journal
+   */
+  static GameJournal read( DataInput in ) throws IOException
+  {
+    return read( in, Game.DEFAULT_SIZE );
+  } // end method read
+
+  /**
+   * Reads a journal written by write.
+   *
+   * @param in      Where to read from
+   * @param size    The number of rows and columns of the board
+   * @return        The journal
+   */
+  static GameJournal read( DataInput in, int size ) throws IOException
+  {
+    GameJournal journal = new GameJournal( size, in.readLong() );
+    int nMoves = in.readInt();
+    if ( nMoves < 0 )
+      throw new IOException( "Bad move count: " + nMoves );
+
+    journal.moves_ = new long[
+        Math.max( 1, ( nMoves + MOVES_PER_LONG - 1 ) / MOVES_PER_LONG ) ];
+    int nBytes = ( nMoves + 3 ) / 4;
+    for ( int i = 0; i < nBytes; i++ )
+      journal.moves_[ i / 8 ]
+          |= ( long ) in.readUnsignedByte() << ( 8 * ( i % 8 ) );
+
+    // Clear any bits past the last move
+    if ( nMoves % MOVES_PER_LONG != 0 )
+      journal.moves_[ nMoves / MOVES_PER_LONG ]
+          &= ( 1L << ( 2 * ( nMoves % MOVES_PER_LONG ) ) ) - 1;
+
+    journal.nMoves_ = nMoves;
+    return journal;
+  } // end method read
+} // end class
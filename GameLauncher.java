@@ -3,11 +3,51 @@ package game2048;
 import javax.swing.UIManager;
 import javax.swing.SwingUtilities;
 
+// IO
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public class GameLauncher
 {
-  static final String RECORD_FILE_PATH = "game2048\\leaderboard.2048";
+  // Records in the old text format, copied to the record store once
+  static final Path TEXT_RECORD_FILE_PATH
+      = Paths.get( "game2048", "leaderboard.2048" );
+  // Binary record store and its index of the best records
+  static final Path STORE_FILE_PATH = Paths.get( "game2048", "leaderboard.dat" );
+  static final Path INDEX_FILE_PATH = Paths.get( "game2048", "leaderboard.top" );
+  // Journal of every finished game
+  static final Path JOURNAL_FILE_PATH = Paths.get( "game2048", "journal.dat" );
+  // Every move of the game saved last, undone ones included
+  static final Path HISTORY_FILE_PATH = Paths.get( "game2048", "history.dat" );
+  // Weights of the n-tuple network learned by NTupleTrainer
+  static final Path NTUPLE_FILE_PATH = Paths.get( "game2048", "ntuple.dat" );
+  // Exact values of every position of a small board, by SmallBoardSolver
+  static final Path SOLVED_FILE_PATH = Paths.get( "game2048", "solved.dat" );
 
-  private static void createGui()
+  /**
+   * Finds the file that holds the data of one board size. The 4x4 board
+   * keeps the plain names; "leaderboard.dat" becomes "leaderboard-5x5.dat"
+   * for 5x5 boards.
+   *
+   * @param path    The file for the 4x4 board
+   * @param size    The number of rows and columns
+   * @return        The file for boards of that size
+   */
+  static Path sizedPath( Path path, int size )
+  {
+    if ( size == Game.DEFAULT_SIZE )
+      return path;
+
+    String name = path.getFileName().toString();
+    int dot = name.lastIndexOf( '.' );
+    String suffix = String.format( "-%dx%d", size, size );
+    name = ( dot < 0 )
+        ? name + suffix
+        : name.substring( 0, dot ) + suffix + name.substring( dot );
+    return path.resolveSibling( name );
+  } // end method sizedPath
+
+  private static void createGui( int size )
   {
     try {
       for ( UIManager.LookAndFeelInfo info :
@@ -22,15 +62,28 @@ public class GameLauncher
     } // end catch
     
     // new Leaderboard( new GameFrame() ).setVisible( true );
-    new GameFrame().setVisible( true );
+    new GameFrame( size ).setVisible( true );
   } // end method createGui
 
+  /**
+   * @param args    Optionally, the number of rows and columns of the board,
+   *                from PackedBoard.MIN_SIZE to PackedBoard.MAX_SIZE
+   */
   public static void main( String[] args )
   {
+    final int size = ( args.length > 0 )
+        ? Integer.parseInt( args[ 0 ] )
+        : Game.DEFAULT_SIZE;
+    if ( size < PackedBoard.MIN_SIZE || size > PackedBoard.MAX_SIZE ) {
+      System.err.format( "Board size must be from %d to %d%n",
+          PackedBoard.MIN_SIZE, PackedBoard.MAX_SIZE );
+      return;
+    } // end if
+
     SwingUtilities.invokeLater( new Runnable() {
       public void run()
       {
-        createGui();
+        createGui( size );
       } // end method run
     } );
   } // end main
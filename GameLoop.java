@@ -0,0 +1,352 @@
+package game2048;
+
+// IO
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Concurrency
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Components
+import javax.swing.SwingUtilities;
+
+/**
+ * Plays a game on a thread of its own. Key presses go into a bounded queue
+ * and the engine thread applies them in order, so none is lost or merged
+ * however fast they come. After each one the engine publishes a Snapshot
+ * of the game for the event thread. Snapshots the event thread hasn't
+ * picked up yet are merged into one, so rendering never falls behind and
+ * the engine never waits on it. Only the snapshot that ends a game is
+ * never merged into, so the finished game always reaches the event thread.
+ *
+ * Every move goes through a GameHistory, so moves can be undone and
+ * redone without limit, and the history saved and loaded again. Finished
+ * games are handed to the ScoreRecorder from the engine thread, so the
+ * event thread never touches the disk.
+ */
+final class GameLoop
+{
+  // Commands other than the four directions
+  static final int NEW_GAME = -1;
+  static final int UNDO     = -2;
+  static final int REDO     = -3;
+  static final int SAVE     = -4;   // the history, to HISTORY_FILE_PATH
+  static final int LOAD     = -5;   // the history, from HISTORY_FILE_PATH
+
+  // Moves queued ahead of the engine before the event thread has to wait
+  private static final int QUEUE_CAPACITY = 256;
+
+  /**
+   * A command and when it came in.
+   */
+  private static final class Input
+  {
+    final int  command;
+    final long time;   // System.nanoTime()
+
+    Input( int command, long time )
+    {
+      this.command = command;
+      this.time    = time;
+    } // end constructor
+  } // end class Input
+
+  /**
+   * The state of the game after one or more commands, for the event
+   * thread to show.
+   */
+  static final class Snapshot
+  {
+    final long[]  before;          // the board shown last time
+    final int     direction;       // the one move since, or -1
+    final long[]  after;           // the board now
+    final int     score;
+    final int     nMoves;
+    final int     largestTile;
+    final boolean isNewGame;       // a new game began since last time
+    final boolean hasReached2048;  // 2048 was made since last time
+    final boolean isOver;          // no move is left
+    final long    inputTime;       // when the first command came in, or 0
+
+    // Completes once a finished game is on disk, null until then
+    final CompletableFuture< Void > recorded;
+    // A copy of the finished game's journal, along with recorded
+    final GameJournal               journal;
+    // A finished game to show before this one, or null
+    final Snapshot                  earlier;
+
+    Snapshot( long[] before, int direction, long[] after, int score,
+              int nMoves, int largestTile, boolean isNewGame,
+              boolean hasReached2048, boolean isOver, long inputTime,
+              CompletableFuture< Void > recorded, GameJournal journal )
+    {
+      this( before, direction, after, score, nMoves, largestTile, isNewGame,
+          hasReached2048, isOver, inputTime, recorded, journal, null );
+    } // end constructor
+
+    private Snapshot( long[] before, int direction, long[] after, int score,
+                      int nMoves, int largestTile, boolean isNewGame,
+                      boolean hasReached2048, boolean isOver, long inputTime,
+                      CompletableFuture< Void > recorded, GameJournal journal,
+                      Snapshot earlier )
+    {
+      this.before         = before;
+      this.direction      = direction;
+      this.after          = after;
+      this.score          = score;
+      this.nMoves         = nMoves;
+      this.largestTile    = largestTile;
+      this.isNewGame      = isNewGame;
+      this.hasReached2048 = hasReached2048;
+      this.isOver         = isOver;
+      this.inputTime      = inputTime;
+      this.recorded       = recorded;
+      this.journal        = journal;
+      this.earlier        = earlier;
+    } // end constructor
+
+    /**
+     * Folds a later snapshot into this one. The merged snapshot goes from
+     * this one's board to the later one's, with no single move between.
+     * A snapshot that finished a game isn't folded into; the later one is
+     * queued behind it instead, so its record and journal aren't lost.
+     */
+    Snapshot mergedWith( Snapshot later )
+    {
+      if ( recorded != null )
+        return new Snapshot( later.before, later.direction, later.after,
+            later.score, later.nMoves, later.largestTile, later.isNewGame,
+            later.hasReached2048, later.isOver, later.inputTime,
+            later.recorded, later.journal, this );
+
+      return new Snapshot( before, -1, later.after, later.score,
+          later.nMoves, later.largestTile, isNewGame || later.isNewGame,
+          ( hasReached2048 && !later.isNewGame ) || later.hasReached2048,
+          later.isOver, ( inputTime != 0 ) ? inputTime : later.inputTime,
+          later.recorded, later.journal, earlier );
+    } // end method mergedWith
+  } // end class Snapshot
+
+  private final Game                       game_;
+  private final Consumer< Snapshot >       renderer_;
+  private final BlockingQueue< Input >     input_
+      = new ArrayBlockingQueue<>( QUEUE_CAPACITY );
+  private final AtomicReference< Snapshot > pending_ = new AtomicReference<>();
+  private final Thread                     engine_;
+
+  private GameHistory history_;
+  private long[]      shown_;        // the board of the last snapshot
+  private boolean     hasReached2048_;
+  private boolean     isRecorded_;   // this game was handed to the recorder
+
+  /**
+   * Constructor. Nothing happens until start is called.
+   *
+   * @param game        The game. Only the engine thread touches it from
+   *                    then on.
+   * @param renderer    Shows a snapshot. Called on the event thread.
+   */
+  GameLoop( Game game, Consumer< Snapshot > renderer )
+  {
+    game_ = game;
+    renderer_ = renderer;
+    engine_ = new Thread( this::run, "game-loop" );
+    engine_.setDaemon( true );
+  } // end constructor
+
+  /**
+   * Starts a new game and the engine thread.
+   */
+  void start()
+  {
+    engine_.start();
+    submit( NEW_GAME );
+  } // end method start
+
+  /**
+   * Queues a command. Waits only if the engine is QUEUE_CAPACITY commands
+   * behind, and never drops one.
+   *
+   * @param command   One of Bitboard.LEFT, RIGHT, UP, DOWN, NEW_GAME,
+   *                  UNDO, REDO, SAVE or LOAD
+   */
+  void submit( int command )
+  {
+    Input input = new Input( command, System.nanoTime() );
+    try {
+      input_.put( input );
+    } // end try
+    catch ( InterruptedException exception ) {
+      Thread.currentThread().interrupt();
+    } // end catch
+  } // end method submit
+
+  /**
+   * Applies the queued commands one by one until interrupted.
+   */
+  private void run()
+  {
+    try {
+      while ( true )
+        apply( input_.take() );
+    } // end try
+    catch ( InterruptedException exception ) {
+      // The frame is going away
+    } // end catch
+  } // end method run
+
+  private void apply( Input input )
+  {
+    int size = game_.getSize();
+    int command = input.command;
+
+    switch ( command ) {
+      case NEW_GAME:
+        game_.reset();
+        history_ = new GameHistory( game_ );
+        hasReached2048_ = false;
+        isRecorded_ = false;
+        publishBoard( true, 0 );
+        return;
+
+      case UNDO:
+        if ( history_.undo() )
+          publishBoard( false, input.time );
+        return;
+
+      case REDO:
+        if ( !history_.canRedo() )
+          return;
+        // Redone, a move plays out as it did the first time
+        history_.redo();
+        command = history_.getCurrent().direction;
+        break;
+
+      case SAVE:
+        try {
+          history_.save( historyPath() );
+        } // end try
+        catch ( IOException exception ) {
+          System.err.format( "Couldn't save the game: %s%n", exception );
+        } // end catch
+        return;
+
+      case LOAD:
+        try {
+          history_ = GameHistory.load( historyPath(), game_ );
+        } // end try
+        catch ( IOException exception ) {
+          System.err.format( "Couldn't load the game: %s%n", exception );
+          return;
+        } // end catch
+        // A finished game was recorded before it was saved
+        hasReached2048_ = game_.getLargestTile() >= 2048;
+        isRecorded_ = !game_.canMove();
+        publishBoard( true, 0 );
+        return;
+
+      default:
+        if ( !game_.canMove() || !history_.move( command ) )
+          return;
+    } // end switch
+
+    long[] after = new long[ size ];
+    game_.getRows( after );
+
+    boolean hasReached2048 = !hasReached2048_
+        && game_.getLargestTile() >= 2048;
+    hasReached2048_ |= hasReached2048;
+
+    // Record the finished game from here, away from the event thread.
+    // Undoing the last move and finishing again doesn't count twice.
+    CompletableFuture< Void > recorded = null;
+    GameJournal journal = null;
+    if ( !game_.canMove() && !isRecorded_ ) {
+      // A copy, as undoing moves from here cuts the game's own journal
+      isRecorded_ = true;
+      journal = ( game_.getJournal() != null )
+          ? game_.getJournal().copy()
+          : null;
+      recorded = ScoreRecorder.getDefault().record( size,
+          new ScoreRecord( game_.getMoves(), game_.getLargestTile(),
+                           game_.getScore() ),
+          journal );
+    } // end if
+
+    publish( new Snapshot( shown_, command, after, game_.getScore(),
+        game_.getMoves(), game_.getLargestTile(), false, hasReached2048,
+        !game_.canMove(), input.time, recorded, journal ) );
+    shown_ = after;
+  } // end method apply
+
+  /**
+   * Publishes the board as it is, with no move to slide.
+   */
+  private void publishBoard( boolean isNewGame, long inputTime )
+  {
+    long[] after = new long[ game_.getSize() ];
+    game_.getRows( after );
+    publish( new Snapshot( shown_, -1, after, game_.getScore(),
+        game_.getMoves(), game_.getLargestTile(), isNewGame, false,
+        !game_.canMove(), inputTime, null, null ) );
+    shown_ = after;
+  } // end method publishBoard
+
+  private Path historyPath()
+  {
+    return GameLauncher.sizedPath( GameLauncher.HISTORY_FILE_PATH,
+                                   game_.getSize() );
+  } // end method historyPath
+
+  /**
+   * Hands a snapshot to the event thread, merging it into the one still
+   * waiting there, if any.
+   */
+  private void publish( Snapshot snapshot )
+  {
+    while ( true ) {
+      Snapshot waiting = pending_.get();
+      Snapshot merged
+          = ( waiting == null ) ? snapshot : waiting.mergedWith( snapshot );
+      if ( pending_.compareAndSet( waiting, merged ) ) {
+        if ( waiting == null )
+          SwingUtilities.invokeLater( this::render );
+        return;
+      } // end if
+    } // end while
+  } // end method publish
+
+  private void render()
+  {
+    Snapshot snapshot = pending_.getAndSet( null );
+    if ( snapshot != null )
+      render( snapshot );
+  } // end method render
+
+  /**
+   * Shows a snapshot after the finished games queued ahead of it.
+   */
+  private void render( Snapshot snapshot )
+  {
+    if ( snapshot.earlier != null )
+      render( snapshot.earlier );
+    renderer_.accept( snapshot );
+  } // end method render
+
+  /**
+   * Stops the engine thread. Commands still queued are dropped.
+   */
+  void stop()
+  {
+    engine_.interrupt();
+  } // end method stop
+
+  int getSize()
+  {
+    return game_.getSize();
+  } // end method getSize
+} // end class
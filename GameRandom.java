@@ -0,0 +1,73 @@
+package game2048;
+
+/**
+ * The random numbers behind the tiles of one game. This is the SplitMix64
+ * generator that java.util.SplittableRandom uses, with its whole state in
+ * one long that can be read and set. A game can therefore be replayed from
+ * its seed, and saved and resumed mid-way.
+ */
+final class GameRandom
+{
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  private long state_;
+
+  /**
+   * Constructor
+   *
+   * @param seed    The initial state
+   */
+  GameRandom( long seed )
+  {
+    state_ = seed;
+  } // end constructor
+
+  long getState()
+  {
+    return state_;
+  } // end method getState
+
+  void setState( long state )
+  {
+    state_ = state;
+  } // end method setState
+
+  /**
+   * @return    The next 64 random bits
+   */
+  long nextLong()
+  {
+    return mix( state_ += GOLDEN_GAMMA );
+  } // end method nextLong
+
+  /**
+   * @param bound   The number of possible values. Must be positive.
+   * @return        A random int from 0 to bound - 1
+   */
+  int nextInt( int bound )
+  {
+    // Scale the top 32 bits down to the bound
+    return ( int ) ( ( ( nextLong() >>> 32 ) * bound ) >>> 32 );
+  } // end method nextInt
+
+  /**
+   * @return    A random double from 0 up to but not including 1
+   */
+  double nextDouble()
+  {
+    return ( nextLong() >>> 11 ) * 0x1.0p-53;
+  } // end method nextDouble
+
+  /**
+   * Scrambles the bits of a number.
+   *
+   * @param z   Any number
+   * @return    A number that looks unrelated to z
+   */
+  static long mix( long z )
+  {
+    z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+    z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+    return z ^ ( z >>> 31 );
+  } // end method mix
+} // end class
@@ -0,0 +1,335 @@
+package game2048;
+
+// IO
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Networking
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+// Concurrency
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hosts many headless games at once for players and bots on this machine.
+ * Every connection gets its own thread, virtual when the JVM has them, and
+ * plays one session at a time. Sessions left idle are parked on disk by
+ * the SessionStore and read back when resumed.
+ *
+ * Requests and replies are big-endian, as written by DataOutputStream.
+ * Every request starts with an op byte:
+ *
+ *   OP_NEW      size byte, seed long
+ *   OP_RESUME   session id long
+ *   OP_MOVES    count unsigned short, then 4 moves per byte, first move in
+ *               the lowest bits, as in GameJournal
+ *   OP_CLOSE    nothing; the server closes the connection
+ *   OP_METRICS  nothing; the reply is the status and Metrics.dump(), as
+ *               written by DataOutputStream.writeUTF
+ *   OP_END      nothing; ends the session in use for good, so it is never
+ *               parked and can't be resumed. The reply is the status only.
+ *
+ * Every reply starts with a status byte. OP_NEW and OP_RESUME then send the
+ * session id and the board size; OP_MOVES sends how many moves changed the
+ * board as an unsigned short. All three end with the game's state: score,
+ * moves and largest tile as ints, the legal move mask as a byte, a byte
+ * with bit i set for each row i that changed since the last reply, and
+ * those rows as packed longs. OP_NEW and OP_RESUME send every row.
+ *
+ * Moves in a batch that don't change the board are skipped, and the batch
+ * stops once the game is over. Replies are flushed only when no request is
+ * waiting, so a client can pipeline many batches per round trip.
+ */
+public final class GameServer
+{
+  static final int DEFAULT_PORT = 2048;
+
+  // Requests
+  static final int OP_NEW     = 1;
+  static final int OP_RESUME  = 2;
+  static final int OP_MOVES   = 3;
+  static final int OP_CLOSE   = 4;
+  static final int OP_METRICS = 5;
+  static final int OP_END     = 6;
+
+  // Reply statuses
+  static final int OK          = 0;
+  static final int NO_SESSION  = 1;   // unknown, in use, or none attached
+  static final int BAD_REQUEST = 2;
+
+  static final int MAX_BATCH = 0xFFFF;
+
+  // Idle sessions parked on disk
+  static final Path PARK_DIRECTORY = Paths.get( "game2048", "sessions" );
+
+  private final ServerSocket             serverSocket_;
+  private final SessionStore             sessions_;
+  private final ExecutorService          connections_;
+  private final ScheduledExecutorService sweeper_;
+
+  /**
+   * Constructor. Listens on the loopback address only.
+   *
+   * @param port            The port, or 0 for any free port
+   * @param parkDirectory   Where idle sessions are parked
+   * @param idleMillis      How long a session may go unused before it is
+   *                        parked
+   */
+  GameServer( int port, Path parkDirectory, long idleMillis )
+      throws IOException
+  {
+    sessions_ = new SessionStore( parkDirectory );
+    serverSocket_ = new ServerSocket( port, 4096, InetAddress.getLoopbackAddress() );
+    connections_ = newThreadPerTaskExecutor();
+
+    sweeper_ = Executors.newSingleThreadScheduledExecutor( task -> {
+      Thread thread = new Thread( task, "session-sweeper" );
+      thread.setDaemon( true );
+      return thread;
+    } );
+    long idleNanos = TimeUnit.MILLISECONDS.toNanos( idleMillis );
+    long period = Math.max( 1, idleMillis / 4 );
+    sweeper_.scheduleWithFixedDelay( () -> {
+      try {
+        sessions_.parkIdle( idleNanos );
+      } // end try
+      catch ( IOException exception ) {
+        System.err.format( "IOException: %s%n", exception );
+      } // end catch
+    }, period, period, TimeUnit.MILLISECONDS );
+  } // end constructor
+
+  /**
+   * Makes an executor that starts a thread for every task: a virtual thread
+   * on JVMs that have them, a pooled platform thread otherwise.
+   *
+   * @return    The executor
+   */
+  static ExecutorService newThreadPerTaskExecutor()
+  {
+    try {
+      Method factory
+          = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+      return ( ExecutorService ) factory.invoke( null );
+    } // end try
+    catch ( ReflectiveOperationException | RuntimeException exception ) {
+      return Executors.newCachedThreadPool();
+    } // end catch
+  } // end method newThreadPerTaskExecutor
+
+  int getPort()
+  {
+    return serverSocket_.getLocalPort();
+  } // end method getPort
+
+  SessionStore getSessions()
+  {
+    return sessions_;
+  } // end method getSessions
+
+  /**
+   * Accepts connections until the server is closed.
+   */
+  void serve() throws IOException
+  {
+    try {
+      while ( true ) {
+        Socket socket = serverSocket_.accept();
+        socket.setTcpNoDelay( true );
+        connections_.execute( () -> serve( socket ) );
+      } // end while
+    } // end try
+    catch ( SocketException exception ) {
+      if ( !serverSocket_.isClosed() )
+        throw exception;
+    } // end catch
+  } // end method serve
+
+  /**
+   * Stops accepting connections and drops the ones open.
+   */
+  void close() throws IOException
+  {
+    serverSocket_.close();
+    sweeper_.shutdownNow();
+    connections_.shutdownNow();
+  } // end method close
+
+  /**
+   * Answers the requests of one connection until it closes.
+   */
+  private void serve( Socket socket )
+  {
+    GameSession session = null;
+    long[] rows  = null;   // the board now
+    long[] shown = null;   // the board as the client last saw it
+    byte[] moves = new byte[ ( MAX_BATCH + 3 ) / 4 ];
+
+    try ( Socket connection = socket;
+          DataInputStream in = new DataInputStream(
+              new BufferedInputStream( connection.getInputStream() ) );
+          DataOutputStream out = new DataOutputStream(
+              new BufferedOutputStream( connection.getOutputStream() ) ) ) {
+      int op;
+      while ( ( op = in.read() ) >= 0 && op != OP_CLOSE ) {
+        switch ( op ) {
+          case OP_NEW:
+          case OP_RESUME: {
+            GameSession opened;
+            if ( op == OP_NEW ) {
+              int size = in.readUnsignedByte();
+              long seed = in.readLong();
+              if ( size < PackedBoard.MIN_SIZE || size > PackedBoard.MAX_SIZE ) {
+                out.writeByte( BAD_REQUEST );
+                break;
+              } // end if
+              opened = sessions_.create( size, seed );
+            } // end if
+            else {
+              long id = in.readLong();
+              if ( session != null && session.getId() == id ) {
+                session.detach();
+                session = null;
+              } // end if
+              opened = sessions_.resume( id );
+              if ( opened == null ) {
+                out.writeByte( NO_SESSION );
+                break;
+              } // end if
+            } // end else
+
+            if ( session != null )
+              session.detach();
+            session = opened;
+            int size = session.getGame().getSize();
+            rows  = new long[ size ];
+            shown = new long[ size ];
+
+            out.writeByte( OK );
+            out.writeLong( session.getId() );
+            out.writeByte( size );
+            writeState( out, session.getGame(), rows, shown, true );
+            break;
+          } // end case
+
+          case OP_MOVES: {
+            int nMoves = in.readUnsignedShort();
+            in.readFully( moves, 0, ( nMoves + 3 ) / 4 );
+            if ( session == null ) {
+              out.writeByte( NO_SESSION );
+              break;
+            } // end if
+
+            Game game = session.getGame();
+            int nApplied = 0;
+            for ( int i = 0; i < nMoves && game.canMove(); i++ )
+              if ( game.move( ( moves[ i / 4 ] >>> ( 2 * ( i % 4 ) ) ) & 3 ) )
+                nApplied++;
+            session.touch();
+
+            out.writeByte( OK );
+            out.writeShort( nApplied );
+            writeState( out, game, rows, shown, false );
+            break;
+          } // end case
+
+          case OP_METRICS:
+            out.writeByte( OK );
+            out.writeUTF( Metrics.dump() );
+            break;
+
+          case OP_END:
+            if ( session == null ) {
+              out.writeByte( NO_SESSION );
+              break;
+            } // end if
+
+            // Still attached, so the sweeper can't park it on the way out
+            sessions_.end( session );
+            session = null;
+            out.writeByte( OK );
+            break;
+
+          default:
+            out.writeByte( BAD_REQUEST );
+            out.flush();
+            return;
+        } // end switch
+
+        // Hold replies back while more requests are already here
+        if ( in.available() == 0 )
+          out.flush();
+      } // end while
+      out.flush();
+    } // end try
+    catch ( EOFException | SocketException exception ) {
+      // The client went away in the middle of a request
+    } // end catch
+    catch ( IOException exception ) {
+      System.err.format( "IOException: %s%n", exception );
+    } // end catch
+    finally {
+      if ( session != null )
+        session.detach();
+    } // end finally
+  } // end method serve
+
+  /**
+   * Writes the state of a game, with only the rows that changed since the
+   * last time unless every row is asked for.
+   */
+  private static void writeState( DataOutputStream out, Game game,
+                                  long[] rows, long[] shown, boolean isFull )
+      throws IOException
+  {
+    game.getRows( rows );
+
+    int changed = 0;
+    for ( int row = 0; row < rows.length; row++ )
+      if ( isFull || rows[ row ] != shown[ row ] )
+        changed |= 1 << row;
+
+    out.writeInt( game.getScore() );
+    out.writeInt( game.getMoves() );
+    out.writeInt( game.getLargestTile() );
+    out.writeByte( game.getLegalMoves() );
+    out.writeByte( changed );
+    for ( int row = 0; row < rows.length; row++ )
+      if ( ( changed & ( 1 << row ) ) != 0 ) {
+        out.writeLong( rows[ row ] );
+        shown[ row ] = rows[ row ];
+      } // end if
+  } // end method writeState
+
+  /**
+   * Runs the server until the process is stopped.
+   *
+   * @param args    Optionally, the port ( 2048 by default ) and the number
+   *                of seconds before an idle session is parked ( 60 by
+   *                default )
+   */
+  public static void main( String[] args ) throws IOException
+  {
+    int port = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : DEFAULT_PORT;
+    long idleMillis = ( args.length > 1 )
+        ? 1000L * Long.parseLong( args[ 1 ] )
+        : 60_000L;
+
+    GameServer server = new GameServer( port, PARK_DIRECTORY, idleMillis );
+    System.out.format( "Serving 2048 on localhost:%d%n", server.getPort() );
+    server.serve();
+  } // end main
+} // end class
@@ -0,0 +1,172 @@
+package game2048;
+
+// IO
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * One game hosted by the GameServer. A session belongs to at most one
+ * connection at a time. When no connection has used it for a while, its
+ * state is parked on disk and the session leaves memory until it is
+ * resumed.
+ */
+final class GameSession
+{
+  private static final int MAGIC = 0x32303453;   // "204S"
+
+  private final long id_;
+  private final Game game_;
+
+  private boolean isAttached_;   // Specifies if a connection is using it
+  private boolean isParked_;     // Specifies if its state went to disk
+  private long    lastUsed_;     // System.nanoTime() of the last request
+
+  /**
+   * Constructor. Starts a new game.
+   *
+   * @param id      The number the client resumes the session with
+   * @param size    The number of rows and columns of the board
+   * @param seed    The seed of the game
+   */
+  GameSession( long id, int size, long seed )
+  {
+    this( id, new Game( size, seed ) );
+  } // end constructor
+
+  private GameSession( long id, Game game )
+  {
+    id_ = id;
+    game_ = game;
+    game_.setTimed( true );
+    lastUsed_ = System.nanoTime();
+  } // end constructor
+
+  long getId()
+  {
+    return id_;
+  } // end method getId
+
+  /**
+   * @return    The game. Only the attached connection may use it.
+   */
+  Game getGame()
+  {
+    return game_;
+  } // end method getGame
+
+  /**
+   * Hands the session to a connection.
+   *
+   * @return    False if another connection has it, or it was parked and
+   *            has to be read back from disk first
+   */
+  synchronized boolean attach()
+  {
+    if ( isAttached_ || isParked_ )
+      return false;
+
+    isAttached_ = true;
+    lastUsed_ = System.nanoTime();
+    return true;
+  } // end method attach
+
+  /**
+   * Gives the session up, so it can be resumed or parked.
+   */
+  synchronized void detach()
+  {
+    isAttached_ = false;
+    lastUsed_ = System.nanoTime();
+  } // end method detach
+
+  synchronized boolean isParked()
+  {
+    return isParked_;
+  } // end method isParked
+
+  synchronized void touch()
+  {
+    lastUsed_ = System.nanoTime();
+  } // end method touch
+
+  /**
+   * Marks the session parked if it is idle. The caller writes the state and
+   * drops the session from memory.
+   *
+   * @param idleNanos   How long the session must have gone unused
+   * @param now         The current System.nanoTime()
+   * @return            True if the session is now parked
+   */
+  synchronized boolean park( long idleNanos, long now )
+  {
+    if ( isAttached_ || isParked_ || now - lastUsed_ < idleNanos )
+      return false;
+
+    isParked_ = true;
+    return true;
+  } // end method park
+
+  /**
+   * Takes the session back out of the parked state, when its state could
+   * not be written.
+   */
+  synchronized void unpark()
+  {
+    isParked_ = false;
+  } // end method unpark
+
+  /**
+   * Writes everything needed to resume the game: the board, the score, the
+   * number of moves, the largest tile, the seed and the state of the random
+   * numbers.
+   *
+   * @param out   Where to write
+   */
+  void write( DataOutput out ) throws IOException
+  {
+    long[] rows = new long[ game_.getSize() ];
+    game_.getRows( rows );
+
+    out.writeInt( MAGIC );
+    out.writeLong( id_ );
+    out.writeByte( rows.length );
+    for ( long row : rows )
+      out.writeLong( row );
+    out.writeInt( game_.getScore() );
+    out.writeInt( game_.getMoves() );
+    out.writeInt( game_.getLargestTile() );
+    out.writeLong( game_.getSeed() );
+    out.writeLong( game_.getRandomState() );
+  } // end method write
+
+  /**
+   * Reads a session written by write.
+   *
+   * @param in  Where to read from
+   * @return    The session, neither attached nor parked
+   */
+  static GameSession read( DataInput in ) throws IOException
+  {
+    if ( in.readInt() != MAGIC )
+      throw new IOException( "Not a parked session" );
+
+    long id = in.readLong();
+    int size = in.readUnsignedByte();
+    if ( size < PackedBoard.MIN_SIZE || size > PackedBoard.MAX_SIZE )
+      throw new IOException( "Bad board size: " + size );
+
+    long[] rows = new long[ size ];
+    for ( int row = 0; row < size; row++ )
+      rows[ row ] = in.readLong();
+    int score = in.readInt();
+    int nMoves = in.readInt();
+    int largestTile = in.readInt();
+    long seed = in.readLong();
+    long randomState = in.readLong();
+
+    Game game = new Game( size, seed );
+    game.restore( rows, score, nMoves, largestTile, seed, randomState );
+    return new GameSession( id, game );
+  } // end method read
+} // end class
@@ -0,0 +1,252 @@
+package game2048;
+
+// IO
+import java.io.PrintStream;
+
+// Utilities
+import java.util.Arrays;
+
+/**
+ * Running totals over many finished games. Only histograms are kept, never
+ * the games themselves, so memory use doesn't grow with the number of
+ * games. Each thread fills its own instance and the instances are merged
+ * at the end.
+ */
+final class GameStatistics
+{
+  static final int SCORE_BUCKET_WIDTH = 100;    // points per score bucket
+  static final int MOVES_BUCKET_WIDTH = 100;    // moves per moves bucket
+
+  // Bounds on any game the largest board can hold: 64 tiles of at most
+  // 32768 add up to 2^21, every move adds at least 2, and no tile is worth
+  // more than 15 times its value in points
+  private static final int MAX_TILE  = 32768;
+  private static final int MAX_MOVES = 1 << 20;
+  private static final int MAX_SCORE = 15 << 21;
+
+  private long   nGames_;
+  private long   nInvalid_;
+  private long   nReached2048_;
+  private long   totalScore_;
+  private long   totalMoves_;
+  private int    maxScore_;
+  private long[] scoreCounts_   = new long[ 256 ];
+  private long[] movesCounts_   = new long[ 64 ];
+  private long[] largestCounts_ = new long[ 32 ];   // indexed by log2 value
+  private long[] largestMoves_  = new long[ 32 ];   // moves, by largest tile
+
+  /**
+   * Checks a record for values no game can end with, as a damaged file
+   * might hold.
+   *
+   * @param score         The final score
+   * @param nMoves        The number of moves made
+   * @param largestTile   The value of the largest tile
+   * @return              True if a game could have ended this way
+   */
+  static boolean isValid( int score, int nMoves, int largestTile )
+  {
+    return score >= 0 && score <= MAX_SCORE
+        && nMoves >= 0 && nMoves <= MAX_MOVES
+        && largestTile >= 0 && largestTile <= MAX_TILE
+        && ( largestTile & ( largestTile - 1 ) ) == 0;
+  } // end method isValid
+
+  /**
+   * Counts a record that was left out because it isn't valid.
+   */
+  void skip()
+  {
+    nInvalid_++;
+  } // end method skip
+
+  /**
+   * Adds one finished game.
+   *
+   * @param score         The final score
+   * @param nMoves        The number of moves made
+   * @param largestTile   The value of the largest tile
+   * @throws IllegalArgumentException if the game isn't valid
+   */
+  void add( int score, int nMoves, int largestTile )
+  {
+    if ( !isValid( score, nMoves, largestTile ) )
+      throw new IllegalArgumentException( String.format(
+          "Not a valid game: score %d, %d moves, largest tile %d",
+          score, nMoves, largestTile ) );
+
+    nGames_++;
+    totalScore_ += score;
+    totalMoves_ += nMoves;
+    maxScore_ = Math.max( maxScore_, score );
+
+    if ( largestTile >= 2048 )
+      nReached2048_++;
+
+    scoreCounts_ = increment( scoreCounts_, score / SCORE_BUCKET_WIDTH );
+    movesCounts_ = increment( movesCounts_, nMoves / MOVES_BUCKET_WIDTH );
+    int tile = 31 - Integer.numberOfLeadingZeros( largestTile | 1 );
+    largestCounts_[ tile ]++;
+    largestMoves_[ tile ] += nMoves;
+  } // end method add
+
+  /**
+   * Adds the games counted by another instance to this one.
+   *
+   * @param other   The statistics to merge in. Left unchanged.
+   */
+  void merge( GameStatistics other )
+  {
+    nGames_       += other.nGames_;
+    nInvalid_     += other.nInvalid_;
+    nReached2048_ += other.nReached2048_;
+    totalScore_   += other.totalScore_;
+    totalMoves_   += other.totalMoves_;
+    maxScore_ = Math.max( maxScore_, other.maxScore_ );
+
+    scoreCounts_ = add( scoreCounts_, other.scoreCounts_ );
+    movesCounts_ = add( movesCounts_, other.movesCounts_ );
+    largestCounts_ = add( largestCounts_, other.largestCounts_ );
+    largestMoves_ = add( largestMoves_, other.largestMoves_ );
+  } // end method merge
+
+  /**
+   * Counts one more value in a bucket, growing the histogram if needed.
+   */
+  private static long[] increment( long[] counts, int bucket )
+  {
+    if ( bucket >= counts.length )
+      counts = Arrays.copyOf( counts, Math.max( bucket + 1, 2 * counts.length ) );
+
+    counts[ bucket ]++;
+    return counts;
+  } // end method increment
+
+  /**
+   * Adds two histograms bucket by bucket.
+   */
+  private static long[] add( long[] counts, long[] others )
+  {
+    if ( others.length > counts.length )
+      counts = Arrays.copyOf( counts, others.length );
+
+    for ( int i = 0; i < others.length; i++ )
+      counts[ i ] += others[ i ];
+
+    return counts;
+  } // end method add
+
+  long getGames()
+  {
+    return nGames_;
+  } // end method getGames
+
+  long getInvalidCount()
+  {
+    return nInvalid_;
+  } // end method getInvalidCount
+
+  double getReach2048Rate()
+  {
+    return ( nGames_ == 0 ) ? 0.0 : ( double ) nReached2048_ / nGames_;
+  } // end method getReach2048Rate
+
+  double getAverageScore()
+  {
+    return ( nGames_ == 0 ) ? 0.0 : ( double ) totalScore_ / nGames_;
+  } // end method getAverageScore
+
+  long getTotalMoves()
+  {
+    return totalMoves_;
+  } // end method getTotalMoves
+
+  double getAverageMoves()
+  {
+    return ( nGames_ == 0 ) ? 0.0 : ( double ) totalMoves_ / nGames_;
+  } // end method getAverageMoves
+
+  /**
+   * Estimates a score percentile from the score histogram.
+   *
+   * @param percentile  Between 0 and 100
+   * @return            The upper bound of the bucket holding the percentile
+   */
+  int getScorePercentile( double percentile )
+  {
+    long rank  = ( long ) Math.ceil( percentile / 100.0 * nGames_ );
+    long count = 0;
+
+    for ( int i = 0; i < scoreCounts_.length; i++ ) {
+      count += scoreCounts_[ i ];
+      if ( count >= rank && count > 0 )
+        return Math.min( maxScore_, ( i + 1 ) * SCORE_BUCKET_WIDTH - 1 );
+    } // end for
+
+    return maxScore_;
+  } // end method getScorePercentile
+
+  /**
+   * @param largestTile   A tile value
+   * @return              The number of games that ended with it as the
+   *                      largest tile
+   */
+  long getLargestTileCount( int largestTile )
+  {
+    return largestCounts_[ 31 - Integer.numberOfLeadingZeros( largestTile | 1 ) ];
+  } // end method getLargestTileCount
+
+  /**
+   * Averages the length of the games that ended with a given largest tile,
+   * which is how long it took to make that tile and then get stuck.
+   *
+   * @param largestTile   A tile value
+   * @return              The average number of moves, or 0 if no game
+   *                      ended with that tile
+   */
+  double getAverageMoves( int largestTile )
+  {
+    int tile = 31 - Integer.numberOfLeadingZeros( largestTile | 1 );
+    return ( largestCounts_[ tile ] == 0 )
+        ? 0.0
+        : ( double ) largestMoves_[ tile ] / largestCounts_[ tile ];
+  } // end method getAverageMoves
+
+  /**
+   * Prints the totals and distributions.
+   *
+   * @param out   Where to print
+   */
+  void print( PrintStream out )
+  {
+    out.format( "Games:         %,d%n", nGames_ );
+    if ( nInvalid_ > 0 )
+      out.format( "Skipped:       %,d invalid records%n", nInvalid_ );
+    out.format( "Reached 2048:  %.2f%%%n", 100.0 * getReach2048Rate() );
+    out.format( "Average score: %,.1f%n", getAverageScore() );
+    out.format( "Average moves: %,.1f%n", getAverageMoves() );
+    out.format( "Score p50/p90/p99/max: %,d / %,d / %,d / %,d%n",
+        getScorePercentile( 50 ),
+        getScorePercentile( 90 ),
+        getScorePercentile( 99 ),
+        maxScore_ );
+
+    out.println( "Largest tile:" );
+    out.format( "  %6s  %12s  %7s  %10s%n", "tile", "games", "share", "avg moves" );
+    for ( int i = 0; i < largestCounts_.length; i++ )
+      if ( largestCounts_[ i ] > 0 )
+        out.format( "  %6d  %,12d  %6.2f%%  %,10.1f%n",
+            ( i == 0 ) ? 0 : 1 << i,
+            largestCounts_[ i ],
+            100.0 * largestCounts_[ i ] / nGames_,
+            ( double ) largestMoves_[ i ] / largestCounts_[ i ] );
+
+    out.println( "Moves per game:" );
+    for ( int i = 0; i < movesCounts_.length; i++ )
+      if ( movesCounts_[ i ] > 0 )
+        out.format( "  %,6d-%,-6d  %,12d%n",
+            i * MOVES_BUCKET_WIDTH,
+            ( i + 1 ) * MOVES_BUCKET_WIDTH - 1,
+            movesCounts_[ i ] );
+  } // end method print
+} // end class
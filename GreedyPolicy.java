@@ -0,0 +1,41 @@
+package game2048;
+
+/**
+ * Plays the move whose resulting board scores best, without looking any
+ * further ahead.
+ */
+final class GreedyPolicy
+  implements MovePolicy
+{
+  private final BoardEvaluator evaluator_;
+
+  /**
+   * Constructor
+   *
+   * @param evaluator   Scores the board left by each move
+   */
+  GreedyPolicy( BoardEvaluator evaluator )
+  {
+    evaluator_ = evaluator;
+  } // end constructor
+
+  public int chooseMove( long board )
+  {
+    int    best      = -1;
+    double bestValue = -1.0;
+
+    for ( int direction = 0; direction < 4; direction++ ) {
+      long moved = Bitboard.move( board, direction );
+      if ( moved == board )
+        continue;
+
+      double value = evaluator_.evaluate( moved );
+      if ( value > bestValue ) {
+        bestValue = value;
+        best = direction;
+      } // end if
+    } // end for
+
+    return best;
+  } // end method chooseMove
+} // end class
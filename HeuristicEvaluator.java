@@ -0,0 +1,117 @@
+package game2048;
+
+/**
+ * Hand-tuned board evaluator. It rewards blank tiles, pairs that can merge
+ * and rows or columns that only increase or only decrease, and penalizes
+ * large tiles that sit scattered across the board. Each of the 65,536
+ * possible rows is scored once up front, so a board costs eight lookups.
+ */
+final class HeuristicEvaluator
+  implements BoardEvaluator
+{
+  private static final double ROW_BASE_SCORE      = 200000.0;
+  private static final double MONOTONICITY_POWER  = 4.0;
+  private static final double MONOTONICITY_WEIGHT = 47.0;
+  private static final double SUM_POWER           = 3.5;
+  private static final double SUM_WEIGHT          = 11.0;
+  private static final double MERGES_WEIGHT       = 700.0;
+  private static final double BLANKS_WEIGHT       = 270.0;
+
+  // Score of every row, which also serves for columns
+  private static final float[] ROW_SCORE = new float[ 1 << 16 ];
+
+  static
+  {
+    int[] line = new int[ Bitboard.SIZE ];
+
+    for ( int row = 0; row < ROW_SCORE.length; row++ ) {
+      for ( int i = 0; i < line.length; i++ )
+        line[ i ] = ( row >>> ( 4 * i ) ) & 0xF;
+
+      ROW_SCORE[ row ] = ( float ) scoreLine( line );
+    } // end for
+  } // end static initializer
+
+  /**
+   * Scores one row or column.
+   *
+   * @param line    The tile exponents of the row
+   * @return        The score of the row
+   */
+  private static double scoreLine( int[] line )
+  {
+    double sum     = 0.0;
+    int    nBlanks = 0;
+    int    nMerges = 0;
+    int    last    = 0;
+    int    counter = 0;
+
+    for ( int exponent : line ) {
+      sum += Math.pow( exponent, SUM_POWER );
+
+      if ( exponent == 0 ) {
+        nBlanks++;
+        continue;
+      } // end if
+
+      // Count runs of equal tiles, ignoring the blanks between them
+      if ( exponent == last )
+        counter++;
+      else {
+        if ( counter > 0 )
+          nMerges += 1 + counter;
+        counter = 0;
+      } // end else
+      last = exponent;
+    } // end for
+    if ( counter > 0 )
+      nMerges += 1 + counter;
+
+    double increasing = 0.0;
+    double decreasing = 0.0;
+    for ( int i = 1; i < line.length; i++ ) {
+      double before = Math.pow( line[ i - 1 ], MONOTONICITY_POWER );
+      double after  = Math.pow( line[ i ], MONOTONICITY_POWER );
+      if ( line[ i - 1 ] > line[ i ] )
+        increasing += before - after;
+      else
+        decreasing += after - before;
+    } // end for
+
+    return ROW_BASE_SCORE
+        + BLANKS_WEIGHT * nBlanks
+        + MERGES_WEIGHT * nMerges
+        - MONOTONICITY_WEIGHT * Math.min( increasing, decreasing )
+        - SUM_WEIGHT * sum;
+  } // end method scoreLine
+
+  /**
+   * Sums up the score of every row, and so every weight, in one number that
+   * changes whenever any of them does. Caches kept between runs use it to
+   * tell whether they still hold this evaluator's values.
+   *
+   * @return    The fingerprint
+   */
+  static long fingerprint()
+  {
+    long hash = 0L;
+    for ( float score : ROW_SCORE )
+      hash = GameRandom.mix( hash ^ Float.floatToRawIntBits( score ) );
+
+    return hash;
+  } // end method fingerprint
+
+  private static double scoreRows( long board )
+  {
+    return ROW_SCORE[ ( int ) ( board & 0xFFFFL ) ]
+        + ROW_SCORE[ ( int ) ( ( board >>> 16 ) & 0xFFFFL ) ]
+        + ROW_SCORE[ ( int ) ( ( board >>> 32 ) & 0xFFFFL ) ]
+        + ROW_SCORE[ ( int ) ( board >>> 48 ) ];
+  } // end method scoreRows
+
+  public double evaluate( long board )
+  {
+    return Math.max( 0.0,
+        scoreRows( board ) + scoreRows( Bitboard.transpose( board ) ) );
+  } // end method evaluate
+} // end class
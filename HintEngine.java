@@ -0,0 +1,153 @@
+package game2048;
+
+// Concurrency
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+// Components
+import javax.swing.SwingUtilities;
+
+/**
+ * Suggests moves to the player from a thread of its own. Each position is
+ * searched with expectimax one move deeper at a time, and the move of
+ * every depth finished is passed on as the hint, so there is a hint soon
+ * and a better one the longer the player thinks. The search stops at
+ * MAX_DEPTH or when the time is up.
+ *
+ * A new position, or the player pressing a key, cancels the search at
+ * once. The solver keeps its transposition table from one position to the
+ * next, so what the last search finished under the move the player made
+ * isn't searched again.
+ *
+ * The search runs on threads below normal priority, one fewer than there
+ * are processors, so it never keeps the game loop or the event thread
+ * waiting.
+ */
+final class HintEngine
+{
+  // How long a position is searched, at most
+  private static final long TIME_BUDGET_NS = 2_000_000_000L;
+
+  // Deeper than this the search runs out of time anyway
+  private static final int MAX_DEPTH = 6;
+
+  /**
+   * Hears about the hints, on the event thread.
+   */
+  interface Listener
+  {
+    /**
+     * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN, or -1 for
+     *                    no hint
+     * @param depth       The number of moves the hint looked ahead
+     */
+    void hint( int direction, int depth );
+  } // end interface Listener
+
+  private final Listener         listener_;
+  private final ForkJoinPool     pool_;
+  private final ExpectimaxSolver solver_;
+  private final ExecutorService  worker_;   // runs the deepening loop
+
+  // Goes up with every position and cancel, ending the search before
+  private final AtomicLong search_ = new AtomicLong();
+
+  /**
+   * Constructor
+   *
+   * @param listener    Gets each hint, on the event thread
+   */
+  HintEngine( Listener listener )
+  {
+    listener_ = listener;
+    pool_ = new ForkJoinPool(
+        Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 ),
+        pool -> {
+          ForkJoinWorkerThread thread
+              = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+                            .newThread( pool );
+          thread.setName( "hint-" + thread.getPoolIndex() );
+          thread.setDaemon( true );
+          thread.setPriority( Thread.MIN_PRIORITY );
+          return thread;
+        }, null, false );
+    solver_ = new ExpectimaxSolver( MAX_DEPTH, new HeuristicEvaluator(),
+                                    pool_ );
+    worker_ = Executors.newSingleThreadExecutor( runnable -> {
+      Thread thread = new Thread( runnable, "hint" );
+      thread.setDaemon( true );
+      thread.setPriority( Thread.MIN_PRIORITY );
+      return thread;
+    } );
+  } // end constructor
+
+  /**
+   * Starts looking for the best move on a board, dropping the search
+   * before. Returns at once.
+   *
+   * @param board   The board packed by Bitboard
+   */
+  void suggest( long board )
+  {
+    long search = search_.incrementAndGet();
+    worker_.execute( () -> search( board, search ) );
+  } // end method suggest
+
+  /**
+   * Stops the search, if any. Its hints, even those on their way to the
+   * event thread, are dropped. Returns at once.
+   */
+  void cancel()
+  {
+    search_.incrementAndGet();
+  } // end method cancel
+
+  /**
+   * Stops the search for good.
+   */
+  void shutdown()
+  {
+    cancel();
+    worker_.shutdownNow();
+    pool_.shutdownNow();
+  } // end method shutdown
+
+  /**
+   * Searches a board deeper and deeper until the time is up, passing on
+   * the move of every depth.
+   */
+  private void search( long board, long search )
+  {
+    long deadline = System.nanoTime() + TIME_BUDGET_NS;
+    BooleanSupplier stop = () -> search_.get() != search
+        || System.nanoTime() - deadline > 0;
+
+    for ( int depth = 1; depth <= MAX_DEPTH && !stop.getAsBoolean();
+          depth++ ) {
+      int direction;
+      try {
+        direction = solver_.bestMove( board, depth, stop );
+      } // end try
+      catch ( CancellationException exception ) {
+        return;
+      } // end catch
+
+      publish( direction, depth, search );
+      if ( direction < 0 )
+        return;   // no move left
+    } // end for
+  } // end method search
+
+  private void publish( int direction, int depth, long search )
+  {
+    SwingUtilities.invokeLater( () -> {
+      if ( search_.get() == search )
+        listener_.hint( direction, depth );
+    } );
+  } // end method publish
+} // end class
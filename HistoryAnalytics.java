@@ -0,0 +1,118 @@
+package game2048;
+
+// IO
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Utilities
+import java.util.stream.IntStream;
+
+/**
+ * Statistics over every game in a record store: score percentiles, the
+ * distribution of largest tiles and game lengths. The history is memory
+ * mapped in fixed-size segments that are read in parallel, each into its
+ * own GameStatistics, so memory use stays the same however many games
+ * there are and no object is made per record.
+ */
+final class HistoryAnalytics
+{
+  // Records per mapped segment, about 48 MB
+  private static final int SEGMENT_RECORDS = 1 << 22;
+
+  private HistoryAnalytics() {}
+
+  /**
+   * Reads a whole record file.
+   *
+   * @param recordFile  A record file written by RecordStore
+   * @return            The statistics over every complete record; records
+   *                    no game could end with are only counted
+   */
+  static GameStatistics analyze( Path recordFile ) throws IOException
+  {
+    try ( FileChannel channel
+              = FileChannel.open( recordFile, StandardOpenOption.READ ) ) {
+      long size = channel.size();
+      if ( size < RecordStore.HEADER_BYTES )
+        return new GameStatistics();
+
+      ByteBuffer header = ByteBuffer.allocate( RecordStore.HEADER_BYTES );
+      channel.read( header, 0 );
+      header.flip();
+      if ( header.getInt() != RecordStore.MAGIC
+           || header.getInt() != RecordStore.VERSION )
+        throw new IOException( "Not a record file: " + recordFile );
+
+      long nRecords
+          = ( size - RecordStore.HEADER_BYTES ) / RecordStore.RECORD_BYTES;
+      int nSegments
+          = ( int ) ( ( nRecords + SEGMENT_RECORDS - 1 ) / SEGMENT_RECORDS );
+
+      try {
+        return IntStream.range( 0, nSegments ).parallel().collect(
+            GameStatistics::new,
+            ( statistics, segment )
+                -> scan( channel, segment, nRecords, statistics ),
+            GameStatistics::merge );
+      } // end try
+      catch ( UncheckedIOException exception ) {
+        throw exception.getCause();
+      } // end catch
+    } // end try
+  } // end method analyze
+
+  /**
+   * Adds the records of one segment to the statistics.
+   */
+  private static void scan( FileChannel channel, int segment, long nRecords,
+                            GameStatistics statistics )
+  {
+    long first = ( long ) segment * SEGMENT_RECORDS;
+    int  count = ( int ) Math.min( SEGMENT_RECORDS, nRecords - first );
+
+    try {
+      MappedByteBuffer buffer = channel.map(
+          FileChannel.MapMode.READ_ONLY,
+          RecordStore.HEADER_BYTES + first * RecordStore.RECORD_BYTES,
+          ( long ) count * RecordStore.RECORD_BYTES );
+
+      for ( int i = 0; i < count; i++ ) {
+        int nMoves      = buffer.getInt();
+        int largestTile = buffer.getInt();
+        int score       = buffer.getInt();
+        if ( GameStatistics.isValid( score, nMoves, largestTile ) )
+          statistics.add( score, nMoves, largestTile );
+        else
+          statistics.skip();
+      } // end for
+    } // end try
+    catch ( IOException exception ) {
+      throw new UncheckedIOException( exception );
+    } // end catch
+  } // end method scan
+
+  /**
+   * Prints the statistics over a record file.
+   *
+   * @param args    Optionally, the record file ( the game's own by default )
+   */
+  public static void main( String[] args ) throws IOException
+  {
+    Path recordFile = ( args.length > 0 )
+        ? Paths.get( args[ 0 ] )
+        : RecordStore.openDefault().getRecordFile();
+
+    long start = System.nanoTime();
+    GameStatistics statistics = analyze( recordFile );
+    double seconds = ( System.nanoTime() - start ) / 1e9;
+
+    statistics.print( System.out );
+    System.out.format( "Read in %.3f s%n", seconds );
+  } // end main
+} // end class
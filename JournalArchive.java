@@ -0,0 +1,171 @@
+package game2048;
+
+// IO
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Utilities
+import java.util.List;
+
+/**
+ * A file holding the journal of every finished game, each preceded by the
+ * score the game claimed. Replaying the archive checks every claimed score
+ * against the rules as they are now. An archive holds games of one board
+ * size only.
+ *
+ * Games are appended in batches under a lock on the file, which keeps other
+ * processes out while a batch is written, and synced once per batch.
+ */
+final class JournalArchive
+{
+  // File locks belong to the whole process, so threads take turns here first
+  private static final Object APPEND_LOCK = new Object();
+
+  private final Path archiveFile_;
+  private final int  size_;
+
+  /**
+   * Constructor. The file doesn't have to exist yet.
+   *
+   * @param archiveFile   The archive file
+   */
+  JournalArchive( Path archiveFile )
+  {
+    this( archiveFile, Game.DEFAULT_SIZE );
+  } // end constructor
+
+  /**
+   * Constructor. The file doesn't have to exist yet.
+   *
+   * @param archiveFile   The archive file
+   * @param size          The number of rows and columns of its games
+   */
+  JournalArchive( Path archiveFile, int size )
+  {
+    archiveFile_ = archiveFile;
+    size_ = size;
+  } // end constructor
+
+  /**
+   * Adds finished games to the end of the archive, all in one write that
+   * is on disk once this returns. A batch that fails partway is cut off
+   * again, so the archive never ends in half a game.
+   *
+   * @param journals  The journals of the games
+   * @param scores    The score each game ended with, in the same order
+   */
+  void append( List< GameJournal > journals, int[] scores ) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try ( DataOutputStream out = new DataOutputStream( bytes ) ) {
+      for ( int i = 0; i < journals.size(); i++ ) {
+        out.writeInt( scores[ i ] );
+        journals.get( i ).write( out );
+      } // end for
+    } // end try
+
+    synchronized ( APPEND_LOCK ) {
+      try ( FileChannel channel = FileChannel.open( archiveFile_,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE ) ) {
+        FileLock lock = channel.lock();
+        try {
+          long start = channel.size();
+          try {
+            ByteBuffer buffer = ByteBuffer.wrap( bytes.toByteArray() );
+            long end = start;
+            while ( buffer.hasRemaining() )
+              end += channel.write( buffer, end );
+            channel.force( true );
+          } // end try
+          catch ( IOException exception ) {
+            channel.truncate( start );
+            throw exception;
+          } // end catch
+        } // end try
+        finally {
+          lock.release();
+        } // end finally
+      } // end try
+    } // end synchronized
+  } // end method append
+
+  /**
+   * Replays every game of the archive and counts the games whose replay
+   * doesn't end with the score they claimed.
+   *
+   * @return    The number of games replayed, the number of mismatches and
+   *            the number of moves replayed, in that order
+   */
+  long[] replayAll() throws IOException
+  {
+    long nGames      = 0;
+    long nMismatches = 0;
+    long nMoves      = 0;
+
+    if ( !Files.exists( archiveFile_ ) )
+      return new long[] { 0, 0, 0 };
+
+    try ( DataInputStream in = new DataInputStream(
+              new BufferedInputStream(
+                  Files.newInputStream( archiveFile_ ), 1 << 16 ) ) ) {
+      while ( true ) {
+        int score;
+        try {
+          score = in.readInt();
+        } // end try
+        catch ( EOFException exception ) {
+          break;
+        } // end catch
+
+        GameJournal journal = GameJournal.read( in, size_ );
+        nGames++;
+        nMoves += journal.size();
+
+        try {
+          if ( journal.replay().getScore() != score )
+            nMismatches++;
+        } // end try
+        catch ( IllegalStateException exception ) {
+          nMismatches++;
+        } // end catch
+      } // end while
+    } // end try
+
+    return new long[] { nGames, nMismatches, nMoves };
+  } // end method replayAll
+
+  /**
+   * Replays an archive and reports how many games didn't match.
+   *
+   * @param args    Optionally, the archive file ( the game's own by default )
+   *                and the board size ( 4 by default )
+   */
+  public static void main( String[] args ) throws IOException
+  {
+    int size = ( args.length > 1 )
+        ? Integer.parseInt( args[ 1 ] )
+        : Game.DEFAULT_SIZE;
+    Path archiveFile = ( args.length > 0 )
+        ? Paths.get( args[ 0 ] )
+        : GameLauncher.sizedPath( GameLauncher.JOURNAL_FILE_PATH, size );
+
+    long start = System.nanoTime();
+    long[] counts = new JournalArchive( archiveFile, size ).replayAll();
+    double seconds = ( System.nanoTime() - start ) / 1e9;
+
+    System.out.format( "Games replayed: %,d%n", counts[ 0 ] );
+    System.out.format( "Mismatches:     %,d%n", counts[ 1 ] );
+    System.out.format( "Moves per second: %,.0f%n", counts[ 2 ] / seconds );
+  } // end main
+} // end class
@@ -0,0 +1,182 @@
+package game2048;
+
+// Concurrency
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets that grow with the value, the way
+ * HdrHistogram does: the smallest values get a bucket each, and every
+ * power of 2 above them is split into 2^SUB_BITS buckets, so any value is
+ * known to within about 3%. Recording is one increment on a fixed array and
+ * never allocates, so any thread can record on a hot path.
+ */
+final class LatencyHistogram
+{
+  private static final int SUB_BITS    = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int N_BUCKETS   = ( 64 - SUB_BITS + 1 ) * SUB_BUCKETS;
+
+  private final String          name_;
+  private final AtomicLongArray counts_ = new AtomicLongArray( N_BUCKETS );
+  private final AtomicLong      total_  = new AtomicLong();
+  private final AtomicLong      max_    = new AtomicLong();
+
+  /**
+   * Constructor
+   *
+   * @param name    What is being timed, as shown in dumps
+   */
+  LatencyHistogram( String name )
+  {
+    name_ = name;
+  } // end constructor
+
+  String getName()
+  {
+    return name_;
+  } // end method getName
+
+  /**
+   * Counts one duration.
+   *
+   * @param nanos   The duration in nanoseconds. Negative values count as 0.
+   */
+  void record( long nanos )
+  {
+    long value = Math.max( 0, nanos );
+    counts_.incrementAndGet( bucketOf( value ) );
+    total_.addAndGet( value );
+    if ( value > max_.get() )
+      max_.accumulateAndGet( value, Math::max );
+  } // end method record
+
+  private static int bucketOf( long value )
+  {
+    if ( value < SUB_BUCKETS )
+      return ( int ) value;
+
+    // Keep the SUB_BITS + 1 highest bits; the top one picks the row
+    int shift = 63 - Long.numberOfLeadingZeros( value ) - SUB_BITS;
+    return shift * SUB_BUCKETS + ( int ) ( value >>> shift );
+  } // end method bucketOf
+
+  /**
+   * @return    The largest value that falls in a bucket
+   */
+  private static long highestOf( int bucket )
+  {
+    if ( bucket < SUB_BUCKETS )
+      return bucket;
+
+    int shift = bucket / SUB_BUCKETS - 1;
+    long low = ( long ) ( bucket % SUB_BUCKETS + SUB_BUCKETS ) << shift;
+    return low + ( 1L << shift ) - 1;
+  } // end method highestOf
+
+  /**
+   * Takes a summary of the durations counted so far. Durations recorded at
+   * the same time may or may not be included.
+   *
+   * @return    The summary
+   */
+  Snapshot snapshot()
+  {
+    long[] counts = new long[ N_BUCKETS ];
+    long count = 0;
+    for ( int i = 0; i < N_BUCKETS; i++ ) {
+      counts[ i ] = counts_.get( i );
+      count += counts[ i ];
+    } // end for
+
+    // A bucket's highest value may lie past the largest value counted
+    long max = max_.get();
+    return new Snapshot( name_, count, total_.get(), max,
+        Math.min( max, percentile( counts, count, 50 ) ),
+        Math.min( max, percentile( counts, count, 99 ) ),
+        Math.min( max, percentile( counts, count, 99.9 ) ) );
+  } // end method snapshot
+
+  private static long percentile( long[] counts, long count, double percent )
+  {
+    long rank = ( long ) Math.ceil( count * percent / 100 );
+    long seen = 0;
+    for ( int i = 0; i < counts.length; i++ ) {
+      seen += counts[ i ];
+      if ( seen >= rank && seen > 0 )
+        return highestOf( i );
+    } // end for
+
+    return 0;
+  } // end method percentile
+
+  /**
+   * A summary of one histogram at one moment, in nanoseconds.
+   */
+  static final class Snapshot
+  {
+    private final String name_;
+    private final long   count_;
+    private final long   total_;
+    private final long   max_;
+    private final long   p50_;
+    private final long   p99_;
+    private final long   p999_;
+
+    Snapshot( String name, long count, long total, long max,
+              long p50, long p99, long p999 )
+    {
+      name_  = name;
+      count_ = count;
+      total_ = total;
+      max_   = max;
+      p50_   = p50;
+      p99_   = p99;
+      p999_  = p999;
+    } // end constructor
+
+    String getName()
+    {
+      return name_;
+    } // end method getName
+
+    long getCount()
+    {
+      return count_;
+    } // end method getCount
+
+    double getMean()
+    {
+      return ( count_ == 0 ) ? 0 : ( double ) total_ / count_;
+    } // end method getMean
+
+    long getMax()
+    {
+      return max_;
+    } // end method getMax
+
+    long getP50()
+    {
+      return p50_;
+    } // end method getP50
+
+    long getP99()
+    {
+      return p99_;
+    } // end method getP99
+
+    long getP999()
+    {
+      return p999_;
+    } // end method getP999
+
+    public String toString()
+    {
+      return String.format(
+          "%-18s %,12d  mean %,10.1f us  p50 %,10.1f us  p99 %,10.1f us"
+          + "  p99.9 %,10.1f us  max %,10.1f us",
+          name_, count_, getMean() / 1e3, p50_ / 1e3, p99_ / 1e3,
+          p999_ / 1e3, max_ / 1e3 );
+    } // end method toString
+  } // end class Snapshot
+} // end class
@@ -3,209 +3,330 @@ package game2048;
 // Layout
 import java.awt.Dimension;
 import java.awt.BorderLayout;
+import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 
 // Components
+import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
 import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
 
-// IO
-import java.io.FileNotFoundException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Scanner;
+// Listeners and Events
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 
 // Utilities
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
+/**
+ * Every game of one board size, best first, a page at a time. The dialog
+ * opens at once and reads the history in the background, showing the best
+ * games from the record store's index while the rest load. Games are held
+ * as three int arrays, and the table draws only the rows in view with one
+ * shared renderer, so tens of thousands of games cost no more components
+ * than ten. Clicking a column header sorts by that column, again in the
+ * background; clicking it twice turns the order around.
+ */
 public class Leaderboard extends JDialog
 {
-  private static class Record
-    implements Comparable< Record >
+  private static final int PAGE_SIZE = 1000;   // rows on a page
+
+  private static final String[] COLUMNS = {
+      "Rank", "Game", "Moves Made", "Largest Tile", "Score" };
+  private static final int GAME_COLUMN  = 1;
+  static final int SCORE_COLUMN = 4;
+
+  /**
+   * The rows of one page of the history, in the order chosen.
+   */
+  private static final class RecordTableModel extends AbstractTableModel
   {
-    private int    nMoves_;
-    private int    largestTile_;
-    private int    score_;
-    
-    Record( int nMoves, int largestTile, int score )
+    private int[][] columns_ = new int[ 3 ][ 0 ];   // moves, tile, score
+    private int[]   order_   = new int[ 0 ];        // games, as sorted
+    private int     page_;
+    private int     sortColumn_ = SCORE_COLUMN;
+    private boolean isAscending_;
+    private boolean isTop_;   // only the best games, whose numbers the
+                              // index doesn't keep
+
+    public int getRowCount()
+    {
+      return Math.min( PAGE_SIZE, order_.length - page_ * PAGE_SIZE );
+    } // end method getRowCount
+
+    public int getColumnCount()
+    {
+      return COLUMNS.length;
+    } // end method getColumnCount
+
+    public String getColumnName( int column )
     {
-      nMoves_      = nMoves;
-      largestTile_ = largestTile;
-      score_       = score;
-    } // end constructor
-    
-    public int compareTo( Record record )
+      if ( column != sortColumn_ )
+        return COLUMNS[ column ];
+
+      return COLUMNS[ column ] + ( isAscending_ ? " \u25B2" : " \u25BC" );
+    } // end method getColumnName
+
+    public Object getValueAt( int row, int column )
     {
-      if ( this.score_ != record.score_ )
-        return -Integer.valueOf( score_ ).compareTo( record.score_ );
-      else if ( this.largestTile_ != record.largestTile_ )
-        return -Integer.valueOf( largestTile_ ).compareTo( record.largestTile_ );
-      else
-        return Integer.valueOf( nMoves_ ).compareTo( record.nMoves_ );
-    } // end method compareTo
-    
-    private static Record toRecord( String record )
+      int rank = page_ * PAGE_SIZE + row;
+      int game = order_[ rank ];
+      if ( column == GAME_COLUMN && isTop_ )
+        return "";
+
+      int value = ( column == 0 ) ? rank + 1
+          : ( column == GAME_COLUMN ) ? game + 1
+          : columns_[ column - 2 ][ game ];
+      return String.format( "%,d", value );
+    } // end method getValueAt
+
+    int getPageCount()
     {
-      Scanner sc = new Scanner( record );
-      
-      int    nMoves      = sc.nextInt();
-      int    largestTile = sc.nextInt();
-      int    score       = sc.nextInt();
-      
-      return new Record( nMoves, largestTile, score );
-    } // end method toRecord
-    
-    public String toString()
+      return Math.max( 1, ( order_.length + PAGE_SIZE - 1 ) / PAGE_SIZE );
+    } // end method getPageCount
+
+    void setPage( int page )
     {
-      return String.format( "%,d %d %,d", nMoves_, largestTile_, score_ );
-    } // end method toString
-  } // end inner class Record
-
-  private static final int MAX_RECORDS = 10;
-  
-  private Record[] scoreRecords_;
-  
+      page_ = Math.max( 0, Math.min( page, getPageCount() - 1 ) );
+      fireTableDataChanged();
+    } // end method setPage
+
+    /**
+     * Shows games in a new order, from the first page.
+     */
+    void setGames( int[][] columns, int[] order, int sortColumn,
+                   boolean isAscending )
+    {
+      columns_     = columns;
+      order_       = order;
+      sortColumn_  = sortColumn;
+      isAscending_ = isAscending;
+      isTop_       = false;
+      page_        = 0;
+      fireTableStructureChanged();
+    } // end method setGames
+
+    /**
+     * Shows only the best games, by score, until the whole history is in.
+     */
+    void setTop( ScoreRecord[] top )
+    {
+      int[][] columns = new int[ 3 ][ top.length ];
+      int[]   order   = new int[ top.length ];
+      for ( int i = 0; i < top.length; i++ ) {
+        columns[ 0 ][ i ] = top[ i ].getMoves();
+        columns[ 1 ][ i ] = top[ i ].getLargestTile();
+        columns[ 2 ][ i ] = top[ i ].getScore();
+        order[ i ] = i;
+      } // end for
+
+      setGames( columns, order, SCORE_COLUMN, false );
+      isTop_ = true;
+    } // end method setTop
+  } // end class RecordTableModel
+
+  private final RecordTableModel model_ = new RecordTableModel();
+  private final JLabel  statusLabel_ = new JLabel( "Loading..." );
+  private final JLabel  pageLabel_   = new JLabel();
+  private final JButton previousButton_ = new JButton( "Previous" );
+  private final JButton nextButton_     = new JButton( "Next" );
+
+  private int[][] columns_;        // the games, once loaded
+  private boolean isSorting_;      // a sort is running in the background
+
   Leaderboard( JFrame owner )
   {
-    super ( owner, "2048 Leaderboard", true );
-    
-    // Create panels
-    JPanel mainPanel = new JPanel();
-    mainPanel.setLayout( new BoxLayout( mainPanel, BoxLayout.PAGE_AXIS ) );
-    // mainPanel.setPreferredSize( new Dimension( 300, 400 ) );
-    
-    // Get record file path
-    Path filePath = Paths.get( GameLauncher.RECORD_FILE_PATH );
-    
-    // Count the number of scores from the file
-    int nRecords = 0;
-    try ( Scanner sc = new Scanner( filePath.toFile() ) ) {
-      while ( sc.hasNextLine() ) {
-        nRecords++;
-        sc.nextLine();
-      } // end while
-    } // end try
-    catch ( FileNotFoundException exception ) {}
-    
-    // Create array to store records
-    scoreRecords_ = new Record[ nRecords ];
-    
-    // Store the records from the file to the array
-    try ( Scanner sc = new Scanner( filePath.toFile() ) ) {
-      for ( int i = 0; i < scoreRecords_.length; i++ )
-        scoreRecords_[ i ] = Record.toRecord( sc.nextLine() );
-    } // end try
-    catch ( FileNotFoundException exception ) {}
-    
-    // Sort the array from record with highest score
-    Arrays.sort( scoreRecords_ );
-    
-    // Create template panel to display top 10 scores
-    class RecordPanel extends JPanel
-    {
-      RecordPanel( int rank, int nMoves, int largestTile, int score )
+    this( owner, Game.DEFAULT_SIZE );
+  } // end constructor
+
+  /**
+   * Constructor. Shows every record of one board size, once they are read.
+   *
+   * @param owner   The frame the dialog belongs to
+   * @param size    The number of rows and columns
+   */
+  Leaderboard( JFrame owner, int size )
+  {
+    super ( owner, ( size == Game.DEFAULT_SIZE )
+        ? "2048 Leaderboard"
+        : String.format( "2048 Leaderboard ( %dx%d )", size, size ), true );
+
+    // Create table, with every number lined up on the right
+    JTable table = new JTable( model_ );
+    DefaultTableCellRenderer renderer = new DefaultTableCellRenderer();
+    renderer.setHorizontalAlignment( SwingConstants.TRAILING );
+    table.setDefaultRenderer( Object.class, renderer );
+    table.getTableHeader().setReorderingAllowed( false );
+    table.getTableHeader().addMouseListener( new MouseAdapter() {
+      public void mouseClicked( MouseEvent event )
       {
-        super ();
-        setLayout( new BoxLayout( this, BoxLayout.LINE_AXIS ) );
-        
-        // All-purpose label
-        JLabel label;
-        
-        add( Box.createHorizontalStrut( 15 ) );
-        
-        // Label for rank
-        label = new JLabel( String.format( "%d", rank ) );
-        label.setHorizontalAlignment( SwingConstants.TRAILING );
-        label.setPreferredSize( new Dimension( 25, 24 ) );
-        add( label );
-        add( Box.createHorizontalGlue() );
-        add( Box.createHorizontalStrut( 20 ) );
-        
-        // Label for number of moves made
-        label = new JLabel( String.format( "%,d", nMoves ) );
-        label.setHorizontalAlignment( SwingConstants.TRAILING );
-        label.setPreferredSize( new Dimension( 60, 24 ) );
-        add( label );
-        add( Box.createHorizontalStrut( 30 ) );
-
-        // Label for largest tile
-        label = new JLabel( String.format( "%d", largestTile ) );
-        label.setHorizontalAlignment( SwingConstants.TRAILING );
-        label.setPreferredSize( new Dimension( 60, 24 ) );
-        add( label );
-        add( Box.createHorizontalStrut( 30 ) );
-        
-        // Label for score
-        label = new JLabel( String.format( "%,d", score ) );
-        label.setHorizontalAlignment( SwingConstants.TRAILING );
-        label.setPreferredSize( new Dimension( 40, 24 ) );
-        add( label );
-        add( Box.createHorizontalStrut( 35 ) );
-      } // end constructor
-    } // end local class RecordPanel
-    
-    // Create headers
-    JPanel headerPanel = new JPanel();
-    headerPanel.setLayout( new BoxLayout( headerPanel, BoxLayout.LINE_AXIS ) );
-    JLabel header;
-    headerPanel.add( Box.createHorizontalStrut( 15 ) );
-    header = new JLabel( "Rank" );
-    header.setPreferredSize( new Dimension( 25, 24 ) );
-    headerPanel.add( header );
-    headerPanel.add( Box.createHorizontalGlue() );
-    headerPanel.add( Box.createHorizontalStrut( 20 ) );
-    header = new JLabel( "Moves Made" );
-    header.setHorizontalAlignment( SwingConstants.TRAILING );
-    header.setPreferredSize( new Dimension( 60, 24 ) );
-    headerPanel.add( header );
-    headerPanel.add( Box.createHorizontalStrut( 30 ) );
-    header = new JLabel( "Largest Tile" );
-    header.setHorizontalAlignment( SwingConstants.TRAILING );
-    header.setPreferredSize( new Dimension( 60, 24 ) );
-    headerPanel.add( header );
-    headerPanel.add( Box.createHorizontalStrut( 30 ) );
-    header = new JLabel( "Score" );
-    header.setHorizontalAlignment( SwingConstants.TRAILING );
-    header.setPreferredSize( new Dimension( 40, 24 ) );
-    headerPanel.add( header );
-    headerPanel.add( Box.createHorizontalStrut( 35 ) );
-    
-    mainPanel.add( headerPanel );
-    
-    // Display top 10 scores
-    if ( nRecords > MAX_RECORDS )
-      for ( int i = 0; i < MAX_RECORDS; i++ ) {
-        Record record = scoreRecords_[ i ];
-        mainPanel.add(
-            new RecordPanel(
-                i + 1,
-                record.nMoves_,
-                record.largestTile_,
-                record.score_ ) );
-        mainPanel.add( Box.createVerticalStrut( 10 ) );
-      } // end for
-    else
-      for ( int i = 0; i < scoreRecords_.length; i++ ) {
-        Record record = scoreRecords_[ i ];
-        mainPanel.add(
-            new RecordPanel(
-                i + 1,
-                record.nMoves_,
-                record.largestTile_,
-                record.score_ ) );
-        mainPanel.add( Box.createVerticalStrut( 10 ) );
-      } // end for
-    
-    add( mainPanel );
-    setResizable( false );
+        int column = table.columnAtPoint( event.getPoint() );
+        if ( column > 0 )
+          sort( column, column == model_.sortColumn_ && !model_.isAscending_ );
+      } // end method mouseClicked
+    } );
+    JScrollPane scrollPane = new JScrollPane( table );
+    scrollPane.setPreferredSize( new Dimension( 420, 300 ) );
+
+    // Create paging panel
+    previousButton_.addActionListener(
+        event -> showPage( model_.page_ - 1 ) );
+    nextButton_.addActionListener( event -> showPage( model_.page_ + 1 ) );
+    JPanel pagePanel = new JPanel();
+    pagePanel.setLayout( new BoxLayout( pagePanel, BoxLayout.LINE_AXIS ) );
+    pagePanel.setBorder( BorderFactory.createEmptyBorder( 5, 5, 5, 5 ) );
+    pagePanel.add( statusLabel_ );
+    pagePanel.add( Box.createHorizontalGlue() );
+    pagePanel.add( previousButton_ );
+    pagePanel.add( Box.createHorizontalStrut( 5 ) );
+    pagePanel.add( pageLabel_ );
+    pagePanel.add( Box.createHorizontalStrut( 5 ) );
+    pagePanel.add( nextButton_ );
+
+    add( scrollPane, BorderLayout.CENTER );
+    add( pagePanel, BorderLayout.PAGE_END );
+    showPage( 0 );
+
+    // Show the best games from the index, then read the whole history away
+    // from the event thread and sort it best first
+    new SwingWorker< int[][], ScoreRecord[] >() {
+      protected int[][] doInBackground() throws Exception
+      {
+        RecordStore store = RecordStore.openDefault( size );
+        long start = System.nanoTime();
+        ScoreRecord[] top = store.top();
+        Metrics.leaderboard( start, false, top.length );
+        publish( top );
+
+        start = System.nanoTime();
+        int[][] columns = store.readAll();
+        Metrics.leaderboard( start, false, columns[ 0 ].length );
+        return columns;
+      } // end method doInBackground
+
+      protected void process( List< ScoreRecord[] > tops )
+      {
+        if ( columns_ == null ) {
+          model_.setTop( tops.get( tops.size() - 1 ) );
+          statusLabel_.setText( "Loading the rest..." );
+          showPage( 0 );
+        } // end if
+      } // end method process
+
+      protected void done()
+      {
+        try {
+          columns_ = get();
+          sort( SCORE_COLUMN, false );
+        } // end try
+        catch ( ExecutionException exception ) {
+          System.err.format( "IOException: %s%n", exception.getCause() );
+          statusLabel_.setText( "Couldn't read the records" );
+        } // end catch
+        catch ( InterruptedException exception ) {
+          Thread.currentThread().interrupt();
+        } // end catch
+      } // end method done
+    }.execute();
+
     setLocationRelativeTo( owner );
     pack();
   } // end constructor
-  
+
+  /**
+   * Sorts the games by a column, in the background, and shows the first
+   * page. Does nothing while the games are loading or being sorted.
+   *
+   * @param column        The column of the table to sort by
+   * @param isAscending   True for the smallest first
+   */
+  private void sort( int column, boolean isAscending )
+  {
+    if ( columns_ == null || isSorting_ )
+      return;
+
+    int[][] columns = columns_;
+    isSorting_ = true;
+    statusLabel_.setText( "Sorting..." );
+
+    new SwingWorker< int[], Void >() {
+      protected int[] doInBackground()
+      {
+        return order( columns, column, isAscending );
+      } // end method doInBackground
+
+      protected void done()
+      {
+        try {
+          model_.setGames( columns, get(), column, isAscending );
+        } // end try
+        catch ( ExecutionException exception ) {
+          throw new IllegalStateException( exception.getCause() );
+        } // end catch
+        catch ( InterruptedException exception ) {
+          Thread.currentThread().interrupt();
+        } // end catch
+        finally {
+          isSorting_ = false;
+          statusLabel_.setText(
+              String.format( "%,d games", columns[ 0 ].length ) );
+          showPage( 0 );
+        } // end finally
+      } // end method done
+    }.execute();
+  } // end method sort
+
+  private void showPage( int page )
+  {
+    model_.setPage( page );
+    pageLabel_.setText( String.format( "Page %,d of %,d",
+        model_.page_ + 1, model_.getPageCount() ) );
+    previousButton_.setEnabled( model_.page_ > 0 );
+    nextButton_.setEnabled( model_.page_ < model_.getPageCount() - 1 );
+  } // end method showPage
+
+  /**
+   * Works out the order of the games by one column. Each game becomes a
+   * long holding its key above its number, so one sort of primitives does
+   * it with no object per game. Games that tie stay in the order they were
+   * played.
+   *
+   * @param columns       The moves, largest tiles and scores of the games
+   * @param column        The column of the table to sort by
+   * @param isAscending   True for the smallest first
+   * @return              The numbers of the games, in order
+   */
+  static int[] order( int[][] columns, int column, boolean isAscending )
+  {
+    int n = columns[ 0 ].length;
+    long[] keys = new long[ n ];
+    for ( int game = 0; game < n; game++ ) {
+      long key = ( column == GAME_COLUMN )
+          ? game
+          : columns[ column - 2 ][ game ];
+      if ( !isAscending )
+        key = Integer.MAX_VALUE - key;
+      keys[ game ] = key << 32 | game;
+    } // end for
+    Arrays.parallelSort( keys );
+
+    int[] order = new int[ n ];
+    for ( int i = 0; i < n; i++ )
+      order[ i ] = ( int ) keys[ i ];
+    return order;
+  } // end method order
+
 /*
   public static void main( String[] args )
   {
@@ -213,5 +334,5 @@ public class Leaderboard extends JDialog
     lb.setVisible( true );
   } // end main
  */
- 
- } // end class
\ No newline at end of file
+
+ } // end class
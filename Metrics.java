@@ -0,0 +1,264 @@
+package game2048;
+
+// IO
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+// Utilities
+import java.util.ArrayList;
+import java.util.List;
+
+// Concurrency
+import java.util.concurrent.atomic.AtomicLong;
+
+// Flight Recorder
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Timings of the paths players feel: from a key to the next paint, the
+ * engine inside a move, spawning a tile, loading and writing the
+ * leaderboard, and the pace of batch runs. Every timing goes into a
+ * LatencyHistogram, and is also sent to Flight Recorder as an event of the
+ * "2048" category whenever a recording has that event enabled.
+ *
+ * Timing costs a few calls to System.nanoTime() per move, so only games
+ * that ask for it are timed: the one on screen and the ones on the server.
+ * Run with -Dgame2048.metrics=false to leave all timing out, or with
+ * -Dgame2048.metrics.dump=true to print every histogram when the JVM exits.
+ */
+final class Metrics
+{
+  static final boolean ENABLED = Boolean.parseBoolean(
+      System.getProperty( "game2048.metrics", "true" ) );
+
+  static final LatencyHistogram INPUT_TO_PAINT
+      = new LatencyHistogram( "input-to-paint" );
+  static final LatencyHistogram MOVE  = new LatencyHistogram( "move" );
+  static final LatencyHistogram SPAWN = new LatencyHistogram( "spawn" );
+  static final LatencyHistogram LEADERBOARD_LOAD
+      = new LatencyHistogram( "leaderboard-load" );
+  static final LatencyHistogram LEADERBOARD_WRITE
+      = new LatencyHistogram( "leaderboard-write" );
+
+  private static final LatencyHistogram[] HISTOGRAMS = {
+      INPUT_TO_PAINT, MOVE, SPAWN, LEADERBOARD_LOAD, LEADERBOARD_WRITE };
+
+  private static final AtomicLong batchMoves_ = new AtomicLong();
+  private static final AtomicLong batchNanos_ = new AtomicLong();
+
+  @Name( "game2048.InputToPaint" )
+  @Label( "Input To Paint" )
+  @Category( "2048" )
+  static final class InputEvent extends Event
+  {
+    @Label( "Latency" ) @Timespan( Timespan.NANOSECONDS )
+    long latency;
+  } // end class InputEvent
+
+  // One event per move is a lot, so recordings have to ask for these
+  @Name( "game2048.Move" )
+  @Label( "Move" )
+  @Category( "2048" )
+  @Enabled( false )
+  static final class MoveEvent extends Event
+  {
+    @Label( "Direction" )
+    int direction;
+
+    @Label( "Points" )
+    int points;
+
+    @Label( "Engine Time" ) @Timespan( Timespan.NANOSECONDS )
+    long engineTime;
+
+    @Label( "Spawn Time" ) @Timespan( Timespan.NANOSECONDS )
+    long spawnTime;
+  } // end class MoveEvent
+
+  @Name( "game2048.Leaderboard" )
+  @Label( "Leaderboard" )
+  @Category( "2048" )
+  static final class LeaderboardEvent extends Event
+  {
+    @Label( "Write" )
+    boolean isWrite;
+
+    @Label( "Records" )
+    int nRecords;
+
+    @Label( "Time" ) @Timespan( Timespan.NANOSECONDS )
+    long time;
+  } // end class LeaderboardEvent
+
+  @Name( "game2048.Batch" )
+  @Label( "Batch" )
+  @Category( "2048" )
+  static final class BatchEvent extends Event
+  {
+    @Label( "Games" )
+    long nGames;
+
+    @Label( "Moves" )
+    long nMoves;
+
+    @Label( "Moves Per Second" )
+    double movesPerSecond;
+  } // end class BatchEvent
+
+  private static final EventType INPUT_TYPE
+      = EventType.getEventType( InputEvent.class );
+  private static final EventType MOVE_TYPE
+      = EventType.getEventType( MoveEvent.class );
+  private static final EventType LEADERBOARD_TYPE
+      = EventType.getEventType( LeaderboardEvent.class );
+
+  static
+  {
+    if ( Boolean.getBoolean( "game2048.metrics.dump" ) )
+      Runtime.getRuntime().addShutdownHook(
+          new Thread( () -> print( System.err ), "metrics-dump" ) );
+  } // end static initializer
+
+  private Metrics() {}
+
+  /**
+   * Records a move.
+   *
+   * @param start       System.nanoTime() before the tiles moved
+   * @param moved       System.nanoTime() after the tiles moved
+   * @param spawned     System.nanoTime() after the new tile appeared
+   * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN
+   * @param points      The points the move scored
+   */
+  static void moved( long start, long moved, long spawned, int direction,
+                     int points )
+  {
+    MOVE.record( moved - start );
+    SPAWN.record( spawned - moved );
+
+    if ( MOVE_TYPE.isEnabled() ) {
+      MoveEvent event = new MoveEvent();
+      event.direction  = direction;
+      event.points     = points;
+      event.engineTime = moved - start;
+      event.spawnTime  = spawned - moved;
+      event.commit();
+    } // end if
+  } // end method moved
+
+  /**
+   * Records the time from a key to the first paint that shows its move.
+   *
+   * @param start   System.nanoTime() when the key came in
+   */
+  static void painted( long start )
+  {
+    long latency = System.nanoTime() - start;
+    INPUT_TO_PAINT.record( latency );
+
+    if ( INPUT_TYPE.isEnabled() ) {
+      InputEvent event = new InputEvent();
+      event.latency = latency;
+      event.commit();
+    } // end if
+  } // end method painted
+
+  /**
+   * Records a read or write of the leaderboard.
+   *
+   * @param start       System.nanoTime() before the file was touched
+   * @param isWrite     True for an append, false for a load
+   * @param nRecords    The number of records read or written
+   */
+  static void leaderboard( long start, boolean isWrite, int nRecords )
+  {
+    long time = System.nanoTime() - start;
+    ( isWrite ? LEADERBOARD_WRITE : LEADERBOARD_LOAD ).record( time );
+
+    if ( LEADERBOARD_TYPE.isEnabled() ) {
+      LeaderboardEvent event = new LeaderboardEvent();
+      event.isWrite  = isWrite;
+      event.nRecords = nRecords;
+      event.time     = time;
+      event.commit();
+    } // end if
+  } // end method leaderboard
+
+  /**
+   * Records a finished batch of headless games.
+   *
+   * @param nGames  The number of games played
+   * @param nMoves  The number of moves made over every game
+   * @param nanos   How long the batch took
+   */
+  static void batchPlayed( long nGames, long nMoves, long nanos )
+  {
+    batchMoves_.addAndGet( nMoves );
+    batchNanos_.addAndGet( nanos );
+
+    BatchEvent event = new BatchEvent();
+    if ( event.isEnabled() ) {
+      event.nGames = nGames;
+      event.nMoves = nMoves;
+      event.movesPerSecond = nMoves * 1e9 / Math.max( 1, nanos );
+      event.commit();
+    } // end if
+  } // end method batchPlayed
+
+  /**
+   * @return    The moves per second over every batch run so far
+   */
+  static double getBatchMovesPerSecond()
+  {
+    long nanos = batchNanos_.get();
+    return ( nanos == 0 ) ? 0 : batchMoves_.get() * 1e9 / nanos;
+  } // end method getBatchMovesPerSecond
+
+  /**
+   * @return    A summary of every histogram
+   */
+  static List< LatencyHistogram.Snapshot > snapshot()
+  {
+    List< LatencyHistogram.Snapshot > snapshots = new ArrayList<>();
+    for ( LatencyHistogram histogram : HISTOGRAMS )
+      snapshots.add( histogram.snapshot() );
+
+    return snapshots;
+  } // end method snapshot
+
+  /**
+   * Prints every histogram that has counted anything, and the batch pace.
+   *
+   * @param out   Where to print
+   */
+  static void print( PrintStream out )
+  {
+    out.print( dump() );
+  } // end method print
+
+  /**
+   * @return    What print would print
+   */
+  static String dump()
+  {
+    StringWriter text = new StringWriter();
+    try ( PrintWriter out = new PrintWriter( text ) ) {
+      for ( LatencyHistogram.Snapshot snapshot : snapshot() )
+        if ( snapshot.getCount() > 0 )
+          out.println( snapshot );
+
+      if ( batchNanos_.get() > 0 )
+        out.format( "%-18s %,12.0f moves/s%n", "batch",
+            getBatchMovesPerSecond() );
+    } // end try
+
+    return text.toString();
+  } // end method dump
+} // end class
@@ -0,0 +1,16 @@
+package game2048;
+
+/**
+ * Chooses the next move of a game played without a player. A policy may
+ * keep state between calls, so each thread plays with its own instance,
+ * unless the policy is made to be shared, as ExpectimaxSolver is.
+ */
+interface MovePolicy
+{
+  /**
+   * @param board   The board packed by Bitboard
+   * @return        One of Bitboard.LEFT, RIGHT, UP or DOWN, or -1 if no
+   *                move is possible
+   */
+  int chooseMove( long board );
+} // end interface
@@ -0,0 +1,288 @@
+package game2048;
+
+// IO
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Board evaluator learned by NTupleTrainer. Each n-tuple is a fixed set of
+ * cells; the exponents on those cells index a table of weights, and a
+ * board is worth the sum of the weights it picks out of every table. Every
+ * tuple is read off all eight rotations and reflections of the board, so
+ * one table serves each shape wherever it lies.
+ *
+ * Weights are plain float tables that training threads update without
+ * locks. They are saved to and loaded from files through memory maps, so
+ * a network of hundreds of megabytes loads in about the time it takes to
+ * copy it.
+ */
+final class NTupleNetwork
+  implements BoardEvaluator
+{
+  private static final int MAGIC   = 0x3230344E;   // "204N"
+  private static final int VERSION = 1;
+
+  private static final int MAX_TUPLE_LENGTH = 6;   // 16^6 weights, 64 MB
+
+  // Two rows, and two 2x3 rectangles, with cells numbered 4 * row + col
+  static final int[][] DEFAULT_TUPLES = {
+      { 0, 1, 2, 3, 4, 5 }, { 4, 5, 6, 7, 8, 9 },
+      { 0, 1, 2, 4, 5, 6 }, { 4, 5, 6, 8, 9, 10 } };
+
+  private final int[][]   tuples_;    // the cells of each tuple
+  private final int[][]   shifts_;    // where those cells sit in a board
+  private final float[][] weights_;   // one table per tuple
+
+  /**
+   * Constructor. Every weight starts at 0.
+   */
+  NTupleNetwork()
+  {
+    this( DEFAULT_TUPLES );
+  } // end constructor
+
+  /**
+   * Constructor. Every weight starts at 0.
+   *
+   * @param tuples  The cells of each tuple, numbered 4 * row + col
+   */
+  NTupleNetwork( int[][] tuples )
+  {
+    tuples_  = new int[ tuples.length ][];
+    shifts_  = new int[ tuples.length ][];
+    weights_ = new float[ tuples.length ][];
+
+    for ( int t = 0; t < tuples.length; t++ ) {
+      int[] cells = tuples[ t ];
+      if ( cells.length < 1 || cells.length > MAX_TUPLE_LENGTH )
+        throw new IllegalArgumentException(
+            "Tuple of " + cells.length + " cells" );
+
+      tuples_[ t ] = cells.clone();
+      shifts_[ t ] = new int[ cells.length ];
+      for ( int i = 0; i < cells.length; i++ ) {
+        if ( cells[ i ] < 0 || cells[ i ] >= 16 )
+          throw new IllegalArgumentException( "Bad cell: " + cells[ i ] );
+        shifts_[ t ][ i ] = 4 * cells[ i ];
+      } // end for
+
+      weights_[ t ] = new float[ 1 << ( 4 * cells.length ) ];
+    } // end for
+  } // end constructor
+
+  public double evaluate( long board )
+  {
+    return Math.max( 0.0, value( board ) );
+  } // end method evaluate
+
+  /**
+   * Estimates the points still to be scored from a board.
+   *
+   * @param board   The board packed by Bitboard, as left by a move
+   * @return        The sum of the weights of every tuple on every rotation
+   *                and reflection of the board
+   */
+  float value( long board )
+  {
+    long transposed = Bitboard.transpose( board );
+    long flipped = Bitboard.flip( board );
+    long flippedTransposed = Bitboard.flip( transposed );
+
+    return sum( board ) + sum( Bitboard.mirror( board ) )
+        + sum( flipped ) + sum( Bitboard.mirror( flipped ) )
+        + sum( transposed ) + sum( Bitboard.mirror( transposed ) )
+        + sum( flippedTransposed )
+        + sum( Bitboard.mirror( flippedTransposed ) );
+  } // end method value
+
+  /**
+   * Adds to every weight the board picks out. Other threads may update the
+   * same weights at the same time; an update lost now and then only slows
+   * learning down a little.
+   *
+   * @param board   The board packed by Bitboard
+   * @param delta   The amount added to each weight
+   */
+  void update( long board, float delta )
+  {
+    long transposed = Bitboard.transpose( board );
+    long flipped = Bitboard.flip( board );
+    long flippedTransposed = Bitboard.flip( transposed );
+
+    add( board, delta );
+    add( Bitboard.mirror( board ), delta );
+    add( flipped, delta );
+    add( Bitboard.mirror( flipped ), delta );
+    add( transposed, delta );
+    add( Bitboard.mirror( transposed ), delta );
+    add( flippedTransposed, delta );
+    add( Bitboard.mirror( flippedTransposed ), delta );
+  } // end method update
+
+  /**
+   * @return    The sum of the weights of every tuple on one orientation
+   */
+  private float sum( long board )
+  {
+    float sum = 0.0f;
+    for ( int t = 0; t < weights_.length; t++ )
+      sum += weights_[ t ][ indexOf( board, shifts_[ t ] ) ];
+
+    return sum;
+  } // end method sum
+
+  private void add( long board, float delta )
+  {
+    for ( int t = 0; t < weights_.length; t++ )
+      weights_[ t ][ indexOf( board, shifts_[ t ] ) ] += delta;
+  } // end method add
+
+  /**
+   * @return    The exponents on the cells of a tuple, packed 4 bits each
+   */
+  private static int indexOf( long board, int[] shifts )
+  {
+    int index = 0;
+    for ( int i = 0; i < shifts.length; i++ )
+      index |= ( int ) ( ( board >>> shifts[ i ] ) & 0xF ) << ( 4 * i );
+
+    return index;
+  } // end method indexOf
+
+  /**
+   * @return    The number of weights a board picks out: one per tuple and
+   *            orientation
+   */
+  int getFeatureCount()
+  {
+    return 8 * weights_.length;
+  } // end method getFeatureCount
+
+  /**
+   * Writes the tuples and weights. Weights updated during the save may or
+   * may not make it into the file.
+   *
+   * @param file  The file. Replaced whole, through a temporary file.
+   */
+  void save( Path file ) throws IOException
+  {
+    Path temporary = file.resolveSibling( file.getFileName() + ".tmp" );
+
+    try ( FileChannel channel = FileChannel.open( temporary,
+              StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.READ, StandardOpenOption.WRITE ) ) {
+      ByteBuffer header = ByteBuffer.allocate( headerBytes( tuples_ ) )
+                                    .order( ByteOrder.LITTLE_ENDIAN );
+      header.putInt( MAGIC ).putInt( VERSION ).putInt( tuples_.length );
+      for ( int[] cells : tuples_ ) {
+        header.putInt( cells.length );
+        for ( int cell : cells )
+          header.putInt( cell );
+      } // end for
+      header.flip();
+      channel.write( header, 0 );
+
+      // One map per table, so no map comes near the 2 GB limit
+      long position = header.limit();
+      for ( float[] weights : weights_ ) {
+        MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_WRITE,
+            position, 4L * weights.length );
+        buffer.order( ByteOrder.LITTLE_ENDIAN ).asFloatBuffer().put( weights );
+        buffer.force();
+        position += 4L * weights.length;
+      } // end for
+    } // end try
+
+    Files.move( temporary, file, StandardCopyOption.REPLACE_EXISTING );
+  } // end method save
+
+  /**
+   * Reads a network written by save.
+   *
+   * @param file  The file
+   * @return      The network
+   */
+  static NTupleNetwork load( Path file ) throws IOException
+  {
+    try ( FileChannel channel
+              = FileChannel.open( file, StandardOpenOption.READ ) ) {
+      ByteBuffer start = ByteBuffer.allocate( 12 )
+                                   .order( ByteOrder.LITTLE_ENDIAN );
+      channel.read( start, 0 );
+      start.flip();
+      if ( start.remaining() < 12 || start.getInt() != MAGIC
+           || start.getInt() != VERSION )
+        throw new IOException( "Not an n-tuple network: " + file );
+
+      int nTuples = start.getInt();
+      if ( nTuples < 1 || nTuples > 256 )
+        throw new IOException( "Bad tuple count: " + nTuples );
+
+      // Read the tuples one length and its cells at a time
+      int[][] tuples = new int[ nTuples ][];
+      long position = 12;
+      for ( int t = 0; t < nTuples; t++ ) {
+        ByteBuffer length = ByteBuffer.allocate( 4 )
+                                      .order( ByteOrder.LITTLE_ENDIAN );
+        channel.read( length, position );
+        length.flip();
+        int nCells = ( length.remaining() == 4 ) ? length.getInt() : -1;
+        if ( nCells < 1 || nCells > MAX_TUPLE_LENGTH )
+          throw new IOException( "Bad tuple length: " + nCells );
+
+        ByteBuffer cells = ByteBuffer.allocate( 4 * nCells )
+                                     .order( ByteOrder.LITTLE_ENDIAN );
+        channel.read( cells, position + 4 );
+        cells.flip();
+        if ( cells.remaining() != 4 * nCells )
+          throw new IOException( "Truncated network: " + file );
+        tuples[ t ] = new int[ nCells ];
+        for ( int i = 0; i < nCells; i++ )
+          tuples[ t ][ i ] = cells.getInt();
+        position += 4 + 4 * nCells;
+      } // end for
+
+      NTupleNetwork network;
+      try {
+        network = new NTupleNetwork( tuples );
+      } // end try
+      catch ( IllegalArgumentException exception ) {
+        throw new IOException( "Bad tuple in " + file, exception );
+      } // end catch
+
+      long expected = position;
+      for ( float[] weights : network.weights_ )
+        expected += 4L * weights.length;
+      if ( channel.size() != expected )
+        throw new IOException( "Truncated network: " + file );
+
+      for ( float[] weights : network.weights_ ) {
+        MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY,
+            position, 4L * weights.length );
+        buffer.order( ByteOrder.LITTLE_ENDIAN ).asFloatBuffer().get( weights );
+        position += 4L * weights.length;
+      } // end for
+
+      return network;
+    } // end try
+  } // end method load
+
+  /**
+   * @return    The bytes of the header that describes the tuples
+   */
+  private static int headerBytes( int[][] tuples )
+  {
+    int bytes = 12;
+    for ( int[] cells : tuples )
+      bytes += 4 + 4 * cells.length;
+
+    return bytes;
+  } // end method headerBytes
+} // end class
@@ -0,0 +1,56 @@
+package game2048;
+
+/**
+ * Plays the move worth most by an n-tuple network: the points it scores
+ * plus the network's value of the board it leaves. No search, so a move
+ * costs four lookups of every tuple, cheap enough to play a great many
+ * games at once. The network is only read, so every thread can share one.
+ */
+final class NTuplePolicy
+  implements MovePolicy
+{
+  private final NTupleNetwork network_;
+
+  /**
+   * Constructor
+   *
+   * @param network   The trained network
+   */
+  NTuplePolicy( NTupleNetwork network )
+  {
+    network_ = network;
+  } // end constructor
+
+  public int chooseMove( long board )
+  {
+    return bestMove( network_, board );
+  } // end method chooseMove
+
+  /**
+   * Finds the move worth most.
+   *
+   * @param network   The network
+   * @param board     The board packed by Bitboard
+   * @return          One of Bitboard.LEFT, RIGHT, UP or DOWN, or -1 if no
+   *                  move is possible
+   */
+  static int bestMove( NTupleNetwork network, long board )
+  {
+    int   best      = -1;
+    float bestValue = Float.NEGATIVE_INFINITY;
+
+    for ( int direction = 0; direction < 4; direction++ ) {
+      long moved = Bitboard.move( board, direction );
+      if ( moved == board )
+        continue;
+
+      float value = Bitboard.score( board, direction ) + network.value( moved );
+      if ( value > bestValue ) {
+        bestValue = value;
+        best = direction;
+      } // end if
+    } // end for
+
+    return best;
+  } // end method bestMove
+} // end class
@@ -0,0 +1,236 @@
+package game2048;
+
+// IO
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Concurrency
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teaches an NTupleNetwork to value boards by playing against itself,
+ * with temporal-difference learning on the boards left by each move.
+ * Every move is the one NTuplePolicy would play. Once the next move is
+ * chosen, the value of the board left by the last one is pulled toward
+ * what the next move is worth: its points plus the value of the board it
+ * leaves. When the game ends the last board is pulled toward 0.
+ *
+ * Every thread plays its own games on a Game, so spawns follow the game's
+ * own rules, and all threads update the one network without locks.
+ */
+final class NTupleTrainer
+{
+  // Spread over the weights a board picks out
+  private static final double LEARNING_RATE = 0.1;
+
+  // Games between progress lines, and between checkpoints by default
+  private static final long REPORT_EVERY     = 1000;
+  private static final long CHECKPOINT_EVERY = 10000;
+
+  private final NTupleNetwork network_;
+  private final float         step_;        // added per unit of error
+  private final int           nThreads_;
+
+  private final Object     checkpointLock_ = new Object();
+  private final AtomicLong reportScore_    = new AtomicLong();
+  private final AtomicLong reportMoves_    = new AtomicLong();
+  private long             reportStart_;    // guarded by checkpointLock_
+
+  /**
+   * Constructor
+   *
+   * @param network   The network to train. Other threads may read it, and
+   *                  play with it, while it trains.
+   * @param nThreads  The number of games played at the same time
+   */
+  NTupleTrainer( NTupleNetwork network, int nThreads )
+  {
+    network_  = network;
+    step_     = ( float ) ( LEARNING_RATE / network.getFeatureCount() );
+    nThreads_ = nThreads;
+  } // end constructor
+
+  /**
+   * Plays and learns from games until they are all over.
+   *
+   * @param nGames          The number of games to play
+   * @param seed            The seed of the batch, as BatchSimulator uses
+   * @param checkpoint      Where to save the network every
+   *                        checkpointEvery games and at the end, or null
+   *                        not to
+   * @param checkpointEvery The number of games between checkpoints
+   * @return                The statistics over every game
+   */
+  GameStatistics train( long nGames, long seed, Path checkpoint,
+                        long checkpointEvery )
+      throws InterruptedException, IOException
+  {
+    ExecutorService executor = Executors.newFixedThreadPool( nThreads_ );
+    AtomicLong nextGame = new AtomicLong();
+    AtomicLong nFinished = new AtomicLong();
+    List< Future< GameStatistics > > results = new ArrayList<>( nThreads_ );
+    reportStart_ = System.nanoTime();
+
+    for ( int i = 0; i < nThreads_; i++ )
+      results.add( executor.submit( () -> play( nextGame, nFinished, nGames,
+          seed, checkpoint, checkpointEvery ) ) );
+    executor.shutdown();
+
+    GameStatistics statistics = new GameStatistics();
+    try {
+      for ( Future< GameStatistics > result : results )
+        statistics.merge( result.get() );
+    } // end try
+    catch ( ExecutionException exception ) {
+      executor.shutdownNow();
+      if ( exception.getCause() instanceof IOException )
+        throw ( IOException ) exception.getCause();
+      throw new IllegalStateException( exception.getCause() );
+    } // end catch
+
+    if ( checkpoint != null )
+      synchronized ( checkpointLock_ ) {
+        network_.save( checkpoint );
+      } // end synchronized
+
+    return statistics;
+  } // end method train
+
+  /**
+   * Plays games on one thread until the shared counter runs out.
+   */
+  private GameStatistics play( AtomicLong nextGame, AtomicLong nFinished,
+                               long nGames, long seed, Path checkpoint,
+                               long checkpointEvery )
+      throws IOException
+  {
+    GameStatistics statistics = new GameStatistics();
+    Game game = new Game( seed );
+
+    for ( long i = nextGame.getAndIncrement(); i < nGames;
+          i = nextGame.getAndIncrement() ) {
+      game.reset( BatchSimulator.seedOf( seed, i ) );
+      learn( game );
+      statistics.add(
+          game.getScore(), game.getMoves(), game.getLargestTile() );
+      reportScore_.addAndGet( game.getScore() );
+      reportMoves_.addAndGet( game.getMoves() );
+
+      long finished = nFinished.incrementAndGet();
+      if ( finished % REPORT_EVERY == 0 )
+        report( finished );
+      if ( checkpoint != null && finished % checkpointEvery == 0
+           && finished < nGames )
+        synchronized ( checkpointLock_ ) {
+          network_.save( checkpoint );
+        } // end synchronized
+    } // end for
+
+    return statistics;
+  } // end method play
+
+  /**
+   * Plays one game to the end, learning after every move.
+   *
+   * @param game  A game that has just been reset
+   */
+  private void learn( Game game )
+  {
+    long board = game.getBoard();
+    long last = 0L;
+    boolean hasLast = false;   // a move has been made
+
+    while ( game.canMove() ) {
+      int direction = NTuplePolicy.bestMove( network_, board );
+      long moved = Bitboard.move( board, direction );
+      float target = Bitboard.score( board, direction )
+          + network_.value( moved );
+
+      if ( hasLast )
+        network_.update( last, step_ * ( target - network_.value( last ) ) );
+
+      game.move( direction );
+      last = moved;
+      hasLast = true;
+      board = game.getBoard();
+    } // end while
+
+    // Nothing more is scored after the last move
+    if ( hasLast )
+      network_.update( last, -step_ * network_.value( last ) );
+  } // end method learn
+
+  /**
+   * Prints the average score and pace of the games since the last line.
+   */
+  private void report( long finished )
+  {
+    synchronized ( checkpointLock_ ) {
+      long now = System.nanoTime();
+      double seconds = ( now - reportStart_ ) / 1e9;
+      reportStart_ = now;
+      System.out.format( "%,12d games  mean score %,10.0f  %,8.0f moves/s%n",
+          finished, reportScore_.getAndSet( 0 ) / ( double ) REPORT_EVERY,
+          reportMoves_.getAndSet( 0 ) / seconds );
+    } // end synchronized
+  } // end method report
+
+  /**
+   * Trains the network in the game's n-tuple file, or a new one if there
+   * is none yet, and saves it there.
+   *
+   * @param args    The number of games, then optionally the number of
+   *                threads, the network file and the seed
+   */
+  public static void main( String[] args )
+      throws InterruptedException, IOException
+  {
+    if ( args.length < 1 ) {
+      System.err.println(
+          "Usage: NTupleTrainer <games> [threads] [file] [seed]" );
+      System.exit( 1 );
+    } // end if
+
+    long nGames   = Long.parseLong( args[ 0 ] );
+    int  nThreads = ( args.length > 1 )
+        ? Integer.parseInt( args[ 1 ] )
+        : Runtime.getRuntime().availableProcessors();
+    Path file     = ( args.length > 2 )
+        ? Paths.get( args[ 2 ] )
+        : GameLauncher.NTUPLE_FILE_PATH;
+    long seed     = ( args.length > 3 )
+        ? Long.parseLong( args[ 3 ] )
+        : System.nanoTime();
+
+    NTupleNetwork network;
+    if ( Files.exists( file ) ) {
+      long start = System.nanoTime();
+      network = NTupleNetwork.load( file );
+      System.out.format( "Loaded %s in %,.0f ms%n", file,
+          ( System.nanoTime() - start ) / 1e6 );
+    } // end if
+    else {
+      Path parent = file.toAbsolutePath().getParent();
+      if ( parent != null )
+        Files.createDirectories( parent );
+      network = new NTupleNetwork();
+    } // end else
+
+    long start = System.nanoTime();
+    GameStatistics statistics = new NTupleTrainer( network, nThreads )
+        .train( nGames, seed, file, CHECKPOINT_EVERY );
+    double seconds = ( System.nanoTime() - start ) / 1e9;
+
+    System.out.format( "Seed:          %d%n", seed );
+    statistics.print( System.out );
+    System.out.format( "%,.0f games/s%n", statistics.getGames() / seconds );
+  } // end main
+} // end class
@@ -0,0 +1,300 @@
+package game2048;
+
+/**
+ * Move engine for boards of any size from MIN_SIZE to MAX_SIZE. The 4x4
+ * board has Bitboard; this class serves the others. A board is an array of
+ * rows, each row packed into a long the same way Bitboard packs its rows:
+ * 4 bits per tile holding the base-2 logarithm of its value, column 0 in
+ * the lowest bits. As on Bitboard, 32768 is the largest tile.
+ *
+ * Boards of up to MAX_TABLE_SIZE columns move their rows through tables
+ * of every possible row, as Bitboard does. Wider rows, whose tables would
+ * not fit in memory, are slid tile by tile in registers. Columns are copied
+ * into a packed row, moved like one and copied back, so nothing is
+ * allocated per move.
+ */
+final class PackedBoard
+{
+  static final int MIN_SIZE = 2;
+  static final int MAX_SIZE = 8;   // 8 tiles of 4 bits fill half a long
+
+  // Widest row with tables: 16^5 rows of 4-byte entries, about 4 MB each
+  private static final int MAX_TABLE_SIZE = 5;
+
+  private static final PackedBoard[] BOARDS = new PackedBoard[ MAX_SIZE + 1 ];
+
+  private final int  size_;
+  private final long rowMask_;
+
+  // Indexed by the row before the move, or null for rows too wide
+  private final int[]  rowLeft_;
+  private final int[]  rowRight_;
+  private final int[]  rowScore_;
+  private final byte[] rowMoves_;   // bits LEFT and RIGHT, as in Bitboard
+
+  /**
+   * Gets the engine for a board size, building its tables the first time.
+   *
+   * @param size    The number of rows and columns
+   * @return        The engine, shared by every board of that size
+   */
+  static synchronized PackedBoard forSize( int size )
+  {
+    if ( size < MIN_SIZE || size > MAX_SIZE )
+      throw new IllegalArgumentException( "Unsupported board size: " + size );
+
+    if ( BOARDS[ size ] == null )
+      BOARDS[ size ] = new PackedBoard( size );
+
+    return BOARDS[ size ];
+  } // end method forSize
+
+  private PackedBoard( int size )
+  {
+    size_    = size;
+    rowMask_ = ( 1L << ( 4 * size ) ) - 1;
+
+    if ( size > MAX_TABLE_SIZE ) {
+      rowLeft_  = null;
+      rowRight_ = null;
+      rowScore_ = null;
+      rowMoves_ = null;
+      return;
+    } // end if
+
+    int nRows = 1 << ( 4 * size );
+    rowLeft_  = new int[ nRows ];
+    rowRight_ = new int[ nRows ];
+    rowScore_ = new int[ nRows ];
+    rowMoves_ = new byte[ nRows ];
+
+    for ( int row = 0; row < nRows; row++ ) {
+      long left = slideLeft( row );
+      rowLeft_[ row ]  = ( int ) left;
+      rowScore_[ row ] = ( int ) ( left >>> 32 );
+      rowRight_[ row ] = ( int ) reverse( slideLeft( reverse( row ) ) );
+    } // end for
+
+    for ( int row = 0; row < nRows; row++ )
+      rowMoves_[ row ] = ( byte ) (
+          ( ( rowLeft_[ row ] != row ) ? 1 << Bitboard.LEFT : 0 )
+          | ( ( rowRight_[ row ] != row ) ? 1 << Bitboard.RIGHT : 0 ) );
+  } // end constructor
+
+  int getSize()
+  {
+    return size_;
+  } // end method getSize
+
+  /**
+   * Slides the tiles of a packed row to the left, merging each pair of
+   * identical tiles once.
+   *
+   * @param row   The packed row
+   * @return      The packed row after the move in the low 32 bits, and the
+   *              points scored in the high 32 bits
+   */
+  private long slideLeft( long row )
+  {
+    long result = 0;
+    int  score  = 0;
+    int  last   = 0;   // exponent of the last tile packed that can still merge
+    int  n      = 0;   // number of tiles packed so far
+
+    for ( int i = 0; i < size_; i++ ) {
+      int exponent = ( int ) ( row >>> ( 4 * i ) ) & 0xF;
+      if ( exponent == 0 )
+        continue;
+
+      // Exponents stay within 4 bits, so a pair of 32768s can't merge
+      if ( exponent == last && exponent < 0xF ) {
+        result += 1L << ( 4 * ( n - 1 ) );
+        score += 1 << ( exponent + 1 );
+        last = 0;
+      } // end if
+      else {
+        result |= ( long ) exponent << ( 4 * n++ );
+        last = exponent;
+      } // end else
+    } // end for
+
+    return ( long ) score << 32 | result;
+  } // end method slideLeft
+
+  /**
+   * Reverses the order of the tiles in a packed row.
+   */
+  private long reverse( long row )
+  {
+    long result = 0;
+    for ( int i = 0; i < size_; i++ )
+      result |= ( ( row >>> ( 4 * i ) ) & 0xF ) << ( 4 * ( size_ - 1 - i ) );
+
+    return result;
+  } // end method reverse
+
+  /**
+   * Moves one packed row or column.
+   *
+   * @param line      The packed row
+   * @param toStart   True to move towards column 0, false to move away
+   * @return          The moved row in the low 32 bits, and the points
+   *                  scored in the high 32 bits
+   */
+  private long slide( long line, boolean toStart )
+  {
+    if ( rowLeft_ != null ) {
+      int i = ( int ) line;
+      return ( long ) rowScore_[ i ] << 32
+          | ( ( toStart ? rowLeft_[ i ] : rowRight_[ i ] ) & 0xFFFFFFFFL );
+    } // end if
+
+    if ( toStart )
+      return slideLeft( line );
+
+    long moved = slideLeft( reverse( line ) );
+    return ( moved & ~0xFFFFFFFFL ) | reverse( moved & 0xFFFFFFFFL );
+  } // end method slide
+
+  /**
+   * Copies a column into a packed row, row 0 in the lowest bits.
+   */
+  private long getColumn( long[] rows, int col )
+  {
+    long column = 0;
+    for ( int row = 0; row < size_; row++ )
+      column |= ( ( rows[ row ] >>> ( 4 * col ) ) & 0xF ) << ( 4 * row );
+
+    return column;
+  } // end method getColumn
+
+  /**
+   * Copies a packed row back into a column.
+   */
+  private void setColumn( long[] rows, int col, long column )
+  {
+    long mask = ~( 0xFL << ( 4 * col ) );
+    for ( int row = 0; row < size_; row++ )
+      rows[ row ] = ( rows[ row ] & mask )
+          | ( ( column >>> ( 4 * row ) ) & 0xF ) << ( 4 * col );
+  } // end method setColumn
+
+  /**
+   * Moves the tiles of the board. No new tile is spawned.
+   *
+   * @param rows        The packed rows. Updated in place.
+   * @param direction   One of Bitboard.LEFT, RIGHT, UP or DOWN
+   * @return            The points scored, or -1 if nothing could move
+   */
+  int move( long[] rows, int direction )
+  {
+    boolean toStart  = ( direction == Bitboard.LEFT )
+        || ( direction == Bitboard.UP );
+    boolean hasMoved = false;
+    int     score    = 0;
+
+    for ( int i = 0; i < size_; i++ ) {
+      long line = ( direction == Bitboard.LEFT || direction == Bitboard.RIGHT )
+          ? rows[ i ]
+          : getColumn( rows, i );
+      long moved = slide( line, toStart );
+      long result = moved & rowMask_;
+
+      if ( result == line )
+        continue;
+
+      hasMoved = true;
+      score += ( int ) ( moved >>> 32 );
+      if ( direction == Bitboard.LEFT || direction == Bitboard.RIGHT )
+        rows[ i ] = result;
+      else
+        setColumn( rows, i, result );
+    } // end for
+
+    return hasMoved ? score : -1;
+  } // end method move
+
+  /**
+   * Finds the moves that change the board.
+   *
+   * @param rows    The packed rows
+   * @return        A mask with bit 1 << direction set for each move that
+   *                changes the board, as in Bitboard.legalMoves
+   */
+  int legalMoves( long[] rows )
+  {
+    int horizontal = 0;
+    int vertical   = 0;
+
+    for ( int i = 0; i < size_; i++ ) {
+      horizontal |= lineMoves( rows[ i ] );
+      vertical   |= lineMoves( getColumn( rows, i ) );
+    } // end for
+
+    return horizontal | ( vertical << Bitboard.UP );
+  } // end method legalMoves
+
+  /**
+   * Finds the moves that change one packed row.
+   */
+  private int lineMoves( long line )
+  {
+    if ( rowMoves_ != null )
+      return rowMoves_[ ( int ) line ];
+
+    return ( ( ( slide( line, true ) & rowMask_ ) != line ) ? 1 << Bitboard.LEFT : 0 )
+        | ( ( ( slide( line, false ) & rowMask_ ) != line ) ? 1 << Bitboard.RIGHT : 0 );
+  } // end method lineMoves
+
+  /**
+   * Counts the blank tiles on the board.
+   *
+   * @param rows    The packed rows
+   * @return        The number of tiles whose exponent is 0
+   */
+  int countBlanks( long[] rows )
+  {
+    int nBlanks = 0;
+    for ( long row : rows ) {
+      // Fold each nibble onto its lowest bit, then count the nibbles left at 0
+      long x = row | ( row >>> 1 );
+      x |= x >>> 2;
+      nBlanks += size_ - Long.bitCount( x & 0x1111111111111111L & rowMask_ );
+    } // end for
+
+    return nBlanks;
+  } // end method countBlanks
+
+  /**
+   * Puts a tile on the k-th blank tile, counting row by row.
+   *
+   * @param rows        The packed rows. Updated in place.
+   * @param k           The number of the blank tile, from 0
+   * @param exponent    The base-2 logarithm of the new tile
+   */
+  void fillBlank( long[] rows, int k, int exponent )
+  {
+    for ( int row = 0; row < size_; row++ )
+      for ( int col = 0; col < size_; col++ )
+        if ( ( ( rows[ row ] >>> ( 4 * col ) ) & 0xF ) == 0 && k-- == 0 ) {
+          rows[ row ] |= ( long ) exponent << ( 4 * col );
+          return;
+        } // end if
+  } // end method fillBlank
+
+  /**
+   * Finds the largest tile on the board.
+   *
+   * @param rows    The packed rows
+   * @return        The value of the largest tile, or 0 if the board is empty
+   */
+  int largestTile( long[] rows )
+  {
+    int max = 0;
+    for ( long row : rows )
+      for ( ; row != 0; row >>>= 4 )
+        max = Math.max( max, ( int ) ( row & 0xF ) );
+
+    return ( max == 0 ) ? 0 : 1 << max;
+  } // end method largestTile
+} // end class
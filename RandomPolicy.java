@@ -0,0 +1,38 @@
+package game2048;
+
+// Utilities
+import java.util.SplittableRandom;
+
+/**
+ * Plays a random move among those that change the board. Useful as the
+ * baseline other policies are compared with.
+ */
+final class RandomPolicy
+  implements MovePolicy
+{
+  private final SplittableRandom random_;
+
+  /**
+   * Constructor
+   *
+   * @param seed    Seeds the choice of moves
+   */
+  RandomPolicy( long seed )
+  {
+    random_ = new SplittableRandom( seed );
+  } // end constructor
+
+  public int chooseMove( long board )
+  {
+    int moves = Bitboard.legalMoves( board );
+    if ( moves == 0 )
+      return -1;
+
+    // Skip a random number of the possible moves
+    for ( int skip = random_.nextInt( Integer.bitCount( moves ) );
+          skip > 0; skip-- )
+      moves &= moves - 1;
+
+    return Integer.numberOfTrailingZeros( moves );
+  } // end method chooseMove
+} // end class
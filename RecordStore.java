@@ -0,0 +1,363 @@
+package game2048;
+
+// IO
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Utilities
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Every finished game, kept in a binary file of fixed-width records, along
+ * with a small index file holding the best TOP_K records. The index is
+ * updated on every append, so the leaderboard can show the best games as
+ * soon as it opens, without waiting for readAll to get through the history
+ * however long it gets.
+ *
+ * The record file starts with MAGIC and VERSION, followed by one
+ * RECORD_BYTES record per game: moves, largest tile and score as big-endian
+ * ints. The index file starts with MAGIC and VERSION too, then the number of
+ * records it covers as a long, the number of entries as an int, and the
+ * entries in the same format as the records, best first.
+ *
+ * Appends lock the record file, so game instances in other processes can
+ * share a store. The index is always replaced whole, so readers need no
+ * lock: an index that doesn't cover every record is simply rebuilt. A
+ * rebuild reads only the records there were when it began and says so in
+ * the index, so if it replaces the index of a newer append, that index is
+ * merely out of date and gets rebuilt again; no record is ever left out.
+ */
+final class RecordStore
+{
+  static final int MAGIC        = 0x32303438;   // "2048"
+  static final int VERSION      = 1;
+  static final int HEADER_BYTES = 8;
+  static final int RECORD_BYTES = 12;
+  static final int TOP_K        = 10;
+
+  // File locks belong to the whole process, so threads take turns here first
+  private static final Object APPEND_LOCK = new Object();
+
+  private final Path recordFile_;
+  private final Path indexFile_;
+
+  /**
+   * Constructor. Neither file has to exist yet.
+   *
+   * @param recordFile  The file of all records
+   * @param indexFile   The file of the best records
+   */
+  RecordStore( Path recordFile, Path indexFile )
+  {
+    recordFile_ = recordFile;
+    indexFile_  = indexFile;
+  } // end constructor
+
+  /**
+   * Opens the store at the default location. The first time, records in the
+   * old text format are copied over.
+   *
+   * @return    The store
+   */
+  static RecordStore openDefault() throws IOException
+  {
+    return openDefault( Game.DEFAULT_SIZE );
+  } // end method openDefault
+
+  /**
+   * Opens the store of one board size at the default location. Every size
+   * has its own files. The old text format only ever held 4x4 games.
+   *
+   * @param size    The number of rows and columns
+   * @return        The store
+   */
+  static RecordStore openDefault( int size ) throws IOException
+  {
+    RecordStore store = new RecordStore(
+        GameLauncher.sizedPath( GameLauncher.STORE_FILE_PATH, size ),
+        GameLauncher.sizedPath( GameLauncher.INDEX_FILE_PATH, size ) );
+    Path textFile = GameLauncher.TEXT_RECORD_FILE_PATH;
+
+    if ( size == Game.DEFAULT_SIZE
+         && !Files.exists( store.recordFile_ ) && Files.exists( textFile ) )
+      store.importTextFile( textFile );
+
+    return store;
+  } // end method openDefault
+
+  Path getRecordFile()
+  {
+    return recordFile_;
+  } // end method getRecordFile
+
+  /**
+   * Adds finished games to the end of the history and updates the index.
+   * The record file stays locked until the index is replaced, and the new
+   * records are forced to disk once, however many there are, so appending
+   * a batch costs one sync.
+   *
+   * @param records   The records to add
+   */
+  void append( ScoreRecord... records ) throws IOException
+  {
+    synchronized ( APPEND_LOCK ) {
+      try ( FileChannel channel = FileChannel.open( recordFile_,
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE ) ) {
+        FileLock lock = channel.lock();
+        try {
+          ScoreRecord[] top = top();
+
+          // Start past the last whole record, dropping any torn one
+          long size = channel.size();
+          long end = ( size < HEADER_BYTES )
+              ? 0
+              : HEADER_BYTES
+                  + ( size - HEADER_BYTES ) / RECORD_BYTES * RECORD_BYTES;
+
+          ByteBuffer buffer = ByteBuffer.allocate(
+              HEADER_BYTES + records.length * RECORD_BYTES );
+          if ( end == 0 )
+            buffer.putInt( MAGIC ).putInt( VERSION );
+          for ( ScoreRecord record : records ) {
+            buffer.putInt( record.getMoves() )
+                  .putInt( record.getLargestTile() )
+                  .putInt( record.getScore() );
+            top = insert( top, record );
+          } // end for
+
+          buffer.flip();
+          while ( buffer.hasRemaining() )
+            end += channel.write( buffer, end );
+          if ( channel.size() > end )
+            channel.truncate( end );
+          channel.force( false );
+
+          writeIndex( top, ( end - HEADER_BYTES ) / RECORD_BYTES );
+        } // end try
+        finally {
+          lock.release();
+        } // end finally
+      } // end try
+    } // end synchronized
+  } // end method append
+
+  /**
+   * Gets the best records from the index. The index is rebuilt from the
+   * history if it is missing or doesn't cover every record, for instance
+   * after a crash between the two writes of an append.
+   *
+   * @return    At most TOP_K records, best first
+   */
+  ScoreRecord[] top() throws IOException
+  {
+    ScoreRecord[] top = readIndex();
+    if ( top != null )
+      return top;
+
+    // Records appended from here on are left for the next rebuild
+    long n = count();
+    long nRead = 0;
+    top = new ScoreRecord[ 0 ];
+    try ( DataInputStream in = openRecords() ) {
+      for ( ; nRead < n && in != null; nRead++ ) {
+        ScoreRecord record = read( in );
+        if ( record == null )
+          break;
+        top = insert( top, record );
+      } // end for
+    } // end try
+
+    writeIndex( top, nRead );
+    return top;
+  } // end method top
+
+  /**
+   * Reads the whole history, oldest game first, into one array per field,
+   * so that even millions of games make only three objects.
+   *
+   * @return    The moves, largest tiles and scores of every game, in that
+   *            order
+   */
+  int[][] readAll() throws IOException
+  {
+    int n = ( int ) Math.min( count(), Integer.MAX_VALUE );
+    int[][] columns = new int[ 3 ][ n ];
+
+    try ( DataInputStream in = openRecords() ) {
+      for ( int i = 0; i < n && in != null; i++ )
+        for ( int[] column : columns )
+          column[ i ] = in.readInt();
+    } // end try
+
+    return columns;
+  } // end method readAll
+
+  /**
+   * @return    The number of complete records in the history
+   */
+  long count() throws IOException
+  {
+    if ( !Files.exists( recordFile_ ) )
+      return 0;
+
+    return Math.max( 0, Files.size( recordFile_ ) - HEADER_BYTES )
+        / RECORD_BYTES;
+  } // end method count
+
+  /**
+   * Copies the records of a file in the old text format, one
+   * "moves tile score" line per game, to the end of the history.
+   *
+   * @param textFile  The text file. Left unchanged.
+   */
+  void importTextFile( Path textFile ) throws IOException
+  {
+    List< ScoreRecord > records = new ArrayList<>();
+
+    try ( BufferedReader reader = Files.newBufferedReader( textFile ) ) {
+      for ( String line = reader.readLine(); line != null;
+            line = reader.readLine() ) {
+        String[] fields = line.trim().split( "\\s+" );
+        if ( fields.length < 3 )
+          continue;
+
+        records.add( new ScoreRecord(
+            Integer.parseInt( fields[ 0 ] ),
+            Integer.parseInt( fields[ 1 ] ),
+            Integer.parseInt( fields[ 2 ] ) ) );
+      } // end for
+    } // end try
+
+    append( records.toArray( new ScoreRecord[ 0 ] ) );
+  } // end method importTextFile
+
+  /**
+   * Adds a record to a sorted top list, dropping the worst if it grows past
+   * TOP_K.
+   */
+  private static ScoreRecord[] insert( ScoreRecord[] top, ScoreRecord record )
+  {
+    int i = top.length;
+    while ( i > 0 && record.compareTo( top[ i - 1 ] ) < 0 )
+      i--;
+
+    if ( i >= TOP_K )
+      return top;
+
+    ScoreRecord[] result
+        = new ScoreRecord[ Math.min( TOP_K, top.length + 1 ) ];
+    System.arraycopy( top, 0, result, 0, i );
+    result[ i ] = record;
+    System.arraycopy( top, i, result, i + 1, result.length - i - 1 );
+    return result;
+  } // end method insert
+
+  /**
+   * Reads the index.
+   *
+   * @return    The best records, or null if the index is missing, damaged
+   *            or out of date
+   */
+  private ScoreRecord[] readIndex() throws IOException
+  {
+    if ( !Files.exists( indexFile_ ) )
+      return ( count() == 0 ) ? new ScoreRecord[ 0 ] : null;
+
+    try ( DataInputStream in = new DataInputStream(
+              new BufferedInputStream( Files.newInputStream( indexFile_ ) ) ) ) {
+      if ( in.readInt() != MAGIC || in.readInt() != VERSION
+           || in.readLong() != count() )
+        return null;
+
+      ScoreRecord[] top = new ScoreRecord[ Math.min( TOP_K, in.readInt() ) ];
+      for ( int i = 0; i < top.length; i++ )
+        top[ i ] = read( in );
+
+      return Arrays.asList( top ).contains( null ) ? null : top;
+    } // end try
+    catch ( EOFException exception ) {
+      return null;
+    } // end catch
+  } // end method readIndex
+
+  /**
+   * Replaces the index. The new index is written to a temporary file of its
+   * own first, so a crash never leaves half an index behind and two
+   * processes rebuilding the index at once don't mix their writes.
+   */
+  private void writeIndex( ScoreRecord[] top, long nRecords )
+      throws IOException
+  {
+    Path temporary = Files.createTempFile(
+        indexFile_.toAbsolutePath().getParent(),
+        indexFile_.getFileName().toString(), ".tmp" );
+
+    try ( DataOutputStream out = new DataOutputStream(
+              new BufferedOutputStream( Files.newOutputStream( temporary ) ) ) ) {
+      out.writeInt( MAGIC );
+      out.writeInt( VERSION );
+      out.writeLong( nRecords );
+      out.writeInt( top.length );
+      for ( ScoreRecord record : top ) {
+        out.writeInt( record.getMoves() );
+        out.writeInt( record.getLargestTile() );
+        out.writeInt( record.getScore() );
+      } // end for
+    } // end try
+
+    Files.move( temporary, indexFile_, StandardCopyOption.REPLACE_EXISTING );
+  } // end method writeIndex
+
+  /**
+   * Opens the history past its header.
+   *
+   * @return    The stream, or null if there is no history yet
+   */
+  private DataInputStream openRecords() throws IOException
+  {
+    if ( count() == 0 )
+      return null;
+
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream( Files.newInputStream( recordFile_ ) ) );
+    if ( in.readInt() != MAGIC || in.readInt() != VERSION ) {
+      in.close();
+      throw new IOException( "Not a record file: " + recordFile_ );
+    } // end if
+
+    return in;
+  } // end method openRecords
+
+  /**
+   * Reads one record.
+   *
+   * @return    The record, or null at the end of the stream
+   */
+  private static ScoreRecord read( DataInputStream in ) throws IOException
+  {
+    try {
+      int nMoves      = in.readInt();
+      int largestTile = in.readInt();
+      int score       = in.readInt();
+      return new ScoreRecord( nMoves, largestTile, score );
+    } // end try
+    catch ( EOFException exception ) {
+      return null;
+    } // end catch
+  } // end method read
+} // end class
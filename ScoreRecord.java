@@ -0,0 +1,50 @@
+package game2048;
+
+/**
+ * The data kept about one finished game. Records sort from the highest
+ * score down; ties go to the larger tile, then to the fewer moves.
+ */
+final class ScoreRecord
+  implements Comparable< ScoreRecord >
+{
+  private final int nMoves_;
+  private final int largestTile_;
+  private final int score_;
+
+  ScoreRecord( int nMoves, int largestTile, int score )
+  {
+    nMoves_      = nMoves;
+    largestTile_ = largestTile;
+    score_       = score;
+  } // end constructor
+
+  public int compareTo( ScoreRecord record )
+  {
+    if ( this.score_ != record.score_ )
+      return -Integer.compare( score_, record.score_ );
+    else if ( this.largestTile_ != record.largestTile_ )
+      return -Integer.compare( largestTile_, record.largestTile_ );
+    else
+      return Integer.compare( nMoves_, record.nMoves_ );
+  } // end method compareTo
+
+  int getMoves()
+  {
+    return nMoves_;
+  } // end method getMoves
+
+  int getLargestTile()
+  {
+    return largestTile_;
+  } // end method getLargestTile
+
+  int getScore()
+  {
+    return score_;
+  } // end method getScore
+
+  public String toString()
+  {
+    return String.format( "%,d %d %,d", nMoves_, largestTile_, score_ );
+  } // end method toString
+} // end class
@@ -0,0 +1,207 @@
+package game2048;
+
+// IO
+import java.io.IOException;
+
+// Utilities
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Concurrency
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Writes finished games to disk on a thread of its own, so the game never
+ * waits on the file system. Games queue up while a write is under way and
+ * go out together in the next one: one locked append and one sync per
+ * board size for the records, and the same again for the journals, however
+ * many games are in it.
+ */
+final class ScoreRecorder
+{
+  private static final int MAX_BATCH = 1024;
+
+  private static ScoreRecorder instance;
+
+  /**
+   * One finished game waiting to be written.
+   */
+  private static final class Entry
+  {
+    final int                       size;
+    final ScoreRecord               record;
+    final GameJournal               journal;   // null if none was kept
+    final CompletableFuture< Void > done = new CompletableFuture<>();
+
+    Entry( int size, ScoreRecord record, GameJournal journal )
+    {
+      this.size    = size;
+      this.record  = record;
+      this.journal = journal;
+    } // end constructor
+  } // end class Entry
+
+  // Tells the writer to stop once everything before it is written
+  private static final Entry END = new Entry( 0, null, null );
+
+  private final BlockingQueue< Entry > queue_ = new LinkedBlockingQueue<>();
+  private final Thread                 writer_;
+  private boolean                      isClosed_;   // guarded by queue_
+
+  /**
+   * Constructor. Starts the writer thread.
+   */
+  ScoreRecorder()
+  {
+    writer_ = new Thread( this::run, "score-recorder" );
+    writer_.setDaemon( true );
+    writer_.start();
+  } // end constructor
+
+  /**
+   * Gets the recorder shared by the whole process. Games still queued when
+   * the process exits are written before it does.
+   *
+   * @return    The recorder
+   */
+  static synchronized ScoreRecorder getDefault()
+  {
+    if ( instance == null ) {
+      ScoreRecorder recorder = new ScoreRecorder();
+      Runtime.getRuntime().addShutdownHook(
+          new Thread( recorder::close, "score-recorder-shutdown" ) );
+      instance = recorder;
+    } // end if
+
+    return instance;
+  } // end method getDefault
+
+  /**
+   * Queues a finished game for the default record store of its board size,
+   * and its journal for the journal archive.
+   *
+   * @param size      The number of rows and columns of the board
+   * @param record    The moves, largest tile and score of the game
+   * @param journal   The journal of the game, or null to skip the archive
+   * @return          Completes once the record is on disk, or with the
+   *                  IOException that kept it off
+   */
+  CompletableFuture< Void > record( int size, ScoreRecord record,
+                                    GameJournal journal )
+  {
+    Entry entry = new Entry( size, record, journal );
+    synchronized ( queue_ ) {
+      if ( isClosed_ )
+        entry.done.completeExceptionally(
+            new IllegalStateException( "Recorder is closed" ) );
+      else
+        queue_.add( entry );
+    } // end synchronized
+
+    return entry.done;
+  } // end method record
+
+  /**
+   * Writes whatever is queued and stops the writer.
+   */
+  void close()
+  {
+    synchronized ( queue_ ) {
+      if ( !isClosed_ ) {
+        isClosed_ = true;
+        queue_.add( END );
+      } // end if
+    } // end synchronized
+
+    try {
+      writer_.join();
+    } // end try
+    catch ( InterruptedException exception ) {
+      Thread.currentThread().interrupt();
+    } // end catch
+  } // end method close
+
+  /**
+   * Takes everything queued at once and writes it, until told to stop.
+   */
+  private void run()
+  {
+    List< Entry > batch = new ArrayList<>();
+
+    try {
+      while ( true ) {
+        batch.add( queue_.take() );
+        queue_.drainTo( batch, MAX_BATCH - 1 );
+
+        boolean isEnd = batch.remove( END );
+        write( batch );
+        batch.clear();
+
+        if ( isEnd )
+          return;
+      } // end while
+    } // end try
+    catch ( InterruptedException exception ) {
+      // Stopped without being closed; nothing is left to do
+    } // end catch
+  } // end method run
+
+  /**
+   * Writes a batch, one append per board size to each file. A game counts as
+   * recorded once its record is in; a journal that can't be archived after
+   * that is only reported.
+   */
+  private static void write( List< Entry > batch )
+  {
+    Map< Integer, List< Entry > > bySize = new TreeMap<>();
+    for ( Entry entry : batch )
+      bySize.computeIfAbsent( entry.size, size -> new ArrayList<>() )
+            .add( entry );
+
+    for ( Map.Entry< Integer, List< Entry > > group : bySize.entrySet() ) {
+      int size = group.getKey();
+      List< Entry > entries = group.getValue();
+
+      try {
+        ScoreRecord[] records = new ScoreRecord[ entries.size() ];
+        for ( int i = 0; i < records.length; i++ )
+          records[ i ] = entries.get( i ).record;
+        long start = System.nanoTime();
+        RecordStore.openDefault( size ).append( records );
+        Metrics.leaderboard( start, true, records.length );
+      } // end try
+      catch ( IOException | RuntimeException exception ) {
+        for ( Entry entry : entries )
+          entry.done.completeExceptionally( exception );
+        continue;
+      } // end catch
+
+      // The records are in, whatever becomes of the journals
+      for ( Entry entry : entries )
+        entry.done.complete( null );
+
+      List< GameJournal > journals = new ArrayList<>();
+      int[] scores = new int[ entries.size() ];
+      for ( Entry entry : entries )
+        if ( entry.journal != null ) {
+          scores[ journals.size() ] = entry.record.getScore();
+          journals.add( entry.journal );
+        } // end if
+
+      try {
+        if ( !journals.isEmpty() )
+          new JournalArchive(
+              GameLauncher.sizedPath( GameLauncher.JOURNAL_FILE_PATH, size ),
+              size ).append( journals, scores );
+      } // end try
+      catch ( IOException | RuntimeException exception ) {
+        System.err.format( "Couldn't archive %d journals: %s%n",
+            journals.size(), exception );
+      } // end catch
+    } // end for
+  } // end method write
+} // end class
@@ -0,0 +1,197 @@
+package game2048;
+
+// IO
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Concurrency
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The sessions of a GameServer. Sessions in use stay in memory; sessions
+ * left idle are parked, one small file each, in the park directory, and
+ * read back the first time they are resumed.
+ */
+final class SessionStore
+{
+  private final ConcurrentHashMap< Long, GameSession > live_
+      = new ConcurrentHashMap<>();
+  private final Path       parkDirectory_;
+  private final AtomicLong nextId_;
+
+  private final AtomicLong nParked_  = new AtomicLong();
+  private final AtomicLong nResumed_ = new AtomicLong();
+  private final AtomicLong nEnded_   = new AtomicLong();
+
+  /**
+   * Constructor
+   *
+   * @param parkDirectory   Where idle sessions go. Created if needed.
+   */
+  SessionStore( Path parkDirectory ) throws IOException
+  {
+    parkDirectory_ = parkDirectory;
+    Files.createDirectories( parkDirectory );
+
+    // Start from the clock, so ids don't clash with sessions parked by an
+    // earlier run of the server
+    nextId_ = new AtomicLong( System.currentTimeMillis() << 20 );
+  } // end constructor
+
+  /**
+   * Starts a new session and attaches it to the caller.
+   *
+   * @param size    The number of rows and columns of the board
+   * @param seed    The seed of the game
+   * @return        The session
+   */
+  GameSession create( int size, long seed )
+  {
+    GameSession session = new GameSession( nextId_.getAndIncrement(), size, seed );
+    session.attach();
+    live_.put( session.getId(), session );
+    return session;
+  } // end method create
+
+  /**
+   * Attaches an existing session to the caller, reading it back from disk
+   * if it was parked.
+   *
+   * @param id  The id of the session
+   * @return    The session, or null if there is no such session or another
+   *            connection has it
+   */
+  GameSession resume( long id ) throws IOException
+  {
+    try {
+      while ( true ) {
+        GameSession session = live_.computeIfAbsent( id, this::unpark );
+        if ( session == null )
+          return null;
+        if ( session.attach() )
+          return session;
+
+        // Another connection has it
+        if ( !session.isParked() )
+          return null;
+
+        // It is being parked right now; read it back once it is on disk
+        Thread.yield();
+      } // end while
+    } // end try
+    catch ( UncheckedIOException exception ) {
+      throw exception.getCause();
+    } // end catch
+  } // end method resume
+
+  /**
+   * Drops a session for good. Nothing of it is left in memory or on disk,
+   * so it can't be resumed.
+   *
+   * @param session   A session attached to the caller
+   */
+  void end( GameSession session )
+  {
+    if ( live_.remove( session.getId(), session ) )
+      nEnded_.incrementAndGet();
+  } // end method end
+
+  /**
+   * Parks every session that has gone unused for long enough.
+   *
+   * @param idleNanos   How long a session may go unused
+   * @return            The number of sessions parked
+   */
+  int parkIdle( long idleNanos ) throws IOException
+  {
+    long now = System.nanoTime();
+    int nParked = 0;
+
+    for ( GameSession session : live_.values() )
+      if ( session.park( idleNanos, now ) ) {
+        // Nobody can attach a parked session, so the state is stable
+        Path file = fileOf( session.getId() );
+        Path temporary = file.resolveSibling( file.getFileName() + ".tmp" );
+        try {
+          try ( DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                        Files.newOutputStream( temporary ) ) ) ) {
+            session.write( out );
+          } // end try
+          Files.move( temporary, file, StandardCopyOption.REPLACE_EXISTING );
+        } // end try
+        catch ( IOException exception ) {
+          session.unpark();   // keep it in memory rather than lose it
+          throw exception;
+        } // end catch
+
+        live_.remove( session.getId(), session );
+        nParked++;
+      } // end if
+
+    nParked_.addAndGet( nParked );
+    return nParked;
+  } // end method parkIdle
+
+  /**
+   * Reads a parked session back and deletes its file.
+   *
+   * @return    The session, or null if none was parked under that id
+   */
+  private GameSession unpark( long id )
+  {
+    Path file = fileOf( id );
+    if ( !Files.exists( file ) )
+      return null;
+
+    try {
+      GameSession session;
+      try ( DataInputStream in = new DataInputStream(
+                new BufferedInputStream( Files.newInputStream( file ) ) ) ) {
+        session = GameSession.read( in );
+      } // end try
+      Files.delete( file );
+      nResumed_.incrementAndGet();
+      return session;
+    } // end try
+    catch ( IOException exception ) {
+      throw new UncheckedIOException( exception );
+    } // end catch
+  } // end method unpark
+
+  private Path fileOf( long id )
+  {
+    return parkDirectory_.resolve( Long.toHexString( id ) + ".session" );
+  } // end method fileOf
+
+  /**
+   * @return    The number of sessions in memory
+   */
+  int getLiveCount()
+  {
+    return live_.size();
+  } // end method getLiveCount
+
+  long getParkedCount()
+  {
+    return nParked_.get();
+  } // end method getParkedCount
+
+  long getResumedCount()
+  {
+    return nResumed_.get();
+  } // end method getResumedCount
+
+  long getEndedCount()
+  {
+    return nEnded_.get();
+  } // end method getEndedCount
+} // end class
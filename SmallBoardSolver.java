@@ -0,0 +1,706 @@
+package game2048;
+
+// IO
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Utilities
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Solves boards of up to MAX_SIZE rows and columns exactly. For every
+ * position the game can reach it works out the expected score of the best
+ * play, the chance of making a goal tile when playing for it, and the
+ * expected score of greedy play, which takes the most points each move,
+ * choosing at random between moves that tie. These are ground truth to
+ * measure faster players and heuristics by.
+ *
+ * A board is one long, one nibble per tile as in PackedBoard, row 0 in the
+ * lowest bits. The eight rotations and reflections of a position share its
+ * values, so each is stored once, facing whichever way gives the smallest
+ * long. A move never changes the sum of the tiles and a spawn adds 2 or 4,
+ * so the positions fall into layers by tile sum, each reached only from the
+ * two below it. The layers are found from the bottom up with just those two
+ * in memory, and each goes to the table file as a sorted array of longs, in
+ * which a position's place is its index. The values are then worked out
+ * from the top layer down, each from the two above, in parallel within the
+ * layer and straight into the memory-mapped file.
+ *
+ * The file is a header, then each layer's boards followed by N_VALUES
+ * floats per board, then a directory of where each layer starts.
+ */
+final class SmallBoardSolver
+{
+  // 9 tiles of 4 bits; the 4x4 board has far too many positions
+  static final int MAX_SIZE = 3;
+
+  // The values kept for each position
+  static final int SCORE  = 0;   // expected score, with the best play
+  static final int WIN    = 1;   // chance of making the goal, playing for it
+  static final int GREEDY = 2;   // expected score, with greedy play
+  private static final int N_VALUES = 3;
+
+  private static final int MAGIC        = 0x32303453;   // "204S"
+  private static final int VERSION      = 1;
+  private static final int HEADER_BYTES = 64;
+
+  private static final double CHANCE_OF_TWO = 0.9;
+
+  // Boards per parallel task
+  private static final int CHUNK_SIZE = 1 << 12;
+
+  /**
+   * The solved values of every position of one board size, in a mapped
+   * file. Any number of threads can read a table at once.
+   */
+  static final class Table
+  {
+    private final SmallBoardSolver   solver_;
+    private final int                goal_;
+    private final long               nBoards_;
+    private final LongBuffer[]       boards_;   // by tile sum / 2, sorted
+    private final FloatBuffer[]      values_;   // N_VALUES per board
+    private final MappedByteBuffer[] maps_;     // null for empty layers
+
+    private Table( SmallBoardSolver solver, int goal, long nBoards,
+                   LongBuffer[] boards, FloatBuffer[] values,
+                   MappedByteBuffer[] maps )
+    {
+      solver_  = solver;
+      goal_    = goal;
+      nBoards_ = nBoards;
+      boards_  = boards;
+      values_  = values;
+      maps_    = maps;
+    } // end constructor
+
+    int getSize()
+    {
+      return solver_.size_;
+    } // end method getSize
+
+    /**
+     * @return    The tile the WIN values are the chance of making
+     */
+    int getGoal()
+    {
+      return goal_;
+    } // end method getGoal
+
+    /**
+     * @return    The number of positions, counting each way one can face
+     *            only once
+     */
+    long getBoardCount()
+    {
+      return nBoards_;
+    } // end method getBoardCount
+
+    /**
+     * Looks up one value of a position.
+     *
+     * @param rows      The packed rows of a board, after the spawn
+     * @param column    SCORE, WIN or GREEDY
+     * @return          The value, or NaN if the game can't reach the board
+     */
+    double get( long[] rows, int column )
+    {
+      return get( solver_.pack( rows ), column );
+    } // end method get
+
+    private double get( long board, int column )
+    {
+      long key = solver_.canonical( board );
+      int layer = tileSum( key ) / 2;
+      int index = ( layer < boards_.length )
+          ? indexOf( boards_[ layer ], key )
+          : -1;
+
+      return ( index < 0 )
+          ? Double.NaN
+          : values_[ layer ].get( N_VALUES * index + column );
+    } // end method get
+
+    /**
+     * Works out one value of each move from a position.
+     *
+     * @param rows      The packed rows of a board the game can reach
+     * @param column    SCORE, WIN or GREEDY
+     * @return          The value after each move, counting the points it
+     *                  scores in SCORE and GREEDY, by direction. NaN for
+     *                  moves that change nothing.
+     */
+    double[] moveValues( long[] rows, int column )
+    {
+      double[] values   = new double[ 4 ];
+      double[] expected = new double[ N_VALUES ];
+      long[]   moved    = new long[ rows.length ];
+
+      for ( int direction = 0; direction < 4; direction++ ) {
+        System.arraycopy( rows, 0, moved, 0, rows.length );
+        int points = solver_.engine_.move( moved, direction );
+        if ( points < 0 ) {
+          values[ direction ] = Double.NaN;
+          continue;
+        } // end if
+
+        expect( solver_.pack( moved ), expected );
+        values[ direction ] = expected[ column ]
+            + ( ( column == WIN ) ? 0 : points );
+      } // end for
+
+      return values;
+    } // end method moveValues
+
+    /**
+     * Works out one value of a new game, over every way the two starting
+     * tiles can fall.
+     *
+     * @param column    SCORE, WIN or GREEDY
+     * @return          The expected value
+     */
+    double getStart( int column )
+    {
+      int nCells = solver_.nCells_;
+      double total = 0.0;
+      for ( int first = 0; first < nCells; first++ )
+        for ( int second = 0; second < nCells; second++ ) {
+          if ( second == first )
+            continue;
+
+          long two = 1L << ( 4 * first );
+          total += CHANCE_OF_TWO * get( two | 1L << ( 4 * second ), column )
+              + ( 1.0 - CHANCE_OF_TWO )
+                  * get( two | 2L << ( 4 * second ), column );
+        } // end for
+
+      return total / ( nCells * ( nCells - 1 ) );
+    } // end method getStart
+
+    /**
+     * Works out the expected values of a board once a tile spawns on it.
+     *
+     * @param after       A board after a move, before the spawn
+     * @param expected    Gets the expected value of each column
+     */
+    private void expect( long after, double[] expected )
+    {
+      Arrays.fill( expected, 0.0 );
+      int sum = tileSum( after );
+      int nBlanks = 0;
+
+      for ( int cell = 0; cell < solver_.nCells_; cell++ ) {
+        if ( ( ( after >>> ( 4 * cell ) ) & 0xF ) != 0 )
+          continue;
+
+        nBlanks++;
+        add( after | 1L << ( 4 * cell ), sum + 2, CHANCE_OF_TWO, expected );
+        add( after | 2L << ( 4 * cell ), sum + 4, 1.0 - CHANCE_OF_TWO,
+             expected );
+      } // end for
+
+      for ( int column = 0; column < N_VALUES; column++ )
+        expected[ column ] /= nBlanks;
+    } // end method expect
+
+    private void add( long board, int sum, double chance, double[] expected )
+    {
+      long key = solver_.canonical( board );
+      int layer = sum / 2;
+      int index = indexOf( boards_[ layer ], key );
+      if ( index < 0 )
+        throw new IllegalStateException(
+            "Board not in the table: " + Long.toHexString( board ) );
+
+      for ( int column = 0; column < N_VALUES; column++ )
+        expected[ column ] += chance
+            * values_[ layer ].get( N_VALUES * index + column );
+    } // end method add
+
+    /**
+     * Works out the values of every board, from the top layer down.
+     *
+     * @param goalExponent    The base-2 logarithm of the goal tile
+     */
+    private void solve( int goalExponent )
+    {
+      for ( int layer = boards_.length - 1; layer >= 0; layer-- ) {
+        int l = layer;
+        int n = boards_[ layer ].limit();
+        IntStream.range( 0, ( n + CHUNK_SIZE - 1 ) / CHUNK_SIZE ).parallel()
+                 .forEach( chunk -> solve( l, chunk * CHUNK_SIZE,
+                     Math.min( n, ( chunk + 1 ) * CHUNK_SIZE ),
+                     goalExponent ) );
+      } // end for
+    } // end method solve
+
+    /**
+     * Works out the values of some boards of one layer. The layers above
+     * must be done.
+     */
+    private void solve( int layer, int from, int to, int goalExponent )
+    {
+      int size = solver_.size_;
+      long[]   rows     = new long[ size ];
+      long[]   moved    = new long[ size ];
+      double[] expected = new double[ N_VALUES ];
+      LongBuffer  boards = boards_[ layer ];
+      FloatBuffer values = values_[ layer ];
+
+      for ( int i = from; i < to; i++ ) {
+        long board = boards.get( i );
+        solver_.unpack( board, rows );
+        boolean isWon = largestExponent( board ) >= goalExponent;
+
+        // With no move left, the game ends here
+        double score  = 0.0;
+        double win    = isWon ? 1.0 : 0.0;
+        double greedy = 0.0;
+        int greedyPoints = -1;
+        int nGreedy = 0;
+
+        for ( int direction = 0; direction < 4; direction++ ) {
+          System.arraycopy( rows, 0, moved, 0, size );
+          int points = solver_.engine_.move( moved, direction );
+          if ( points < 0 )
+            continue;
+
+          expect( solver_.pack( moved ), expected );
+          score = Math.max( score, points + expected[ SCORE ] );
+          if ( !isWon )
+            win = Math.max( win, expected[ WIN ] );
+          // Greedy play takes one of the moves scoring the most, at random,
+          // so its values don't depend on which way the board faces
+          if ( points > greedyPoints ) {
+            greedyPoints = points;
+            greedy = 0.0;
+            nGreedy = 0;
+          } // end if
+          if ( points == greedyPoints ) {
+            greedy += points + expected[ GREEDY ];
+            nGreedy++;
+          } // end if
+        } // end for
+        if ( nGreedy > 0 )
+          greedy /= nGreedy;
+
+        values.put( N_VALUES * i + SCORE,  ( float ) score );
+        values.put( N_VALUES * i + WIN,    ( float ) win );
+        values.put( N_VALUES * i + GREEDY, ( float ) greedy );
+      } // end for
+    } // end method solve
+
+    /**
+     * Writes every value to the file.
+     */
+    private void force()
+    {
+      for ( MappedByteBuffer map : maps_ )
+        if ( map != null )
+          map.force();
+    } // end method force
+  } // end class Table
+
+  private final int         size_;
+  private final int         nCells_;
+  private final long        rowMask_;
+  private final PackedBoard engine_;
+  private final int[][]     symmetries_;   // where each cell goes, 8 ways
+
+  private SmallBoardSolver( int size )
+  {
+    if ( size < PackedBoard.MIN_SIZE || size > MAX_SIZE )
+      throw new IllegalArgumentException( "Can't solve boards of size "
+                                          + size );
+
+    size_    = size;
+    nCells_  = size * size;
+    rowMask_ = ( 1L << ( 4 * size ) ) - 1;
+    engine_  = PackedBoard.forSize( size );
+
+    // Transpose, then mirror left to right, then flip top to bottom
+    symmetries_ = new int[ 8 ][ nCells_ ];
+    for ( int s = 0; s < 8; s++ )
+      for ( int row = 0; row < size; row++ )
+        for ( int col = 0; col < size; col++ ) {
+          int r = ( ( s & 4 ) != 0 ) ? col : row;
+          int c = ( ( s & 4 ) != 0 ) ? row : col;
+          if ( ( s & 1 ) != 0 )
+            c = size - 1 - c;
+          if ( ( s & 2 ) != 0 )
+            r = size - 1 - r;
+          symmetries_[ s ][ row * size + col ] = r * size + c;
+        } // end for
+  } // end constructor
+
+  /**
+   * Finds every position of one board size and works out its values.
+   *
+   * @param size    The number of rows and columns, up to MAX_SIZE
+   * @param goal    The tile to find the chance of making, or 0 for the
+   *                largest tile the game can make
+   * @param file    The table file. Replaced whole, through a temporary
+   *                file.
+   * @return        The table, mapped from the file
+   */
+  static Table solve( int size, int goal, Path file ) throws IOException
+  {
+    if ( goal != 0 && ( goal < 4 || Integer.bitCount( goal ) != 1 ) )
+      throw new IllegalArgumentException( "Bad goal tile: " + goal );
+
+    SmallBoardSolver solver = new SmallBoardSolver( size );
+    Path temporary = file.resolveSibling( file.getFileName() + ".tmp" );
+    Table table;
+
+    try ( FileChannel channel = FileChannel.open( temporary,
+              StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.READ, StandardOpenOption.WRITE ) ) {
+      // Find the layers from the bottom up, writing out the boards of each
+      // and leaving room for their values
+      List< long[] > directory = new ArrayList<>();   // start, boards
+      long position = HEADER_BYTES;
+      long nBoards = 0;
+      int largest = 0;
+      long[] twoBelow = new long[ 0 ];
+      long[] fourBelow = new long[ 0 ];
+      for ( int sum = 0; sum <= 6 || twoBelow.length + fourBelow.length > 0;
+            sum += 2 ) {
+        long[] layer = solver.layer( sum, twoBelow, fourBelow );
+        for ( long board : layer )
+          largest = Math.max( largest, largestExponent( board ) );
+
+        directory.add( new long[] { position, layer.length } );
+        ByteBuffer buffer = ByteBuffer.allocate( 8 * layer.length )
+                                      .order( ByteOrder.LITTLE_ENDIAN );
+        buffer.asLongBuffer().put( layer );
+        for ( long at = position; buffer.hasRemaining(); )
+          at += channel.write( buffer, at );
+
+        position += layerBytes( layer.length );
+        nBoards += layer.length;
+        fourBelow = twoBelow;
+        twoBelow = layer;
+      } // end for
+
+      int goalExponent = ( goal == 0 )
+          ? largest
+          : Integer.numberOfTrailingZeros( goal );
+
+      ByteBuffer buffer = ByteBuffer.allocate( 16 * directory.size() )
+                                    .order( ByteOrder.LITTLE_ENDIAN );
+      for ( long[] entry : directory )
+        buffer.putLong( entry[ 0 ] ).putLong( entry[ 1 ] );
+      buffer.flip();
+      for ( long at = position; buffer.hasRemaining(); )
+        at += channel.write( buffer, at );
+
+      ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES )
+                                    .order( ByteOrder.LITTLE_ENDIAN );
+      header.putInt( MAGIC ).putInt( VERSION ).putInt( size )
+            .putInt( 1 << goalExponent ).putInt( directory.size() )
+            .putLong( position ).putLong( nBoards );
+      header.rewind();
+      channel.write( header, 0 );
+
+      table = map( channel, temporary, FileChannel.MapMode.READ_WRITE );
+      table.solve( goalExponent );
+      table.force();
+    } // end try
+
+    Files.move( temporary, file, StandardCopyOption.REPLACE_EXISTING );
+    return table;
+  } // end method solve
+
+  /**
+   * Opens a table written by solve.
+   *
+   * @param file    The file
+   * @return        The table, mapped read-only from the file
+   */
+  static Table open( Path file ) throws IOException
+  {
+    try ( FileChannel channel
+              = FileChannel.open( file, StandardOpenOption.READ ) ) {
+      return map( channel, file, FileChannel.MapMode.READ_ONLY );
+    } // end try
+  } // end method open
+
+  private static Table map( FileChannel channel, Path file,
+                            FileChannel.MapMode mode ) throws IOException
+  {
+    ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES )
+                                  .order( ByteOrder.LITTLE_ENDIAN );
+    channel.read( header, 0 );
+    header.flip();
+    if ( header.remaining() < HEADER_BYTES || header.getInt() != MAGIC
+         || header.getInt() != VERSION )
+      throw new IOException( "Not a solved table: " + file );
+
+    int size = header.getInt();
+    int goal = header.getInt();
+    int nLayers = header.getInt();
+    long start = header.getLong();
+    long nBoards = header.getLong();
+    if ( size < PackedBoard.MIN_SIZE || size > MAX_SIZE || nLayers < 0
+         || channel.size() != start + 16L * nLayers )
+      throw new IOException( "Truncated table: " + file );
+
+    ByteBuffer directory = ByteBuffer.allocate( 16 * nLayers )
+                                     .order( ByteOrder.LITTLE_ENDIAN );
+    channel.read( directory, start );
+    directory.flip();
+
+    // One map per layer, so no map comes near the 2 GB limit
+    LongBuffer[]       boards = new LongBuffer[ nLayers ];
+    FloatBuffer[]      values = new FloatBuffer[ nLayers ];
+    MappedByteBuffer[] maps   = new MappedByteBuffer[ nLayers ];
+    for ( int layer = 0; layer < nLayers; layer++ ) {
+      long position = directory.getLong();
+      int n = ( int ) directory.getLong();
+      if ( n == 0 ) {
+        boards[ layer ] = LongBuffer.allocate( 0 );
+        values[ layer ] = FloatBuffer.allocate( 0 );
+        continue;
+      } // end if
+
+      maps[ layer ] = channel.map( mode, position, layerBytes( n ) );
+      boards[ layer ] = maps[ layer ].slice( 0, 8 * n )
+          .order( ByteOrder.LITTLE_ENDIAN ).asLongBuffer();
+      values[ layer ] = maps[ layer ].slice( 8 * n, 4 * N_VALUES * n )
+          .order( ByteOrder.LITTLE_ENDIAN ).asFloatBuffer();
+    } // end for
+
+    return new Table( new SmallBoardSolver( size ), goal, nBoards, boards,
+                      values, maps );
+  } // end method map
+
+  /**
+   * @return    The bytes a layer of n boards takes in the file, padded so
+   *            the next layer's boards line up on 8 bytes
+   */
+  private static long layerBytes( int n )
+  {
+    return ( ( 8L + 4L * N_VALUES ) * n + 7 ) & ~7L;
+  } // end method layerBytes
+
+  /**
+   * Finds the boards with a tile sum, from the layers two and four below.
+   *
+   * @return    The boards, canonical, sorted and each once
+   */
+  private long[] layer( int sum, long[] twoBelow, long[] fourBelow )
+  {
+    List< long[] > parts = new ArrayList<>();
+    if ( sum == 4 || sum == 6 )
+      parts.add( starts( sum / 2 - 1 ) );
+    parts.addAll( spawned( twoBelow, 1 ) );
+    parts.addAll( spawned( fourBelow, 2 ) );
+
+    int n = 0;
+    for ( long[] part : parts )
+      n += part.length;
+
+    long[] boards = new long[ n ];
+    n = 0;
+    for ( long[] part : parts ) {
+      System.arraycopy( part, 0, boards, n, part.length );
+      n += part.length;
+    } // end for
+    Arrays.parallelSort( boards );
+
+    return distinct( boards, n );
+  } // end method layer
+
+  /**
+   * Finds the boards a new game can start with: a 2, and then a tile of
+   * the given exponent.
+   */
+  private long[] starts( int exponent )
+  {
+    long[] boards = new long[ nCells_ * nCells_ ];
+    int n = 0;
+    for ( int first = 0; first < nCells_; first++ )
+      for ( int second = 0; second < nCells_; second++ )
+        if ( second != first )
+          boards[ n++ ] = canonical( 1L << ( 4 * first )
+                                     | ( long ) exponent << ( 4 * second ) );
+
+    Arrays.sort( boards, 0, n );
+    return distinct( boards, n );
+  } // end method starts
+
+  /**
+   * Finds, in parallel, every board a tile of the given exponent can spawn
+   * on after any move from any of the boards.
+   *
+   * @return    The boards found by each task, sorted
+   */
+  private List< long[] > spawned( long[] boards, int exponent )
+  {
+    int nChunks = ( boards.length + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+    return IntStream.range( 0, nChunks ).parallel()
+        .mapToObj( chunk -> spawned( boards, chunk * CHUNK_SIZE,
+            Math.min( boards.length, ( chunk + 1 ) * CHUNK_SIZE ),
+            exponent ) )
+        .collect( Collectors.toList() );
+  } // end method spawned
+
+  private long[] spawned( long[] boards, int from, int to, int exponent )
+  {
+    // Each move leaves fewer than nCells_ blanks
+    long[] spawned = new long[ 4 * nCells_ * ( to - from ) ];
+    long[] rows = new long[ size_ ];
+    int n = 0;
+
+    for ( int i = from; i < to; i++ )
+      for ( int direction = 0; direction < 4; direction++ ) {
+        unpack( boards[ i ], rows );
+        if ( engine_.move( rows, direction ) < 0 )
+          continue;
+
+        long after = pack( rows );
+        for ( int cell = 0; cell < nCells_; cell++ )
+          if ( ( ( after >>> ( 4 * cell ) ) & 0xF ) == 0 )
+            spawned[ n++ ]
+                = canonical( after | ( long ) exponent << ( 4 * cell ) );
+      } // end for
+
+    Arrays.sort( spawned, 0, n );
+    return distinct( spawned, n );
+  } // end method spawned
+
+  /**
+   * @return    The first n sorted boards, each once
+   */
+  private static long[] distinct( long[] boards, int n )
+  {
+    int m = 0;
+    for ( int i = 0; i < n; i++ )
+      if ( m == 0 || boards[ m - 1 ] != boards[ i ] )
+        boards[ m++ ] = boards[ i ];
+
+    return Arrays.copyOf( boards, m );
+  } // end method distinct
+
+  private long pack( long[] rows )
+  {
+    long board = 0L;
+    for ( int row = 0; row < size_; row++ )
+      board |= rows[ row ] << ( 4 * size_ * row );
+
+    return board;
+  } // end method pack
+
+  private void unpack( long board, long[] rows )
+  {
+    for ( int row = 0; row < size_; row++ )
+      rows[ row ] = ( board >>> ( 4 * size_ * row ) ) & rowMask_;
+  } // end method unpack
+
+  /**
+   * @return    The smallest of the eight ways the board can face
+   */
+  private long canonical( long board )
+  {
+    long smallest = board;
+    for ( int s = 1; s < 8; s++ ) {
+      int[] cells = symmetries_[ s ];
+      long image = 0L;
+      for ( int cell = 0; cell < nCells_; cell++ )
+        image |= ( ( board >>> ( 4 * cell ) ) & 0xF ) << ( 4 * cells[ cell ] );
+      smallest = Math.min( smallest, image );
+    } // end for
+
+    return smallest;
+  } // end method canonical
+
+  private static int tileSum( long board )
+  {
+    int sum = 0;
+    for ( ; board != 0; board >>>= 4 )
+      if ( ( board & 0xF ) != 0 )
+        sum += 1 << ( board & 0xF );
+
+    return sum;
+  } // end method tileSum
+
+  private static int largestExponent( long board )
+  {
+    int largest = 0;
+    for ( ; board != 0; board >>>= 4 )
+      largest = Math.max( largest, ( int ) ( board & 0xF ) );
+
+    return largest;
+  } // end method largestExponent
+
+  private static int indexOf( LongBuffer boards, long key )
+  {
+    int low  = 0;
+    int high = boards.limit() - 1;
+    while ( low <= high ) {
+      int middle = ( low + high ) >>> 1;
+      long board = boards.get( middle );
+      if ( board < key )
+        low = middle + 1;
+      else if ( board > key )
+        high = middle - 1;
+      else
+        return middle;
+    } // end while
+
+    return -1;
+  } // end method indexOf
+
+  /**
+   * Solves one board size and prints what best and greedy play can expect
+   * from a new game.
+   *
+   * @param args    The size, and optionally the goal tile ( the largest
+   *                the game can make by default ) and the table file
+   */
+  public static void main( String[] args ) throws IOException
+  {
+    if ( args.length < 1 ) {
+      System.err.println( "Usage: SmallBoardSolver <size> [goal] [file]" );
+      System.exit( 1 );
+    } // end if
+
+    int  size = Integer.parseInt( args[ 0 ] );
+    int  goal = ( args.length > 1 ) ? Integer.parseInt( args[ 1 ] ) : 0;
+    Path file = ( args.length > 2 )
+        ? Paths.get( args[ 2 ] )
+        : GameLauncher.sizedPath( GameLauncher.SOLVED_FILE_PATH, size );
+
+    Path parent = file.toAbsolutePath().getParent();
+    if ( parent != null )
+      Files.createDirectories( parent );
+
+    long start = System.nanoTime();
+    Table table = solve( size, goal, file );
+    double seconds = ( System.nanoTime() - start ) / 1e9;
+
+    double best   = table.getStart( SCORE );
+    double greedy = table.getStart( GREEDY );
+    System.out.format( "Solved %,d positions of the %dx%d board in %.1f s%n",
+        table.getBoardCount(), size, size, seconds );
+    System.out.format( "Expected score, best play:   %,.2f%n", best );
+    System.out.format( "Expected score, greedy play: %,.2f ( %.2f%% less )%n",
+        greedy, 100.0 * ( 1.0 - greedy / best ) );
+    System.out.format( "Chance of a %,d tile:        %.4f%%%n",
+        table.getGoal(), 100.0 * table.getStart( WIN ) );
+  } // end main
+} // end class
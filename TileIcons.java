@@ -0,0 +1,95 @@
+package game2048;
+
+// Graphics
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import javax.swing.ImageIcon;
+
+/**
+ * The faces of every tile, loaded once from the images named ###.PNG next to
+ * this class, where ### is the tile value. Icons are kept in an array
+ * indexed by the base-2 logarithm of the value, with 0 for a blank tile.
+ * A face whose image is missing is drawn instead, so there is always an
+ * icon to show.
+ */
+final class TileIcons
+{
+  static final int TILE_SIZE = 111;   // width and height of a tile, in pixels
+
+  // Exponents 0 ( blank ) to 16 ( 65536 )
+  private static final int N_FACES = 17;
+
+  private static final ImageIcon[] ICONS = new ImageIcon[ N_FACES ];
+
+  static
+  {
+    for ( int exponent = 0; exponent < N_FACES; exponent++ ) {
+      int value = ( exponent == 0 ) ? 0 : 1 << exponent;
+      java.net.URL imageUrl
+          = TileIcons.class.getResource( "images/" + value + ".PNG" );
+
+      ICONS[ exponent ] = ( imageUrl != null )
+          ? new ImageIcon( imageUrl )
+          : drawFace( value );
+    } // end for
+  } // end static initializer
+
+  private TileIcons() {}
+
+  /**
+   * @param exponent  The base-2 logarithm of the tile value, or 0 if blank
+   * @return          The icon of the tile. Never null.
+   */
+  static ImageIcon forExponent( int exponent )
+  {
+    return ICONS[ Math.min( exponent, N_FACES - 1 ) ];
+  } // end method forExponent
+
+  /**
+   * @param value   The value of the tile, or 0 if blank
+   * @return        The icon of the tile. Never null.
+   */
+  static ImageIcon forValue( int value )
+  {
+    return forExponent( 31 - Integer.numberOfLeadingZeros( value | 1 ) );
+  } // end method forValue
+
+  /**
+   * Draws a plain face for a tile whose image couldn't be found.
+   *
+   * @param value   The value of the tile, or 0 if blank
+   * @return        A square with the value written on it
+   */
+  private static ImageIcon drawFace( int value )
+  {
+    BufferedImage image = new BufferedImage(
+        TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB );
+    Graphics2D g = image.createGraphics();
+    g.setRenderingHint(
+        RenderingHints.KEY_TEXT_ANTIALIASING,
+        RenderingHints.VALUE_TEXT_ANTIALIAS_ON );
+
+    g.setColor( ( value == 0 )
+        ? new Color( 205, 193, 180 )
+        : new Color( 237, 194, 46 ) );
+    g.fillRect( 0, 0, TILE_SIZE, TILE_SIZE );
+
+    if ( value != 0 ) {
+      String text = Integer.toString( value );
+      g.setColor( Color.WHITE );
+      g.setFont( new Font( Font.SANS_SERIF, Font.BOLD,
+                           ( text.length() > 3 ) ? 28 : 44 ) );
+      FontMetrics metrics = g.getFontMetrics();
+      g.drawString( text,
+          ( TILE_SIZE - metrics.stringWidth( text ) ) / 2,
+          ( TILE_SIZE - metrics.getHeight() ) / 2 + metrics.getAscent() );
+    } // end if
+
+    g.dispose();
+    return new ImageIcon( image );
+  } // end method drawFace
+} // end class
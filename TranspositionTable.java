@@ -0,0 +1,103 @@
+package game2048;
+
+// Utilities
+import java.util.Arrays;
+
+/**
+ * Fixed-size table of searched positions that any number of threads can
+ * read and write without locking. Each slot holds a board and the value it
+ * was given along with the depth it was searched to, and the most likely
+ * path the value still holds for. A search that skips unlikely spawns gives
+ * a board reached with low odds a rougher value than the same board reached
+ * with high odds, so a value is only handed back to paths no more likely
+ * than the one it was searched along. A slot is simply overwritten when two
+ * boards collide.
+ *
+ * The key is stored XORed with the entry, so a slot that another thread is
+ * halfway through writing never passes for a match; it reads as a miss.
+ */
+final class TranspositionTable
+{
+  private final long[] keys_;
+  // Float value in the high half, then the top 24 bits of the float limit
+  // on the chance of the path, then the depth in the low byte
+  private final long[] entries_;
+  private final int    mask_;
+
+  /**
+   * Constructor
+   *
+   * @param log2Size  The base-2 logarithm of the number of slots
+   */
+  TranspositionTable( int log2Size )
+  {
+    keys_    = new long[ 1 << log2Size ];
+    entries_ = new long[ 1 << log2Size ];
+    mask_    = ( 1 << log2Size ) - 1;
+  } // end constructor
+
+  private int slot( long board )
+  {
+    // Mix the bits so neighboring boards land far apart
+    long h = board * 0x9E3779B97F4A7C15L;
+    return ( int ) ( h ^ ( h >>> 32 ) ) & mask_;
+  } // end method slot
+
+  /**
+   * Looks up a board searched at least as deep and as thoroughly as needed.
+   *
+   * @param board         The board packed by Bitboard
+   * @param depth         The depth the caller is about to search
+   * @param probability   The chance of the path the caller reached it by
+   * @return              The stored value, or NaN if there is none good
+   *                      enough
+   */
+  double get( long board, int depth, double probability )
+  {
+    int  i     = slot( board );
+    long entry = entries_[ i ];
+
+    if ( ( keys_[ i ] ^ entry ) != board || ( int ) ( entry & 0xFF ) < depth )
+      return Double.NaN;
+
+    float limit = Float.intBitsToFloat( ( ( int ) entry & ~0xFF ) >>> 1 );
+    if ( probability > limit )
+      return Double.NaN;
+
+    return Float.intBitsToFloat( ( int ) ( entry >>> 32 ) );
+  } // end method get
+
+  /**
+   * Stores the value of a board.
+   *
+   * @param board   The board packed by Bitboard
+   * @param depth   The depth the board was searched to
+   * @param limit   The highest chance of a path the value holds for;
+   *                infinite if nothing below the board was skipped
+   * @param value   The value found by the search
+   */
+  void put( long board, int depth, double limit, double value )
+  {
+    // Round the limit down so the stored one never promises too much
+    float rounded = ( float ) limit;
+    if ( rounded > limit )
+      rounded = Math.nextDown( rounded );
+
+    int  i     = slot( board );
+    long entry = ( long ) Float.floatToRawIntBits( ( float ) value ) << 32
+        | ( ( Float.floatToRawIntBits( rounded ) << 1 ) & ~0xFF & 0xFFFFFFFFL )
+        | ( depth & 0xFF );
+
+    entries_[ i ] = entry;
+    keys_[ i ]    = board ^ entry;
+  } // end method put
+
+  /**
+   * Forgets every stored board.
+   */
+  void clear()
+  {
+    Arrays.fill( keys_, 0L );
+    Arrays.fill( entries_, 0L );
+  } // end method clear
+} // end class
@@ -0,0 +1,62 @@
+package game2048;
+
+// Benchmarking
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures moving a whole corpus of boards in one batch, through the
+ * Bitboard tables one board at a time and through the Vector API kernel
+ * when it is loaded. The score reported is the time to move every board
+ * of the corpus once.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class BatchMoveBenchmark
+{
+  private static final int CORPUS_SIZE = 1024;
+
+  @Param( { "scalar", "default" } )
+  public String kernel;
+
+  @Param( { "0", "1", "2", "3" } )   // Bitboard.LEFT, RIGHT, UP, DOWN
+  public int direction;
+
+  private BatchMoves.Kernel kernel_;
+  private long[]            boards_;
+  private long[]            after_;
+  private int[]             points_;
+  private boolean[]         moved_;
+
+  @Setup
+  public void setUp()
+  {
+    kernel_ = kernel.equals( "scalar" ) ? BatchMoves.SCALAR
+                                        : BatchMoves.getKernel();
+    boards_ = BoardCorpus.midGame( CORPUS_SIZE );
+    after_  = new long[ CORPUS_SIZE ];
+    points_ = new int[ CORPUS_SIZE ];
+    moved_  = new boolean[ CORPUS_SIZE ];
+  } // end method setUp
+
+  @Benchmark
+  public long[] move()
+  {
+    kernel_.move( boards_, CORPUS_SIZE, direction, after_, points_, moved_ );
+    return after_;
+  } // end method move
+} // end class
@@ -0,0 +1,99 @@
+package game2048;
+
+// Utilities
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Boards taken from real play for the benchmarks. Games are played by the
+ * greedy policy with seeded spawns, so every run measures the same boards.
+ */
+final class BoardCorpus
+{
+  private static final long SEED = 2048L;
+
+  private BoardCorpus() {}
+
+  /**
+   * Collects boards from the middle of games.
+   *
+   * @param count   The number of boards
+   * @return        Boards after about 300 moves
+   */
+  static long[] midGame( int count )
+  {
+    return collect( count, false );
+  } // end method midGame
+
+  /**
+   * Collects boards from the end of games.
+   *
+   * @param count   The number of boards
+   * @return        Boards a few moves before the game was lost
+   */
+  static long[] lateGame( int count )
+  {
+    return collect( count, true );
+  } // end method lateGame
+
+  /**
+   * Fills every blank tile of the boards with a 2 or a 4.
+   *
+   * @param boards  The boards to fill
+   * @return        Full boards, which may or may not still have moves
+   */
+  static long[] fill( long[] boards )
+  {
+    SplittableRandom random = new SplittableRandom( SEED );
+    long[] filled = Arrays.copyOf( boards, boards.length );
+
+    for ( int i = 0; i < filled.length; i++ )
+      for ( int shift = 0; shift < 64; shift += 4 )
+        if ( ( ( filled[ i ] >>> shift ) & 0xF ) == 0 )
+          filled[ i ] |= ( long ) ( 1 + random.nextInt( 2 ) ) << shift;
+
+    return filled;
+  } // end method fill
+
+  /**
+   * Plays greedy games and keeps one board from each.
+   */
+  private static long[] collect( int count, boolean late )
+  {
+    SplittableRandom random = new SplittableRandom( SEED );
+    MovePolicy policy = new GreedyPolicy( new HeuristicEvaluator() );
+    long[] boards = new long[ count ];
+
+    for ( int i = 0; i < count; i++ ) {
+      long[] history = new long[ 16 ];   // ring of the last boards
+      int nMoves = 0;
+      long board = spawn( spawn( 0L, random ), random );
+
+      while ( Bitboard.canMove( board ) && ( late || nMoves < 300 ) ) {
+        history[ nMoves++ % history.length ] = board;
+        board = spawn(
+            Bitboard.move( board, policy.chooseMove( board ) ), random );
+      } // end while
+
+      // Late boards are taken a few moves before the end
+      boards[ i ] = late
+          ? history[ Math.max( 0, nMoves - 4 ) % history.length ]
+          : board;
+    } // end for
+
+    return boards;
+  } // end method collect
+
+  /**
+   * Spawns a tile on a random blank tile, as Game does.
+   */
+  private static long spawn( long board, SplittableRandom random )
+  {
+    int k = random.nextInt( Bitboard.countBlanks( board ) );
+
+    for ( int shift = 0; ; shift += 4 )
+      if ( ( ( board >>> shift ) & 0xF ) == 0 && k-- == 0 )
+        return board
+            | ( long ) ( ( random.nextDouble() < 0.9 ) ? 1 : 2 ) << shift;
+  } // end method spawn
+} // end class
@@ -0,0 +1,45 @@
+package game2048;
+
+// Benchmarking
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures checking for possible moves on full boards, the only case where
+ * the whole board has to be looked at.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class CanMoveBenchmark
+{
+  private static final int CORPUS_SIZE = 1024;
+
+  private long[] boards_;
+
+  @Setup
+  public void setUp()
+  {
+    boards_ = BoardCorpus.fill( BoardCorpus.lateGame( CORPUS_SIZE ) );
+  } // end method setUp
+
+  @Benchmark
+  public void canMove( Blackhole blackhole )
+  {
+    for ( long board : boards_ )
+      blackhole.consume( Bitboard.canMove( board ) );
+  } // end method canMove
+} // end class
@@ -0,0 +1,99 @@
+package game2048;
+
+// Benchmarking
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// IO
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Utilities
+import java.util.SplittableRandom;
+
+/**
+ * Measures loading the leaderboard from record stores of growing length,
+ * the way the Leaderboard does it: the best games from the index first,
+ * then the whole history, put in order by score. One invocation per
+ * iteration is enough for any of them.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx4g" )
+public class LeaderboardBenchmark
+{
+  @Param( { "1000", "1000000", "10000000" } )
+  public int lines;
+
+  private Path        textFile_;
+  private Path        recordFile_;
+  private Path        indexFile_;
+  private RecordStore store_;
+  private int[][]     columns_;   // the whole history, to sort
+
+  @Setup
+  public void setUp() throws IOException
+  {
+    textFile_   = Files.createTempFile( "leaderboard", ".2048" );
+    recordFile_ = Files.createTempFile( "leaderboard", ".dat" );
+    indexFile_  = Files.createTempFile( "leaderboard", ".top" );
+    SplittableRandom random = new SplittableRandom( lines );
+
+    try ( BufferedWriter writer = Files.newBufferedWriter( textFile_ ) ) {
+      for ( int i = 0; i < lines; i++ ) {
+        int nMoves = 100 + random.nextInt( 3000 );
+        int largestTile = 1 << ( 6 + random.nextInt( 7 ) );
+        int score = 10 * nMoves + random.nextInt( 1000 );
+        writer.write( String.format( "%d %d %d%n", nMoves, largestTile, score ) );
+      } // end for
+    } // end try
+
+    Files.delete( recordFile_ );
+    Files.delete( indexFile_ );
+    store_ = new RecordStore( recordFile_, indexFile_ );
+    store_.importTextFile( textFile_ );
+    columns_ = store_.readAll();
+  } // end method setUp
+
+  @TearDown
+  public void tearDown() throws IOException
+  {
+    Files.deleteIfExists( textFile_ );
+    Files.deleteIfExists( recordFile_ );
+    Files.deleteIfExists( indexFile_ );
+  } // end method tearDown
+
+  @Benchmark
+  public Object loadTop() throws IOException
+  {
+    return store_.top();
+  } // end method loadTop
+
+  @Benchmark
+  public Object readAll() throws IOException
+  {
+    return store_.readAll();
+  } // end method readAll
+
+  @Benchmark
+  public Object sortByScore()
+  {
+    return Leaderboard.order( columns_, Leaderboard.SCORE_COLUMN, false );
+  } // end method sortByScore
+} // end class
@@ -0,0 +1,69 @@
+package game2048;
+
+// Benchmarking
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures Game.move in each direction over boards from real games: moving
+ * the tiles, scoring and spawning the next tile. The score reported is the
+ * time to move every board of the corpus once. Each game is put back on its
+ * board before every invocation, outside the timing.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class MoveBenchmark
+{
+  private static final int CORPUS_SIZE = 1024;
+
+  @Param( { "mid", "late" } )
+  public String stage;
+
+  @Param( { "0", "1", "2", "3" } )   // Bitboard.LEFT, RIGHT, UP, DOWN
+  public int direction;
+
+  private long[] boards_;
+  private Game[] games_;   // one per board
+
+  @Setup
+  public void setUp()
+  {
+    boards_ = stage.equals( "mid" )
+        ? BoardCorpus.midGame( CORPUS_SIZE )
+        : BoardCorpus.lateGame( CORPUS_SIZE );
+
+    games_ = new Game[ boards_.length ];
+    for ( int i = 0; i < games_.length; i++ )
+      games_[ i ] = new Game( i );
+  } // end method setUp
+
+  @Setup( Level.Invocation )
+  public void restore()
+  {
+    for ( int i = 0; i < games_.length; i++ )
+      games_[ i ].restore( boards_[ i ], 0, 0, 0 );
+  } // end method restore
+
+  @Benchmark
+  public void move( Blackhole blackhole )
+  {
+    for ( Game game : games_ )
+      blackhole.consume( game.move( direction ) );
+  } // end method move
+} // end class
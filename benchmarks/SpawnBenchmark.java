@@ -0,0 +1,73 @@
+package game2048;
+
+// Benchmarking
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures spawning a tile on boards that have only a few blank tiles left,
+ * where picking a blank tile at random is hardest. Each invocation spawns
+ * once on every board of the corpus, after the games are put back on their
+ * boards outside the timing; the score is the time per spawn.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SpawnBenchmark
+{
+  private static final int CORPUS_SIZE = 1024;
+
+  @Param( { "1", "2", "4" } )
+  public int blanks;
+
+  private long[] boards_;
+  private Game[] games_;   // one per board
+
+  @Setup
+  public void setUp()
+  {
+    long[] full = BoardCorpus.fill( BoardCorpus.lateGame( CORPUS_SIZE ) );
+    boards_ = new long[ full.length ];
+
+    // Clear the first few tiles of each full board
+    for ( int i = 0; i < full.length; i++ )
+      boards_[ i ] = full[ i ] & ( -1L << ( 4 * blanks ) );
+
+    games_ = new Game[ boards_.length ];
+    for ( int i = 0; i < games_.length; i++ )
+      games_[ i ] = new Game( i );
+  } // end method setUp
+
+  @Setup( Level.Invocation )
+  public void restore()
+  {
+    for ( int i = 0; i < games_.length; i++ )
+      games_[ i ].restore( boards_[ i ], 0, 0, 0 );
+  } // end method restore
+
+  @Benchmark
+  @OperationsPerInvocation( CORPUS_SIZE )
+  public void spawnNewTile( Blackhole blackhole )
+  {
+    for ( Game game : games_ ) {
+      game.spawnNewTile( true );
+      blackhole.consume( game.getBoard() );
+    } // end for
+  } // end method spawnNewTile
+} // end class
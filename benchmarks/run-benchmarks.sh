@@ -0,0 +1,28 @@
+#!/bin/sh
+# Builds the game and the JMH benchmarks, then runs them without a display.
+# Results are written to benchmarks/results.json.
+#
+# JMH_LIB must name a directory holding the JMH jars: jmh-core,
+# jmh-generator-annprocess, jopt-simple and commons-math3. Any arguments
+# are passed to JMH, e.g. a benchmark name pattern or "-f 0".
+set -e
+
+if [ -z "$JMH_LIB" ]; then
+  echo "Set JMH_LIB to the directory holding the JMH jars" >&2
+  exit 1
+fi
+
+cd "$(dirname "$0")/.."
+CLASSPATH=$(ls "$JMH_LIB"/*.jar | tr '\n' ':')
+BUILD=benchmarks/build
+
+rm -rf "$BUILD"
+mkdir -p "$BUILD"
+javac -cp "$CLASSPATH" -d "$BUILD" *.java benchmarks/*.java
+
+# The batch move kernel needs the incubating Vector API
+VECTOR="--add-modules jdk.incubator.vector"
+javac $VECTOR -cp "$BUILD" -d "$BUILD" vector/*.java
+
+java $VECTOR -Djava.awt.headless=true -cp "$BUILD:$CLASSPATH" \
+    org.openjdk.jmh.Main -rf json -rff benchmarks/results.json "$@"
@@ -0,0 +1,281 @@
+package game2048;
+
+// Vectors
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Moves boards with the Vector API, one board per long lane. The Bitboard
+ * tables can't be read lane by lane, so each lane works out its move with
+ * shifts and masks over all four rows at once: close the gaps, merge equal
+ * neighbours from the left, close the gaps again. Moving right reverses
+ * the rows first and after, and moving up or down transposes the board,
+ * as Bitboard does.
+ *
+ * The boards go through a pipeline of passes, each one a loop over a
+ * chunk of boards small enough to stay in the cache. The passes are
+ * called through one interface from one place, so the JIT compiles each of
+ * them on its own; inlined into one method, they grow past what it will
+ * inline, and vectors left between calls get boxed.
+ *
+ * Needs --add-modules jdk.incubator.vector to compile and to run, which
+ * is why it lives apart from the rest of the game. BatchMoves loads it
+ * when it can.
+ */
+final class VectorBatchMoves implements BatchMoves.Kernel
+{
+  private static final VectorSpecies< Long >    LONGS
+      = LongVector.SPECIES_PREFERRED;
+  private static final VectorSpecies< Integer > INTS = VectorSpecies.of(
+      int.class, VectorShape.forBitSize( LONGS.vectorBitSize() / 2 ) );
+
+  // Boards moved a pass at a time, few enough to stay in the cache
+  private static final int CHUNK = 1024;
+
+  // The lowest cell of every row, and the lowest bit of every row
+  private static final long LOW  = 0x000F000F000F000FL;
+  private static final long ONES = 0x0001000100010001L;
+
+  // Every cell but column 3, where a shift right brings in the next row
+  private static final long BUT_LAST = 0x0FFF0FFF0FFF0FFFL;
+
+  // Cells from column i to 3 of every row
+  private static final long[] FROM = {
+      0xFFFFFFFFFFFFFFFFL, 0xFFF0FFF0FFF0FFF0L, 0xFF00FF00FF00FF00L };
+
+  /**
+   * One step of a move over a chunk of boards, in place.
+   */
+  private interface Pass
+  {
+    /**
+     * @param rows    The boards
+     * @param score   The points of each board so far
+     * @param count   The number of boards, a multiple of the lane count
+     */
+    void run( long[] rows, long[] score, int count );
+  } // end interface Pass
+
+  // The passes of each direction, by direction
+  private final Pass[][] pipelines_ = new Pass[ 4 ][];
+
+  /**
+   * Constructor. Fails where a register holds less than two boards, as
+   * the scalar kernel is faster there.
+   */
+  VectorBatchMoves()
+  {
+    if ( LONGS.length() < 2 )
+      throw new UnsupportedOperationException( "No SIMD registers" );
+
+    Pass transpose = VectorBatchMoves::transpose;
+    Pass reverse   = VectorBatchMoves::reverse;
+    Pass compact   = VectorBatchMoves::compact;
+    Pass merge0    = ( rows, score, count ) -> merge( rows, score, count, 0 );
+    Pass merge1    = ( rows, score, count ) -> merge( rows, score, count, 1 );
+    Pass merge2    = ( rows, score, count ) -> merge( rows, score, count, 2 );
+    Pass points    = VectorBatchMoves::points;
+
+    pipelines_[ Bitboard.LEFT ] = new Pass[] {
+        compact, merge0, merge1, merge2, points, compact };
+    pipelines_[ Bitboard.RIGHT ] = new Pass[] {
+        reverse, compact, merge0, merge1, merge2, points, compact, reverse };
+    pipelines_[ Bitboard.UP ] = new Pass[] {
+        transpose, compact, merge0, merge1, merge2, points, compact,
+        transpose };
+    pipelines_[ Bitboard.DOWN ] = new Pass[] {
+        transpose, reverse, compact, merge0, merge1, merge2, points,
+        compact, reverse, transpose };
+  } // end constructor
+
+  public void move( long[] boards, int n, int direction, long[] after,
+                    int[] points, boolean[] moved )
+  {
+    Pass[] pipeline = pipelines_[ direction ];
+    int bound = LONGS.loopBound( n );
+    int chunk = Math.min( CHUNK, bound );
+    long[] rows  = new long[ chunk ];
+    long[] score = new long[ chunk ];
+
+    for ( int from = 0; from < bound; from += chunk ) {
+      int count = Math.min( chunk, bound - from );
+      System.arraycopy( boards, from, rows, 0, count );
+      for ( Pass pass : pipeline )
+        pass.run( rows, score, count );
+      finish( boards, from, rows, score, count, after, points, moved );
+    } // end for
+
+    BatchMoves.moveScalar( boards, bound, n, direction, after, points, moved );
+  } // end method move
+
+  /**
+   * Swaps the rows and columns of every board, as Bitboard.transpose does.
+   */
+  private static void transpose( long[] rows, long[] score, int count )
+  {
+    for ( int i = 0; i < count; i += LONGS.length() ) {
+      LongVector board = LongVector.fromArray( LONGS, rows, i );
+      LongVector a = board.and( 0xF0F00F0FF0F00F0FL )
+          .or( board.and( 0x0000F0F00000F0F0L )
+                    .lanewise( VectorOperators.LSHL, 12 ) )
+          .or( board.and( 0x0F0F00000F0F0000L )
+                    .lanewise( VectorOperators.LSHR, 12 ) );
+      a.and( 0xFF00FF0000FF00FFL )
+          .or( a.and( 0x00FF00FF00000000L )
+                .lanewise( VectorOperators.LSHR, 24 ) )
+          .or( a.and( 0x00000000FF00FF00L )
+                .lanewise( VectorOperators.LSHL, 24 ) )
+          .intoArray( rows, i );
+    } // end for
+  } // end method transpose
+
+  /**
+   * Reverses the order of the tiles in every row.
+   */
+  private static void reverse( long[] rows, long[] score, int count )
+  {
+    for ( int i = 0; i < count; i += LONGS.length() ) {
+      LongVector row = LongVector.fromArray( LONGS, rows, i );
+      LongVector nibbles = row.lanewise( VectorOperators.LSHR, 4 )
+          .and( 0x0F0F0F0F0F0F0F0FL )
+          .or( row.and( 0x0F0F0F0F0F0F0F0FL )
+                  .lanewise( VectorOperators.LSHL, 4 ) );
+      nibbles.lanewise( VectorOperators.LSHR, 8 ).and( 0x00FF00FF00FF00FFL )
+          .or( nibbles.and( 0x00FF00FF00FF00FFL )
+                      .lanewise( VectorOperators.LSHL, 8 ) )
+          .intoArray( rows, i );
+    } // end for
+  } // end method reverse
+
+  /**
+   * Slides the tiles of every row to the left, closing every gap. Gaps are
+   * closed from column 2 down, so by the time a gap is closed the tiles
+   * past it are already packed.
+   */
+  private static void compact( long[] rows, long[] score, int count )
+  {
+    for ( int i = 0; i < count; i += LONGS.length() )
+      close( close( close( LongVector.fromArray( LONGS, rows, i ), 2 ), 1 ),
+             0 ).intoArray( rows, i );
+  } // end method compact
+
+  /**
+   * Closes the gap in one column of every row where there is one, moving
+   * the tiles past it one column left.
+   */
+  private static LongVector close( LongVector rows, int cell )
+  {
+    LongVector filled = spread( isFilled( cell( rows, cell ) ), 16 );
+    LongVector gaps = LongVector.broadcast( LONGS, FROM[ cell ] )
+        .lanewise( VectorOperators.AND_NOT, filled );
+    LongVector shifted = rows.lanewise( VectorOperators.LSHR, 4 )
+                             .and( BUT_LAST );
+    return rows.lanewise( VectorOperators.XOR,
+        rows.lanewise( VectorOperators.XOR, shifted ).and( gaps ) );
+  } // end method close
+
+  /**
+   * Merges one column of every row with the column on its right where the
+   * two tiles are equal, not blank, and below 15. The merge blanks the tile
+   * on the right, so no tile merges twice.
+   *
+   * Each merge of a tile 2^e is worth 2^(e + 1) points. Half of that goes
+   * into the score, in the 16 bits of the row, where two merges of at most
+   * 2^14 still fit; points adds up the rows.
+   */
+  private static void merge( long[] rows, long[] score, int count, int cell )
+  {
+    for ( int i = 0; i < count; i += LONGS.length() ) {
+      LongVector row   = LongVector.fromArray( LONGS, rows, i );
+      LongVector left  = cell( row, cell );
+      LongVector right = cell( row, cell + 1 );
+      LongVector merges = isFilled( left )
+          .lanewise( VectorOperators.AND_NOT,
+                     isFilled( left.lanewise( VectorOperators.XOR, right ) ) )
+          .and( isFilled( left.lanewise( VectorOperators.XOR, LOW ) ) );
+
+      // One row per short lane, so every row shifts by its own exponent
+      LongVector halves = merges.reinterpretAsShorts()
+          .lanewise( VectorOperators.LSHL, left.reinterpretAsShorts() )
+          .reinterpretAsLongs();
+      if ( cell > 0 )
+        halves = halves.add( LongVector.fromArray( LONGS, score, i ) );
+      halves.intoArray( score, i );
+
+      row.add( merges.lanewise( VectorOperators.LSHL, 4 * cell ) )
+         .lanewise( VectorOperators.AND_NOT,
+                    spread( merges, 4 ).lanewise( VectorOperators.LSHL,
+                                                  4 * cell + 4 ) )
+         .intoArray( rows, i );
+    } // end for
+  } // end method merge
+
+  /**
+   * Adds up the half points of the four rows of every board, and doubles
+   * them.
+   */
+  private static void points( long[] rows, long[] score, int count )
+  {
+    for ( int i = 0; i < count; i += LONGS.length() ) {
+      LongVector halves = LongVector.fromArray( LONGS, score, i );
+      LongVector pairs = halves.and( 0x0000FFFF0000FFFFL )
+          .add( halves.lanewise( VectorOperators.LSHR, 16 )
+                      .and( 0x0000FFFF0000FFFFL ) );
+      pairs.and( 0xFFFFFFFFL ).add( pairs.lanewise( VectorOperators.LSHR, 32 ) )
+           .lanewise( VectorOperators.LSHL, 1 )
+           .intoArray( score, i );
+    } // end for
+  } // end method points
+
+  /**
+   * Writes out the results of count boards.
+   */
+  private static void finish( long[] boards, int from, long[] rows,
+                              long[] score, int count, long[] after,
+                              int[] points, boolean[] moved )
+  {
+    for ( int i = 0; i < count; i += LONGS.length() ) {
+      LongVector board  = LongVector.fromArray( LONGS, boards, from + i );
+      LongVector result = LongVector.fromArray( LONGS, rows, i );
+      result.compare( VectorOperators.NE, board )
+            .intoArray( moved, from + i );
+      result.intoArray( after, from + i );
+      ( ( IntVector ) LongVector.fromArray( LONGS, score, i )
+            .convertShape( VectorOperators.L2I, INTS, 0 ) )
+          .intoArray( points, from + i );
+    } // end for
+  } // end method finish
+
+  /**
+   * @return    The tile of every row in one column, in the lowest 4 bits
+   */
+  private static LongVector cell( LongVector rows, int cell )
+  {
+    return rows.lanewise( VectorOperators.LSHR, 4 * cell ).and( LOW );
+  } // end method cell
+
+  /**
+   * Finds the rows whose lowest cell isn't blank.
+   *
+   * @param cells   Boards holding one cell per row, in the lowest 4 bits
+   * @return        1 in the lowest bit of every row whose cell isn't 0
+   */
+  private static LongVector isFilled( LongVector cells )
+  {
+    // Adding 15 carries into bit 4 unless the cell is 0
+    return cells.add( LOW ).lanewise( VectorOperators.LSHR, 4 ).and( ONES );
+  } // end method isFilled
+
+  /**
+   * Turns a 1 in the lowest bit of a row into ones in its lowest bits.
+   *
+   * @param bits    How many bits to fill
+   */
+  private static LongVector spread( LongVector ones, int bits )
+  {
+    return ones.lanewise( VectorOperators.LSHL, bits ).sub( ones );
+  } // end method spread
+} // end class